@@ -0,0 +1,85 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.OrderApplication;
+import com.example.demo.model.Order;
+import com.example.demo.repository.OrderRepository;
+import com.example.demo.service.OrderService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Order service hot paths against the embedded H2 database, seeded with ORDERS orders over USERS users
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderServiceBenchmark {
+
+    private static final int ORDERS = 20_000;
+    private static final int USERS = 1_000;
+    private static final String[] STATUSES = {"PENDING", "CONFIRMED", "SHIPPED", "DELIVERED", "CANCELLED"};
+
+    private ConfigurableApplicationContext context;
+    private OrderService orderService;
+    private ObjectMapper objectMapper;
+    private List<Order> page;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(OrderApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.jpa.show-sql=false", "logging.level.root=WARN")
+                .run();
+        orderService = context.getBean(OrderService.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+
+        List<Order> orders = new ArrayList<>(ORDERS);
+        for (int i = 0; i < ORDERS; i++) {
+            orders.add(new Order((long) (i % USERS), (long) (i % 500), 1 + i % 5, 10.0 * (1 + i % 5),
+                    STATUSES[i % STATUSES.length]));
+        }
+        context.getBean(OrderRepository.class).saveAll(orders);
+        page = orderService.getOrdersByUserId(1L);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object createOrder() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return orderService.createOrder(new Order((long) random.nextInt(USERS), (long) random.nextInt(500), 1, 10.0, null));
+    }
+
+    @Benchmark
+    public Object getOrdersByUserId() {
+        return orderService.getOrdersByUserId((long) ThreadLocalRandom.current().nextInt(USERS));
+    }
+
+    @Benchmark
+    public byte[] serializeOrderList() throws Exception {
+        return objectMapper.writeValueAsBytes(page);
+    }
+}
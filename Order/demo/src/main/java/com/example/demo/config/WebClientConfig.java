@@ -0,0 +1,22 @@
+package com.example.demo.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.client.WebClient;
+
+@Configuration
+public class WebClientConfig {
+    
+    @Bean
+    public WebClient productClient(WebClient.Builder builder,
+                                   @Value("${order.product-service.url}") String productServiceUrl) {
+        return builder.baseUrl(productServiceUrl).build();
+    }
+    
+    @Bean
+    public WebClient paymentClient(WebClient.Builder builder,
+                                   @Value("${order.payment-service.url}") String paymentServiceUrl) {
+        return builder.baseUrl(paymentServiceUrl).build();
+    }
+}
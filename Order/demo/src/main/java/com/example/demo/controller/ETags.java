@@ -0,0 +1,40 @@
+package com.example.demo.controller;
+
+import org.springframework.http.HttpHeaders;
+
+// Entity versions as strong ETags ("3") and If-Match headers back as versions
+final class ETags {
+    
+    private ETags() {
+    }
+    
+    static String of(Long version) {
+        return version == null ? null : "\"" + version + "\"";
+    }
+    
+    // Response headers carrying the version as ETag, empty when there is no version
+    static HttpHeaders headers(Long version) {
+        HttpHeaders headers = new HttpHeaders();
+        if (version != null) {
+            headers.setETag(of(version));
+        }
+        return headers;
+    }
+    
+    // null when the header is absent or "*"; -1 (never a real version) for anything that cannot
+    // match, including weak tags, which If-Match compares strongly
+    static Long parseIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() < 3 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+            return -1L;
+        }
+        try {
+            return Long.parseLong(tag.substring(1, tag.length() - 1));
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+}
@@ -1,12 +1,32 @@
 package com.example.demo.controller;
 
+import com.example.demo.exception.OrderPlacementException;
+import com.example.demo.exception.VersionConflictException;
+import com.example.demo.model.BulkStatusRequest;
 import com.example.demo.model.Order;
+import com.example.demo.model.OrderPage;
+import com.example.demo.model.OrderRequest;
+import com.example.demo.service.ChangeFeed;
+import com.example.demo.service.IdempotencyStore;
+import com.example.demo.service.OrderArchiver;
+import com.example.demo.service.OrderBulkStatusService;
+import com.example.demo.service.OrderPaymentReconciler;
+import com.example.demo.service.OrderPlacementService;
 import com.example.demo.service.OrderService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 
@@ -17,11 +37,49 @@ public class OrderController {
     @Autowired
     private OrderService orderService;
     
-    // Create order
+    @Autowired
+    private OrderPlacementService orderPlacementService;
+    
+    @Autowired
+    private OrderBulkStatusService orderBulkStatusService;
+    
+    @Autowired
+    private ChangeFeed changeFeed;
+    
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+    
+    @Autowired
+    private OrderArchiver orderArchiver;
+    
+    @Autowired
+    private OrderPaymentReconciler reconciler;
+    
+    // Create order; a repeated Idempotency-Key gets the original response instead of a second order
     @PostMapping
-    public ResponseEntity<Order> createOrder(@RequestBody Order order) {
-        Order createdOrder = orderService.createOrder(order);
-        return new ResponseEntity<>(createdOrder, HttpStatus.CREATED);
+    public ResponseEntity<?> createOrder(
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+            @RequestBody Order order) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return new ResponseEntity<>(orderService.createOrder(order), HttpStatus.CREATED);
+        }
+        return idempotencyStore.execute(idempotencyKey, order,
+                () -> new ResponseEntity<>(orderService.createOrder(order), HttpStatus.CREATED));
+    }
+    
+    // Idempotency-Key store size and replay counters
+    @GetMapping("/idempotency/stats")
+    public ResponseEntity<Map<String, Object>> getIdempotencyStats() {
+        return new ResponseEntity<>(idempotencyStore.stats(), HttpStatus.OK);
+    }
+    
+    // Place an order: prices it, holds stock and opens a pending payment, undoing on failure
+    @PostMapping("/place")
+    public Mono<ResponseEntity<?>> placeOrder(@RequestBody OrderRequest request) {
+        return orderPlacementService.placeOrder(request)
+                .<ResponseEntity<?>>map(placement -> new ResponseEntity<>(placement, HttpStatus.CREATED))
+                .onErrorResume(OrderPlacementException.class,
+                        e -> Mono.just(new ResponseEntity<>(e.getMessage(), e.getStatus())));
     }
     
     // Get all orders
@@ -31,18 +89,124 @@ public class OrderController {
         return new ResponseEntity<>(orders, HttpStatus.OK);
     }
     
-    // Get order by ID
+    // Live order status changes as Server-Sent Events; reconnects resume from Last-Event-ID
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> streamOrderEvents(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return changeFeed.subscribe(lastEventId);
+    }
+    
+    // Event feed subscriber and delivery counters
+    @GetMapping("/events/stats")
+    public ResponseEntity<Map<String, Object>> getEventStats() {
+        return new ResponseEntity<>(changeFeed.stats(), HttpStatus.OK);
+    }
+    
+    // Group commit metrics
+    @GetMapping("/group-commit/stats")
+    public ResponseEntity<Map<String, Object>> getGroupCommitStats() {
+        return new ResponseEntity<>(orderService.getGroupCommitStats(), HttpStatus.OK);
+    }
+    
+    // Move closed orders past the configured age into the archive now
+    @PostMapping("/archive/run")
+    public ResponseEntity<Map<String, Object>> runArchival() {
+        return new ResponseEntity<>(orderArchiver.archiveClosedOrders(), HttpStatus.OK);
+    }
+    
+    // Archive segment count, size on disk and the last archival run
+    @GetMapping("/archive/stats")
+    public ResponseEntity<Map<String, Object>> getArchiveStats() {
+        return new ResponseEntity<>(orderArchiver.stats(), HttpStatus.OK);
+    }
+    
+    // Reconcile every order against the payment service now and write a mismatch report
+    @PostMapping("/reconciliation/run")
+    public ResponseEntity<Map<String, Object>> runReconciliation() {
+        return new ResponseEntity<>(reconciler.reconcile(), HttpStatus.OK);
+    }
+    
+    // Progress of a running reconciliation and the outcome of the last one
+    @GetMapping("/reconciliation/stats")
+    public ResponseEntity<Map<String, Object>> getReconciliationStats() {
+        return new ResponseEntity<>(reconciler.stats(), HttpStatus.OK);
+    }
+    
+    // Mismatches found by the last completed reconciliation, one JSON object per line
+    @GetMapping("/reconciliation/report")
+    public ResponseEntity<?> getReconciliationReport() {
+        Path report = reconciler.lastReport().orElse(null);
+        if (report == null) {
+            return new ResponseEntity<>("No reconciliation report yet", HttpStatus.NOT_FOUND);
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_NDJSON);
+        return new ResponseEntity<>(new FileSystemResource(report), headers, HttpStatus.OK);
+    }
+    
+    // Overall and per-status order counts and revenue
+    @GetMapping("/analytics")
+    public ResponseEntity<?> getAnalyticsSummary() {
+        if (!orderService.isAnalyticsReady()) {
+            return new ResponseEntity<>("Analytics are still loading", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        return new ResponseEntity<>(orderService.getAnalyticsSummary(), HttpStatus.OK);
+    }
+    
+    // Order count and revenue for one product
+    @GetMapping("/analytics/products/{productId}")
+    public ResponseEntity<?> getProductAnalytics(@PathVariable Long productId) {
+        if (!orderService.isAnalyticsReady()) {
+            return new ResponseEntity<>("Analytics are still loading", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        return new ResponseEntity<>(orderService.getProductAnalytics(productId), HttpStatus.OK);
+    }
+    
+    // Order count and spend for one user
+    @GetMapping("/analytics/users/{userId}")
+    public ResponseEntity<?> getUserAnalytics(@PathVariable Long userId) {
+        if (!orderService.isAnalyticsReady()) {
+            return new ResponseEntity<>("Analytics are still loading", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        return new ResponseEntity<>(orderService.getUserAnalytics(userId), HttpStatus.OK);
+    }
+    
+    // Hourly order count and revenue, the last 24 hours unless from/to are given
+    @GetMapping("/analytics/timeline")
+    public ResponseEntity<?> getAnalyticsTimeline(@RequestParam(required = false) Instant from,
+            @RequestParam(required = false) Instant to) {
+        if (!orderService.isAnalyticsReady()) {
+            return new ResponseEntity<>("Analytics are still loading", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        Instant end = to == null ? Instant.now() : to;
+        Instant start = from == null ? end.minus(Duration.ofHours(24)) : from;
+        if (start.isAfter(end) || Duration.between(start, end).toDays() > 366) {
+            return new ResponseEntity<>("from must be before to and at most a year earlier", HttpStatus.BAD_REQUEST);
+        }
+        return new ResponseEntity<>(orderService.getAnalyticsTimeline(start, end), HttpStatus.OK);
+    }
+    
+    // Get order by ID; the ETag is the version to send back as If-Match
     @GetMapping("/{id}")
     public ResponseEntity<?> getOrderById(@PathVariable Long id) {
         try {
             Order order = orderService.getOrderById(id)
                     .orElseThrow(() -> new RuntimeException("Order not found"));
-            return new ResponseEntity<>(order, HttpStatus.OK);
+            return new ResponseEntity<>(order, ETags.headers(order.getVersion()), HttpStatus.OK);
         } catch (Exception e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
         }
     }
     
+    // Get orders of a user one keyset page at a time (pass nextCursor back as "after")
+    @GetMapping(value = "/user/{userId}", params = "size")
+    public ResponseEntity<OrderPage> getOrdersByUserIdPage(@PathVariable Long userId,
+            @RequestParam(required = false) Long after,
+            @RequestParam int size) {
+        OrderPage page = orderService.getOrdersByUserIdPage(userId, after, size);
+        return new ResponseEntity<>(page, HttpStatus.OK);
+    }
+    
     // Get orders by user ID
     @GetMapping("/user/{userId}")
     public ResponseEntity<List<Order>> getOrdersByUserId(@PathVariable Long userId) {
@@ -50,6 +214,15 @@ public class OrderController {
         return new ResponseEntity<>(orders, HttpStatus.OK);
     }
     
+    // Get orders with a status one keyset page at a time (pass nextCursor back as "after")
+    @GetMapping(value = "/status/{status}", params = "size")
+    public ResponseEntity<OrderPage> getOrdersByStatusPage(@PathVariable String status,
+            @RequestParam(required = false) Long after,
+            @RequestParam int size) {
+        OrderPage page = orderService.getOrdersByStatusPage(status, after, size);
+        return new ResponseEntity<>(page, HttpStatus.OK);
+    }
+    
     // Get orders by status
     @GetMapping("/status/{status}")
     public ResponseEntity<List<Order>> getOrdersByStatus(@PathVariable String status) {
@@ -57,6 +230,15 @@ public class OrderController {
         return new ResponseEntity<>(orders, HttpStatus.OK);
     }
     
+    // Get orders for a product one keyset page at a time (pass nextCursor back as "after")
+    @GetMapping(value = "/product/{productId}", params = "size")
+    public ResponseEntity<OrderPage> getOrdersByProductIdPage(@PathVariable Long productId,
+            @RequestParam(required = false) Long after,
+            @RequestParam int size) {
+        OrderPage page = orderService.getOrdersByProductIdPage(productId, after, size);
+        return new ResponseEntity<>(page, HttpStatus.OK);
+    }
+    
     // Get orders by product ID
     @GetMapping("/product/{productId}")
     public ResponseEntity<List<Order>> getOrdersByProductId(@PathVariable Long productId) {
@@ -64,28 +246,44 @@ public class OrderController {
         return new ResponseEntity<>(orders, HttpStatus.OK);
     }
     
-    // Update order
+    // Update order; with If-Match it only applies to that version (412 otherwise)
     @PutMapping("/{id}")
-    public ResponseEntity<?> updateOrder(@PathVariable Long id, @RequestBody Order order) {
+    public ResponseEntity<?> updateOrder(@PathVariable Long id, @RequestBody Order order,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
-            Order updatedOrder = orderService.updateOrder(id, order);
-            return new ResponseEntity<>(updatedOrder, HttpStatus.OK);
+            Order updatedOrder = orderService.updateOrder(id, order, ETags.parseIfMatch(ifMatch));
+            return new ResponseEntity<>(updatedOrder, ETags.headers(updatedOrder.getVersion()), HttpStatus.OK);
+        } catch (VersionConflictException e) {
+            return new ResponseEntity<>(e.getMessage(), ETags.headers(e.getCurrentVersion()), e.getStatus());
         } catch (Exception e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
         }
     }
     
-    // Update order status
+    // Update order status; with If-Match it only applies to that version (412 otherwise)
     @PatchMapping("/{id}/status")
-    public ResponseEntity<?> updateOrderStatus(@PathVariable Long id, @RequestBody Map<String, String> statusData) {
+    public ResponseEntity<?> updateOrderStatus(@PathVariable Long id, @RequestBody Map<String, String> statusData,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
-            Order order = orderService.updateOrderStatus(id, statusData.get("status"));
-            return new ResponseEntity<>(order, HttpStatus.OK);
+            Order order = orderService.updateOrderStatus(id, statusData.get("status"), ETags.parseIfMatch(ifMatch));
+            return new ResponseEntity<>(order, ETags.headers(order.getVersion()), HttpStatus.OK);
+        } catch (VersionConflictException e) {
+            return new ResponseEntity<>(e.getMessage(), ETags.headers(e.getCurrentVersion()), e.getStatus());
         } catch (Exception e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
         }
     }
     
+    // Move many orders to a new status in one call (listed ids, or every order in fromStatus)
+    @PostMapping("/status/bulk")
+    public ResponseEntity<?> updateOrderStatusBulk(@RequestBody BulkStatusRequest request) {
+        try {
+            return new ResponseEntity<>(orderBulkStatusService.transition(request), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+    
     // Delete order
     @DeleteMapping("/{id}")
     public ResponseEntity<?> deleteOrder(@PathVariable Long id) {
@@ -0,0 +1,17 @@
+package com.example.demo.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class OrderPlacementException extends RuntimeException {
+    
+    private final HttpStatus status;
+    
+    public OrderPlacementException(HttpStatus status, String message) {
+        super(message);
+        this.status = status;
+    }
+    
+    public HttpStatus getStatus() {
+        return status;
+    }
+}
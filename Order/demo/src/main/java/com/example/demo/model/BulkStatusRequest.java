@@ -0,0 +1,47 @@
+package com.example.demo.model;
+
+import java.util.List;
+
+public class BulkStatusRequest {
+    
+    private List<Long> ids; // orders to move; when absent every order in fromStatus is moved
+    
+    private String fromStatus; // optional with ids, required without
+    
+    private String toStatus;
+    
+    // Constructors
+    public BulkStatusRequest() {
+    }
+    
+    public BulkStatusRequest(List<Long> ids, String fromStatus, String toStatus) {
+        this.ids = ids;
+        this.fromStatus = fromStatus;
+        this.toStatus = toStatus;
+    }
+    
+    // Getters and Setters
+    public List<Long> getIds() {
+        return ids;
+    }
+    
+    public void setIds(List<Long> ids) {
+        this.ids = ids;
+    }
+    
+    public String getFromStatus() {
+        return fromStatus;
+    }
+    
+    public void setFromStatus(String fromStatus) {
+        this.fromStatus = fromStatus;
+    }
+    
+    public String getToStatus() {
+        return toStatus;
+    }
+    
+    public void setToStatus(String toStatus) {
+        this.toStatus = toStatus;
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.demo.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BulkStatusResult {
+    
+    private String toStatus;
+    
+    private long requested;
+    
+    private long updated;
+    
+    private long rejected;
+    
+    private long elapsedMillis;
+    
+    // One per order, in request order; a fromStatus request lists only the orders it did not update.
+    // At most order.bulk-status.max-outcomes are kept, outcomesTruncated marks a cut list.
+    private List<Outcome> outcomes = new ArrayList<>();
+    
+    private boolean outcomesTruncated;
+    
+    // What happened to one order; previousStatus is null when the order was not found
+    public static class Outcome {
+        
+        private Long id;
+        
+        private String result; // UPDATED, NOT_FOUND, INVALID_TRANSITION, STATUS_MISMATCH
+        
+        private String previousStatus;
+        
+        private String message;
+        
+        public Outcome() {
+        }
+        
+        public Outcome(Long id, String result, String previousStatus, String message) {
+            this.id = id;
+            this.result = result;
+            this.previousStatus = previousStatus;
+            this.message = message;
+        }
+        
+        public Long getId() {
+            return id;
+        }
+        
+        public String getResult() {
+            return result;
+        }
+        
+        public String getPreviousStatus() {
+            return previousStatus;
+        }
+        
+        public String getMessage() {
+            return message;
+        }
+    }
+    
+    // Getters and Setters
+    public String getToStatus() {
+        return toStatus;
+    }
+    
+    public void setToStatus(String toStatus) {
+        this.toStatus = toStatus;
+    }
+    
+    public long getRequested() {
+        return requested;
+    }
+    
+    public void setRequested(long requested) {
+        this.requested = requested;
+    }
+    
+    public long getUpdated() {
+        return updated;
+    }
+    
+    public void setUpdated(long updated) {
+        this.updated = updated;
+    }
+    
+    public long getRejected() {
+        return rejected;
+    }
+    
+    public void setRejected(long rejected) {
+        this.rejected = rejected;
+    }
+    
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+    
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+    
+    public List<Outcome> getOutcomes() {
+        return outcomes;
+    }
+    
+    public void setOutcomes(List<Outcome> outcomes) {
+        this.outcomes = outcomes;
+    }
+    
+    public boolean isOutcomesTruncated() {
+        return outcomesTruncated;
+    }
+    
+    public void setOutcomesTruncated(boolean outcomesTruncated) {
+        this.outcomesTruncated = outcomesTruncated;
+    }
+}
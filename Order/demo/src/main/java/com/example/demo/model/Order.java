@@ -2,12 +2,19 @@ package com.example.demo.model;
 
 import jakarta.persistence.*;
 
+import java.time.Instant;
+
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_user_id", columnList = "user_id, id"),
+        @Index(name = "idx_orders_status_id", columnList = "status, id"),
+        @Index(name = "idx_orders_product_id", columnList = "product_id, id")
+})
 public class Order {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_seq")
+    @SequenceGenerator(name = "order_seq", sequenceName = "order_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false, name = "user_id")
@@ -25,6 +32,12 @@ public class Order {
     @Column(nullable = false)
     private String status; // PENDING, CONFIRMED, SHIPPED, DELIVERED, CANCELLED
     
+    @Column(name = "created_at", updatable = false)
+    private Instant createdAt;
+    
+    @Version
+    private Long version; // bumped on every update; exposed as the ETag
+    
     // Constructors
     public Order() {
     }
@@ -85,4 +98,20 @@ public class Order {
     public void setStatus(String status) {
         this.status = status;
     }
+    
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+    
+    public Long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
@@ -0,0 +1,36 @@
+package com.example.demo.model;
+
+import java.util.List;
+
+public class OrderPage {
+    
+    private List<Order> items;
+    
+    private Long nextCursor; // id to pass as "after" for the next page, null on the last page
+    
+    // Constructors
+    public OrderPage() {
+    }
+    
+    public OrderPage(List<Order> items, Long nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+    
+    // Getters and Setters
+    public List<Order> getItems() {
+        return items;
+    }
+    
+    public void setItems(List<Order> items) {
+        this.items = items;
+    }
+    
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+    
+    public void setNextCursor(Long nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
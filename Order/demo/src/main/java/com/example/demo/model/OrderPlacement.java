@@ -0,0 +1,45 @@
+package com.example.demo.model;
+
+public class OrderPlacement {
+    
+    private Order order;
+    
+    private Long paymentId;
+    
+    private String reservationId;
+    
+    // Constructors
+    public OrderPlacement() {
+    }
+    
+    public OrderPlacement(Order order, Long paymentId, String reservationId) {
+        this.order = order;
+        this.paymentId = paymentId;
+        this.reservationId = reservationId;
+    }
+    
+    // Getters and Setters
+    public Order getOrder() {
+        return order;
+    }
+    
+    public void setOrder(Order order) {
+        this.order = order;
+    }
+    
+    public Long getPaymentId() {
+        return paymentId;
+    }
+    
+    public void setPaymentId(Long paymentId) {
+        this.paymentId = paymentId;
+    }
+    
+    public String getReservationId() {
+        return reservationId;
+    }
+    
+    public void setReservationId(String reservationId) {
+        this.reservationId = reservationId;
+    }
+}
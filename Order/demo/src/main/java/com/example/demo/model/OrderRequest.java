@@ -0,0 +1,56 @@
+package com.example.demo.model;
+
+public class OrderRequest {
+    
+    private Long userId;
+    
+    private Long productId;
+    
+    private Integer quantity;
+    
+    private String paymentMode; // CREDIT_CARD, DEBIT_CARD, UPI, NET_BANKING, CASH
+    
+    // Constructors
+    public OrderRequest() {
+    }
+    
+    public OrderRequest(Long userId, Long productId, Integer quantity, String paymentMode) {
+        this.userId = userId;
+        this.productId = productId;
+        this.quantity = quantity;
+        this.paymentMode = paymentMode;
+    }
+    
+    // Getters and Setters
+    public Long getUserId() {
+        return userId;
+    }
+    
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+    
+    public Long getProductId() {
+        return productId;
+    }
+    
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+    
+    public Integer getQuantity() {
+        return quantity;
+    }
+    
+    public void setQuantity(Integer quantity) {
+        this.quantity = quantity;
+    }
+    
+    public String getPaymentMode() {
+        return paymentMode;
+    }
+    
+    public void setPaymentMode(String paymentMode) {
+        this.paymentMode = paymentMode;
+    }
+}
@@ -1,14 +1,62 @@
 package com.example.demo.repository;
 
 import com.example.demo.model.Order;
+import org.springframework.data.domain.Pageable;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
     List<Order> findByUserId(Long userId);
     List<Order> findByStatus(String status);
     List<Order> findByProductId(Long productId);
+    
+    // Keyset pages, each served by the matching (column, id) index
+    List<Order> findByUserIdAndIdGreaterThanOrderByIdAsc(Long userId, Long afterId, Pageable pageable);
+    List<Order> findByStatusAndIdGreaterThanOrderByIdAsc(String status, Long afterId, Pageable pageable);
+    List<Order> findByProductIdAndIdGreaterThanOrderByIdAsc(Long productId, Long afterId, Pageable pageable);
+    List<Order> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
+    
+    // Bulk status transitions: lock the rows of one chunk, then move them with one statement per source status
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select o from Order o where o.id in :ids")
+    List<Order> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+    
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select o from Order o where o.status = :status and o.id > :afterId order by o.id")
+    List<Order> findByStatusForUpdate(@Param("status") String status, @Param("afterId") Long afterId, Pageable pageable);
+    
+    @Modifying
+    @Query("update Order o set o.status = :toStatus, o.version = o.version + 1 where o.id in :ids and o.status = :fromStatus")
+    int updateStatus(@Param("ids") Collection<Long> ids, @Param("fromStatus") String fromStatus,
+            @Param("toStatus") String toStatus);
+    
+    // Closed orders due for the archive tier, oldest ids first, locked until they are deleted
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select o from Order o where o.status in :statuses and (o.createdAt is null or o.createdAt < :cutoff) order by o.id")
+    List<Order> findArchivable(@Param("statuses") Collection<String> statuses, @Param("cutoff") Instant cutoff,
+            Pageable pageable);
+    
+    // Forward-only cursor over every order, read in fetch-size chunks
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("select o from Order o order by o.id")
+    Stream<Order> streamAllByOrderByIdAsc();
 }
@@ -0,0 +1,146 @@
+package com.example.demo.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Idempotency-Key handling for create endpoints.
+// The first request with a key runs and its successful response is kept for ttl-seconds (at most
+// max-keys keys); a repeat gets that response back instead of creating another row. A repeat that
+// arrives while the first is still running waits for it rather than racing it. Failed or non-2xx
+// responses are not kept, so the client can retry them. Reusing a key with a different body is
+// rejected with 422.
+@Component
+public class IdempotencyStore {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    private final Cache<String, Entry> entries;
+    private final ObjectMapper objectMapper;
+    private final long waitMs;
+
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder mismatched = new LongAdder();
+
+    public IdempotencyStore(ObjectMapper objectMapper,
+                            @Value("${idempotency.max-keys:100000}") long maxKeys,
+                            @Value("${idempotency.ttl-seconds:86400}") long ttlSeconds,
+                            @Value("${idempotency.wait-ms:10000}") long waitMs) {
+        this.objectMapper = objectMapper;
+        this.waitMs = waitMs;
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    // Run action once per key; request is what the key is bound to and must be read before action runs
+    public ResponseEntity<?> execute(String key, Object request, Supplier<ResponseEntity<?>> action) {
+        String fingerprint = fingerprint(request);
+        while (true) {
+            Entry mine = new Entry(fingerprint);
+            Entry existing = entries.asMap().putIfAbsent(key, mine);
+            if (existing == null) {
+                return run(key, mine, action);
+            }
+            if (!existing.fingerprint.equals(fingerprint)) {
+                mismatched.increment();
+                return new ResponseEntity<>("Idempotency-Key was already used with a different request",
+                        HttpStatus.UNPROCESSABLE_ENTITY);
+            }
+            if (!existing.response.isDone()) {
+                coalesced.increment();
+            }
+            try {
+                ResponseEntity<?> original = existing.response.get(waitMs, TimeUnit.MILLISECONDS);
+                replayed.increment();
+                return replay(original);
+            } catch (TimeoutException e) {
+                return new ResponseEntity<>("A request with this Idempotency-Key is still in progress",
+                        HttpStatus.CONFLICT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for the original request", e);
+            } catch (ExecutionException e) {
+                // The original failed and released the key; try again as the first request
+            }
+        }
+    }
+
+    // Key counts and how often a repeat was answered from the store
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("keys", entries.estimatedSize());
+        result.put("executed", executed.sum());
+        result.put("replayed", replayed.sum());
+        result.put("coalesced", coalesced.sum());
+        result.put("mismatched", mismatched.sum());
+        return result;
+    }
+
+    private ResponseEntity<?> run(String key, Entry entry, Supplier<ResponseEntity<?>> action) {
+        executed.increment();
+        ResponseEntity<?> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            entries.asMap().remove(key, entry);
+            entry.response.completeExceptionally(e);
+            throw e;
+        }
+        if (response.getStatusCode().is2xxSuccessful()) {
+            entry.response.complete(response);
+        } else {
+            entries.asMap().remove(key, entry);
+            entry.response.completeExceptionally(new IllegalStateException("Not kept: " + response.getStatusCode()));
+        }
+        return response;
+    }
+
+    private static ResponseEntity<?> replay(ResponseEntity<?> original) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(original.getHeaders());
+        headers.set("Idempotent-Replayed", "true");
+        return new ResponseEntity<>(original.getBody(), headers, original.getStatusCode());
+    }
+
+    private String fingerprint(Object request) {
+        try {
+            byte[] json = objectMapper.writeValueAsString(request).getBytes(StandardCharsets.UTF_8);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(json));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Cannot fingerprint request", e);
+        }
+    }
+
+    private static final class Entry {
+        private final String fingerprint;
+        private final CompletableFuture<ResponseEntity<?>> response = new CompletableFuture<>();
+
+        private Entry(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+}
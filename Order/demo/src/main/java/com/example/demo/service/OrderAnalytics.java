@@ -0,0 +1,249 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Order;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Running order counts and revenue, by status, product, user and hour.
+// Every write applies the difference between the old and the new version of an order, so
+// each rollup stays exact without rescanning. Products, users and hours are long keys in
+// open-addressing tables holding parallel primitive arrays, so there is no boxing and no
+// per-entry object.
+@Component
+public class OrderAnalytics {
+
+    private static final long NO_BUCKET = Long.MIN_VALUE;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Totals> byStatus = new HashMap<>();
+    private final LongTotalsMap byProduct = new LongTotalsMap();
+    private final LongTotalsMap byUser = new LongTotalsMap();
+    private final LongTotalsMap byHour = new LongTotalsMap();
+    private final Totals overall = new Totals();
+
+    private volatile boolean ready;
+
+    // Count a new order
+    public void add(Order order) {
+        lock.writeLock().lock();
+        try {
+            apply(Snapshot.of(order), 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Move an order from its previous version to its current one
+    public void update(Snapshot before, Order after) {
+        lock.writeLock().lock();
+        try {
+            apply(before, -1);
+            apply(Snapshot.of(after), 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Forget a deleted order
+    public void remove(Snapshot before) {
+        lock.writeLock().lock();
+        try {
+            apply(before, -1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void markReady() {
+        ready = true;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // Overall and per-status totals
+    public Map<String, Object> summary() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> statuses = new TreeMap<>();
+            byStatus.forEach((status, totals) -> statuses.put(status, totals.toMap()));
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("orders", overall.count);
+            result.put("revenue", overall.revenue);
+            result.put("byStatus", statuses);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Order count and revenue for one product
+    public Map<String, Object> forProduct(long productId) {
+        return lookup(byProduct, productId);
+    }
+
+    // Order count and spend for one user
+    public Map<String, Object> forUser(long userId) {
+        return lookup(byUser, userId);
+    }
+
+    // Hourly order count and revenue between two instants; hours without orders are left out
+    public List<Map<String, Object>> timeline(Instant from, Instant to) {
+        long first = bucketOf(from);
+        long last = bucketOf(to);
+        List<Map<String, Object>> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (long hour = first; hour <= last; hour++) {
+                int slot = byHour.find(hour);
+                if (slot >= 0) {
+                    Map<String, Object> point = new LinkedHashMap<>();
+                    point.put("hour", Instant.ofEpochSecond(hour * 3600));
+                    point.put("orders", byHour.counts[slot]);
+                    point.put("revenue", byHour.revenues[slot]);
+                    result.add(point);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    private Map<String, Object> lookup(LongTotalsMap map, long key) {
+        lock.readLock().lock();
+        try {
+            int slot = map.find(key);
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("orders", slot < 0 ? 0L : map.counts[slot]);
+            result.put("revenue", slot < 0 ? 0.0 : map.revenues[slot]);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void apply(Snapshot order, int sign) {
+        double revenue = sign * order.totalPrice;
+        overall.add(sign, revenue);
+        Totals status = byStatus.computeIfAbsent(order.status, s -> new Totals());
+        status.add(sign, revenue);
+        if (status.count == 0) {
+            byStatus.remove(order.status);
+        }
+        byProduct.add(order.productId, sign, revenue);
+        byUser.add(order.userId, sign, revenue);
+        if (order.hour != NO_BUCKET) {
+            byHour.add(order.hour, sign, revenue);
+        }
+    }
+
+    private static long bucketOf(Instant instant) {
+        return instant.truncatedTo(ChronoUnit.HOURS).getEpochSecond() / 3600;
+    }
+
+    // The fields of an order the rollups depend on, taken before the order is changed
+    public record Snapshot(String status, long productId, long userId, double totalPrice, long hour) {
+        public static Snapshot of(Order order) {
+            return new Snapshot(
+                    order.getStatus(),
+                    order.getProductId(),
+                    order.getUserId(),
+                    order.getTotalPrice() == null ? 0.0 : order.getTotalPrice(),
+                    order.getCreatedAt() == null ? NO_BUCKET : bucketOf(order.getCreatedAt()));
+        }
+    }
+
+    private static final class Totals {
+        private long count;
+        private double revenue;
+
+        private void add(int sign, double amount) {
+            count += sign;
+            revenue += amount;
+        }
+
+        private Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("orders", count);
+            map.put("revenue", revenue);
+            return map;
+        }
+    }
+
+    // Linear-probing long -> (count, revenue) table. Entries whose count drops to zero stay
+    // in place, which keeps probing simple; keys are ids and hours, so the table only grows
+    // with the number of distinct products, users and hours ever seen.
+    private static final class LongTotalsMap {
+        private long[] keys = new long[64];
+        private boolean[] used = new boolean[64];
+        private long[] counts = new long[64];
+        private double[] revenues = new double[64];
+        private int size;
+
+        private int find(long key) {
+            int mask = keys.length - 1;
+            for (int slot = hash(key) & mask; used[slot]; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        private void add(long key, int count, double revenue) {
+            if ((size + 1) * 4 > keys.length * 3) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (used[slot] && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (!used[slot]) {
+                used[slot] = true;
+                keys[slot] = key;
+                size++;
+            }
+            counts[slot] += count;
+            revenues[slot] += revenue;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            boolean[] oldUsed = used;
+            long[] oldCounts = counts;
+            double[] oldRevenues = revenues;
+            int capacity = oldKeys.length * 2;
+            keys = new long[capacity];
+            used = new boolean[capacity];
+            counts = new long[capacity];
+            revenues = new double[capacity];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) {
+                    add(oldKeys[i], 0, 0.0);
+                    int slot = find(oldKeys[i]);
+                    counts[slot] = oldCounts[i];
+                    revenues[slot] = oldRevenues[i];
+                }
+            }
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
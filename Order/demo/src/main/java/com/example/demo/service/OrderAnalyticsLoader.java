@@ -0,0 +1,39 @@
+package com.example.demo.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+// Builds the analytics rollups during startup, in a lifecycle phase that runs before the web
+// server starts its connectors (phase Integer.MAX_VALUE - 2048) and before scheduled jobs begin.
+// No order can be created or changed while the rebuild reads the table and the archive, so the
+// incremental updates that follow start from a complete count.
+@Component
+public class OrderAnalyticsLoader implements SmartLifecycle {
+
+    @Autowired
+    private OrderService orderService;
+
+    private volatile boolean running;
+
+    @Override
+    public void start() {
+        orderService.buildAnalytics();
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+}
@@ -0,0 +1,624 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Order;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+// Read-only archive tier for closed orders.
+// Each archival run writes one immutable segment file: records sorted by id, varint encoded with
+// ids delta-coded, followed by a sparse index holding the id and offset of every index-interval-th
+// record, and by user id and product id indexes listing every record by that key. Segments are
+// memory-mapped on open; a lookup by id binary-searches the sparse index and decodes at most one
+// interval of records, a lookup by user or product binary-searches its index and decodes only the
+// matching records, other queries decode the segments sequentially.
+//
+// Layout: MAGIC | records | index (count, then id/offset pairs) | user index | product index |
+// footer (index offset, record count, min id, max id, user index offset, product index offset,
+// MAGIC). A record is id delta (reset at each index point), user id, product id, quantity, total
+// price as raw double bits, a status byte whose top bit marks a creation time, and that time as
+// epoch seconds and nanos. A key index is a count, then key/id/offset entries sorted by key and id.
+@Component
+public class OrderArchive {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderArchive.class);
+
+    // Only these ever reach the archive; orders in any other status are always in the table
+    public static final List<String> CLOSED_STATUSES = List.of("DELIVERED", "CANCELLED");
+
+    private static final int MAGIC = 0x4F534732; // "OSG2"
+    private static final int FOOTER_BYTES = 8 + 4 + 8 + 8 + 8 + 8 + 4;
+    private static final int KEY_ENTRY_BYTES = 8 + 8 + 4;
+    private static final String DISCARDED = ".discarded";
+    private static final String[] STATUSES = {"DELIVERED", "CANCELLED", "PENDING", "CONFIRMED", "SHIPPED"};
+    private static final int HAS_CREATED_AT = 0x80;
+    private static final int USER = 0;
+    private static final int PRODUCT = 1;
+
+    @Value("${order.archive.dir:data/order-archive}")
+    private String dir;
+
+    @Value("${order.archive.index-interval:64}")
+    private int indexInterval;
+
+    private Path directory;
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private int nextSegmentNumber = 1;
+
+    @PostConstruct
+    void open() throws IOException {
+        directory = Paths.get(dir);
+        if (!Files.isDirectory(directory)) {
+            return; // created by the first archival run
+        }
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(directory, "*.tmp")) {
+            for (Path leftover : leftovers) {
+                Files.delete(leftover); // a run that never reached its rename
+            }
+        }
+        // Segments discarded while still mapped, which Windows will not delete; nothing is mapped yet
+        try (DirectoryStream<Path> markers = Files.newDirectoryStream(directory, "*" + DISCARDED)) {
+            for (Path marker : markers) {
+                String name = marker.getFileName().toString();
+                Files.deleteIfExists(marker.resolveSibling(name.substring(0, name.length() - DISCARDED.length())));
+                Files.delete(marker);
+            }
+        }
+        List<Segment> found = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "segment-*.seg")) {
+            for (Path file : files) {
+                found.add(Segment.map(file));
+            }
+        }
+        found.sort(Comparator.comparingInt(segment -> segment.number));
+        segments.addAll(found);
+        if (!found.isEmpty()) {
+            nextSegmentNumber = found.get(found.size() - 1).number + 1;
+        }
+        log.info("Order archive at {}: {} segments, {} orders", directory.toAbsolutePath(), found.size(), count());
+    }
+
+    // Write orders to a new segment and make it readable; the file is durable when this returns
+    public synchronized Segment write(List<Order> orders) {
+        List<Order> sorted = new ArrayList<>(orders);
+        sorted.sort(Comparator.comparing(Order::getId));
+        Encoder encoder = new Encoder(Math.max(64, sorted.size() * 32));
+        encoder.putInt(MAGIC);
+
+        int indexCount = (sorted.size() + indexInterval - 1) / indexInterval;
+        long[] indexIds = new long[indexCount];
+        int[] indexOffsets = new int[indexCount];
+        int[] recordOffsets = new int[sorted.size()];
+        long previous = 0;
+        for (int i = 0; i < sorted.size(); i++) {
+            Order order = sorted.get(i);
+            if (i % indexInterval == 0) {
+                indexIds[i / indexInterval] = order.getId();
+                indexOffsets[i / indexInterval] = encoder.position();
+                previous = 0;
+            }
+            recordOffsets[i] = encoder.position();
+            encode(encoder, order, previous);
+            previous = order.getId();
+        }
+
+        int indexOffset = encoder.position();
+        encoder.putInt(indexCount);
+        for (int i = 0; i < indexCount; i++) {
+            encoder.putLong(indexIds[i]);
+            encoder.putInt(indexOffsets[i]);
+        }
+        int userIndexOffset = encoder.position();
+        putKeyIndex(encoder, sorted, recordOffsets, Order::getUserId);
+        int productIndexOffset = encoder.position();
+        putKeyIndex(encoder, sorted, recordOffsets, Order::getProductId);
+        encoder.putLong(indexOffset);
+        encoder.putInt(sorted.size());
+        encoder.putLong(sorted.isEmpty() ? 0 : sorted.get(0).getId());
+        encoder.putLong(sorted.isEmpty() ? 0 : sorted.get(sorted.size() - 1).getId());
+        encoder.putLong(userIndexOffset);
+        encoder.putLong(productIndexOffset);
+        encoder.putInt(MAGIC);
+
+        String name = String.format("segment-%08d.seg", nextSegmentNumber);
+        Path target = directory.resolve(name);
+        Path temp = directory.resolve(name + ".tmp");
+        try {
+            Files.createDirectories(directory);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                ByteBuffer bytes = encoder.toBuffer();
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            Segment segment = Segment.map(target);
+            segments.add(segment);
+            nextSegmentNumber++;
+            return segment;
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // the .tmp file is removed on the next start
+            }
+            throw new UncheckedIOException("Cannot write archive segment " + target, e);
+        }
+    }
+
+    // Undo a write whose rows could not be removed from the orders table. The mapping is only released
+    // when the buffer is collected, and until then Windows refuses the delete; the segment is then
+    // marked so the next start deletes it instead of loading its orders a second time.
+    public synchronized void discard(Segment segment) {
+        segments.remove(segment);
+        try {
+            Files.deleteIfExists(segment.file);
+            return;
+        } catch (IOException e) {
+            log.warn("Cannot delete discarded archive segment {} yet, it is removed on the next start: {}",
+                    segment.file, e.toString());
+        }
+        try {
+            Files.createFile(segment.file.resolveSibling(segment.file.getFileName() + DISCARDED));
+        } catch (IOException e) {
+            log.error("Cannot mark discarded archive segment {}; delete it before the next start or its orders "
+                    + "are listed twice", segment.file, e);
+        }
+    }
+
+    public Optional<Order> find(long id) {
+        for (Segment segment : segments) {
+            if (id >= segment.minId && id <= segment.maxId) {
+                Order order = segment.find(id);
+                if (order != null) {
+                    return Optional.of(order);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    // Every archived order of a user, in no particular order
+    public List<Order> findByUserId(long userId) {
+        return findByKey(USER, userId);
+    }
+
+    // Every archived order for a product, in no particular order
+    public List<Order> findByProductId(long productId) {
+        return findByKey(PRODUCT, productId);
+    }
+
+    // The first size archived orders of a user after afterId, by id
+    public List<Order> pageByUserId(long userId, long afterId, int size) {
+        return pageByKey(USER, userId, afterId, size);
+    }
+
+    // The first size archived orders for a product after afterId, by id
+    public List<Order> pageByProductId(long productId, long afterId, int size) {
+        return pageByKey(PRODUCT, productId, afterId, size);
+    }
+
+    private List<Order> findByKey(int key, long value) {
+        List<Order> matches = new ArrayList<>();
+        for (Segment segment : segments) {
+            segment.forKey(key, value, Long.MIN_VALUE, Integer.MAX_VALUE, matches::add);
+        }
+        return matches;
+    }
+
+    private List<Order> pageByKey(int key, long value, long afterId, int size) {
+        List<Order> matches = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (segment.maxId > afterId) {
+                segment.forKey(key, value, afterId, size, matches::add);
+            }
+        }
+        matches.sort(Comparator.comparing(Order::getId));
+        return matches.size() > size ? new ArrayList<>(matches.subList(0, size)) : matches;
+    }
+
+    // Every archived order matching the filter, in no particular order
+    public List<Order> findAll(Predicate<Order> filter) {
+        List<Order> matches = new ArrayList<>();
+        forEach(order -> {
+            if (filter.test(order)) {
+                matches.add(order);
+            }
+        });
+        return matches;
+    }
+
+    // The first size archived orders after afterId that match the filter, by id. The segments are
+    // merged from afterId on and decoding stops at the size-th match.
+    public List<Order> page(Predicate<Order> filter, long afterId, int size) {
+        List<Order> matches = new ArrayList<>();
+        for (Iterator<Order> orders = iteratorById(afterId); orders.hasNext() && matches.size() < size; ) {
+            Order order = orders.next();
+            if (filter.test(order)) {
+                matches.add(order);
+            }
+        }
+        return matches;
+    }
+
+    public void forEach(Consumer<Order> action) {
+        segments.forEach(segment -> segment.forEach(action));
+    }
+
+    // Every archived order by id, merged across segments; holds one decoded order per segment
+    public Iterator<Order> iteratorById() {
+        return iteratorById(Long.MIN_VALUE);
+    }
+
+    private Iterator<Order> iteratorById(long afterId) {
+        PriorityQueue<Head> heads = new PriorityQueue<>(Comparator.comparingLong(head -> head.order.getId()));
+        for (Segment segment : segments) {
+            if (segment.maxId <= afterId) {
+                continue;
+            }
+            Iterator<Order> orders = segment.iterator(afterId);
+            if (orders.hasNext()) {
+                heads.add(new Head(orders.next(), orders));
+            }
+        }
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public Order next() {
+                Head head = heads.poll();
+                if (head == null) {
+                    throw new NoSuchElementException();
+                }
+                if (head.rest.hasNext()) {
+                    heads.add(new Head(head.rest.next(), head.rest));
+                }
+                return head.order;
+            }
+        };
+    }
+
+    public long count() {
+        return segments.stream().mapToLong(segment -> segment.count).sum();
+    }
+
+    // Segment count and size on disk
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        long bytes = segments.stream().mapToLong(segment -> segment.buffer.capacity()).sum();
+        long orders = count();
+        result.put("directory", directory.toAbsolutePath().toString());
+        result.put("segments", segments.size());
+        result.put("orders", orders);
+        result.put("bytes", bytes);
+        result.put("bytesPerOrder", orders == 0 ? 0 : (double) bytes / orders);
+        return result;
+    }
+
+    // Key index entries for every record, sorted by key and then id (the records are already in id order)
+    private static void putKeyIndex(Encoder out, List<Order> sorted, int[] recordOffsets, Function<Order, Long> key) {
+        Integer[] byKey = new Integer[sorted.size()];
+        for (int i = 0; i < byKey.length; i++) {
+            byKey[i] = i;
+        }
+        Arrays.sort(byKey, Comparator.comparing(i -> key.apply(sorted.get(i)))); // stable, keeps id order
+        out.putInt(byKey.length);
+        for (int i : byKey) {
+            out.putLong(key.apply(sorted.get(i)));
+            out.putLong(sorted.get(i).getId());
+            out.putInt(recordOffsets[i]);
+        }
+    }
+
+    private static void encode(Encoder out, Order order, long previousId) {
+        out.putVarLong(order.getId() - previousId);
+        out.putVarLong(zigZag(order.getUserId()));
+        out.putVarLong(zigZag(order.getProductId()));
+        out.putVarLong(zigZag(order.getQuantity()));
+        out.putLong(Double.doubleToRawLongBits(order.getTotalPrice() == null ? Double.NaN : order.getTotalPrice()));
+        int status = Arrays.asList(STATUSES).indexOf(order.getStatus());
+        if (status < 0) {
+            throw new IllegalArgumentException("Cannot archive order " + order.getId() + " with status " + order.getStatus());
+        }
+        Instant createdAt = order.getCreatedAt();
+        out.putByte(createdAt == null ? status : status | HAS_CREATED_AT);
+        if (createdAt != null) {
+            out.putVarLong(zigZag(createdAt.getEpochSecond()));
+            out.putVarLong(createdAt.getNano());
+        }
+    }
+
+    private static Order decode(ByteBuffer in, long previousId) {
+        Order order = new Order();
+        order.setId(previousId + readVarLong(in));
+        order.setUserId(unZigZag(readVarLong(in)));
+        order.setProductId(unZigZag(readVarLong(in)));
+        order.setQuantity((int) unZigZag(readVarLong(in)));
+        double totalPrice = Double.longBitsToDouble(in.getLong());
+        order.setTotalPrice(Double.isNaN(totalPrice) ? null : totalPrice);
+        int status = in.get() & 0xFF;
+        order.setStatus(STATUSES[status & ~HAS_CREATED_AT]);
+        if ((status & HAS_CREATED_AT) != 0) {
+            long seconds = unZigZag(readVarLong(in));
+            order.setCreatedAt(Instant.ofEpochSecond(seconds, readVarLong(in)));
+        }
+        return order;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    // One mapped segment file and its sparse index
+    public static final class Segment {
+        private final Path file;
+        private final int number;
+        private final MappedByteBuffer buffer;
+        private final long[] indexIds;
+        private final int[] indexOffsets;
+        private final int indexStart;
+        private final int count;
+        private final long minId;
+        private final long maxId;
+        private final int[] keyIndexStarts; // by USER, PRODUCT
+
+        private Segment(Path file, int number, MappedByteBuffer buffer, long[] indexIds, int[] indexOffsets,
+                        int indexStart, int count, long minId, long maxId, int[] keyIndexStarts) {
+            this.file = file;
+            this.number = number;
+            this.buffer = buffer;
+            this.indexIds = indexIds;
+            this.indexOffsets = indexOffsets;
+            this.indexStart = indexStart;
+            this.count = count;
+            this.minId = minId;
+            this.maxId = maxId;
+            this.keyIndexStarts = keyIndexStarts;
+        }
+
+        static Segment map(Path file) throws IOException {
+            MappedByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            int footer = buffer.capacity() - FOOTER_BYTES;
+            if (footer < 4 || buffer.getInt(0) != MAGIC || buffer.getInt(buffer.capacity() - 4) != MAGIC) {
+                throw new IOException("Not an order archive segment: " + file);
+            }
+            int indexStart = (int) buffer.getLong(footer);
+            int count = buffer.getInt(footer + 8);
+            long minId = buffer.getLong(footer + 12);
+            long maxId = buffer.getLong(footer + 20);
+            int[] keyIndexStarts = {(int) buffer.getLong(footer + 28), (int) buffer.getLong(footer + 36)};
+
+            int indexCount = buffer.getInt(indexStart);
+            long[] indexIds = new long[indexCount];
+            int[] indexOffsets = new int[indexCount];
+            for (int i = 0, at = indexStart + 4; i < indexCount; i++, at += 12) {
+                indexIds[i] = buffer.getLong(at);
+                indexOffsets[i] = buffer.getInt(at + 8);
+            }
+            String name = file.getFileName().toString();
+            int number = Integer.parseInt(name.substring("segment-".length(), name.length() - ".seg".length()));
+            return new Segment(file, number, buffer, indexIds, indexOffsets, indexStart, count, minId, maxId, keyIndexStarts);
+        }
+
+        // Orders whose key equals value and whose id is above afterId, at most limit of them, by id
+        void forKey(int key, long value, long afterId, int limit, Consumer<Order> action) {
+            int start = keyIndexStarts[key];
+            int entries = buffer.getInt(start);
+            // First entry at or after (value, afterId + 1)
+            int low = 0;
+            int high = entries;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                int at = start + 4 + mid * KEY_ENTRY_BYTES;
+                long midKey = buffer.getLong(at);
+                if (midKey < value || (midKey == value && buffer.getLong(at + 8) <= afterId)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            for (int i = low, taken = 0; i < entries && taken < limit; i++, taken++) {
+                int at = start + 4 + i * KEY_ENTRY_BYTES;
+                if (buffer.getLong(at) != value) {
+                    break;
+                }
+                action.accept(decodeAt(buffer.getInt(at + 16), buffer.getLong(at + 8)));
+            }
+        }
+
+        // The record at offset, whose id is known from a key index
+        private Order decodeAt(int offset, long id) {
+            ByteBuffer in = buffer.duplicate();
+            in.position(offset);
+            long delta = readVarLong(in.duplicate());
+            return decode(in, id - delta);
+        }
+
+        Order find(long id) {
+            int slot = Arrays.binarySearch(indexIds, id);
+            if (slot < 0) {
+                slot = -slot - 2; // the index point before id
+            }
+            if (slot < 0) {
+                return null;
+            }
+            ByteBuffer in = buffer.duplicate();
+            in.position(indexOffsets[slot]);
+            int end = slot + 1 < indexOffsets.length ? indexOffsets[slot + 1] : indexStart;
+            long previous = 0;
+            while (in.position() < end) {
+                Order order = decode(in, previous);
+                if (order.getId() == id) {
+                    return order;
+                }
+                if (order.getId() > id) {
+                    return null;
+                }
+                previous = order.getId();
+            }
+            return null;
+        }
+
+        // Sequential decode in id order of the records above afterId, starting from the index point
+        // before it; the id delta restarts at every index point
+        Iterator<Order> iterator(long afterId) {
+            int slot = Arrays.binarySearch(indexIds, afterId);
+            int first = Math.max(0, slot < 0 ? -slot - 2 : slot);
+            ByteBuffer in = buffer.duplicate();
+            in.position(indexOffsets.length == 0 ? indexStart : indexOffsets[first]);
+            return new Iterator<>() {
+                private int nextSlot = first + 1;
+                private long previous = 0;
+                private Order pending = advance();
+
+                @Override
+                public boolean hasNext() {
+                    return pending != null;
+                }
+
+                @Override
+                public Order next() {
+                    if (pending == null) {
+                        throw new NoSuchElementException();
+                    }
+                    Order order = pending;
+                    pending = advance();
+                    return order;
+                }
+
+                private Order advance() {
+                    while (in.position() < indexStart) {
+                        if (nextSlot < indexOffsets.length && in.position() == indexOffsets[nextSlot]) {
+                            nextSlot++;
+                            previous = 0;
+                        }
+                        Order order = decode(in, previous);
+                        previous = order.getId();
+                        if (order.getId() > afterId) {
+                            return order;
+                        }
+                    }
+                    return null;
+                }
+            };
+        }
+
+        void forEach(Consumer<Order> action) {
+            ByteBuffer in = buffer.duplicate();
+            for (int slot = 0; slot < indexOffsets.length; slot++) {
+                in.position(indexOffsets[slot]);
+                int end = slot + 1 < indexOffsets.length ? indexOffsets[slot + 1] : indexStart;
+                long previous = 0;
+                while (in.position() < end) {
+                    Order order = decode(in, previous);
+                    action.accept(order);
+                    previous = order.getId();
+                }
+            }
+        }
+    }
+
+    private record Head(Order order, Iterator<Order> rest) {
+    }
+
+    // Growable byte writer for building a segment in memory
+    private static final class Encoder {
+        private ByteBuffer buffer;
+
+        Encoder(int capacity) {
+            buffer = ByteBuffer.allocate(capacity);
+        }
+
+        int position() {
+            return buffer.position();
+        }
+
+        void putByte(int value) {
+            ensure(1);
+            buffer.put((byte) value);
+        }
+
+        void putInt(int value) {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        void putVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        ByteBuffer toBuffer() {
+            return buffer.duplicate().flip();
+        }
+
+        private void ensure(int bytes) {
+            if (buffer.remaining() < bytes) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Order;
+import com.example.demo.repository.OrderRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Moves closed orders older than min-age-days from the orders table into archive segments.
+// Each batch runs in one transaction: lock up to batch-size rows, write and sync their segment,
+// then delete the rows. If the delete or commit fails the segment is discarded, so an order is
+// never lost; lookups prefer the table, so one briefly present in both tiers is not doubled.
+@Component
+public class OrderArchiver {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderArchiver.class);
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderArchive archive;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${order.archive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${order.archive.min-age-days:30}")
+    private long minAgeDays;
+
+    @Value("${order.archive.batch-size:10000}")
+    private int batchSize;
+
+    private volatile Map<String, Object> lastRun = Map.of();
+
+    @Scheduled(fixedDelayString = "${order.archive.interval-ms:3600000}",
+            initialDelayString = "${order.archive.initial-delay-ms:60000}")
+    public void scheduledRun() {
+        if (enabled) {
+            archiveClosedOrders();
+        }
+    }
+
+    // Archive every eligible order now, one segment per batch
+    public synchronized Map<String, Object> archiveClosedOrders() {
+        long start = System.nanoTime();
+        Instant cutoff = Instant.now().minus(Duration.ofDays(minAgeDays));
+        long archived = 0;
+        int segments = 0;
+        while (true) {
+            int moved = archiveBatch(cutoff);
+            if (moved == 0) {
+                break;
+            }
+            archived += moved;
+            segments++;
+            if (moved < batchSize) {
+                break;
+            }
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("finishedAt", Instant.now());
+        result.put("cutoff", cutoff);
+        result.put("orders", archived);
+        result.put("segments", segments);
+        result.put("elapsedMillis", (System.nanoTime() - start) / 1_000_000);
+        lastRun = result;
+        if (archived > 0) {
+            log.info("Archived {} closed orders into {} segments", archived, segments);
+        }
+        return result;
+    }
+
+    // Archive size and the outcome of the last run
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>(archive.stats());
+        result.put("enabled", enabled);
+        result.put("minAgeDays", minAgeDays);
+        result.put("lastRun", lastRun);
+        return result;
+    }
+
+    private int archiveBatch(Instant cutoff) {
+        OrderArchive.Segment[] written = new OrderArchive.Segment[1];
+        try {
+            return transactionTemplate.execute(status -> {
+                List<Order> batch = orderRepository.findArchivable(OrderArchive.CLOSED_STATUSES, cutoff, PageRequest.of(0, batchSize));
+                if (batch.isEmpty()) {
+                    return 0;
+                }
+                written[0] = archive.write(batch);
+                orderRepository.deleteAllByIdInBatch(batch.stream().map(Order::getId).toList());
+                return batch.size();
+            });
+        } catch (RuntimeException e) {
+            if (written[0] != null) {
+                archive.discard(written[0]);
+            }
+            throw e;
+        }
+    }
+}
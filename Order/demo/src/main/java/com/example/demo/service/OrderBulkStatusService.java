@@ -0,0 +1,184 @@
+package com.example.demo.service;
+
+import com.example.demo.model.BulkStatusRequest;
+import com.example.demo.model.BulkStatusResult;
+import com.example.demo.model.Order;
+import com.example.demo.repository.OrderRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Bulk order status transitions.
+// Orders are handled in chunks of order.bulk-status.chunk-size, one transaction per chunk: the chunk's
+// rows are read with a write lock, each order is checked against the allowed transitions, and the
+// valid ones are moved with one UPDATE per source status. Analytics and the change feed are updated
+// once the chunk has committed. A request by fromStatus can cover the whole table, so its result
+// lists only the orders it did not update, and every result keeps at most max-outcomes entries.
+@Service
+public class OrderBulkStatusService {
+
+    // Allowed moves; DELIVERED and CANCELLED are final
+    private static final Map<String, Set<String>> TRANSITIONS = Map.of(
+            "PENDING", Set.of("CONFIRMED", "CANCELLED"),
+            "CONFIRMED", Set.of("SHIPPED", "CANCELLED"),
+            "SHIPPED", Set.of("DELIVERED"),
+            "DELIVERED", Set.of(),
+            "CANCELLED", Set.of());
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderAnalytics analytics;
+
+    @Autowired
+    private ChangeFeed changeFeed;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${order.bulk-status.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${order.bulk-status.max-ids:100000}")
+    private int maxIds;
+
+    @Value("${order.bulk-status.max-outcomes:10000}")
+    private int maxOutcomes;
+
+    // Move the listed orders, or every order in fromStatus, to toStatus
+    public BulkStatusResult transition(BulkStatusRequest request) {
+        long start = System.nanoTime();
+        String to = request.getToStatus();
+        String from = request.getFromStatus();
+        if (to == null || !TRANSITIONS.containsKey(to)) {
+            throw new IllegalArgumentException("toStatus must be one of " + TRANSITIONS.keySet());
+        }
+        if (from != null && !TRANSITIONS.containsKey(from)) {
+            throw new IllegalArgumentException("fromStatus must be one of " + TRANSITIONS.keySet());
+        }
+
+        BulkStatusResult result = new BulkStatusResult();
+        result.setToStatus(to);
+        List<Long> ids = request.getIds();
+        if (ids != null && !ids.isEmpty()) {
+            if (ids.size() > maxIds) {
+                throw new IllegalArgumentException("At most " + maxIds + " ids per request");
+            }
+            List<Long> distinct = ids.stream().distinct().toList();
+            for (int i = 0; i < distinct.size(); i += chunkSize) {
+                List<Long> chunk = distinct.subList(i, Math.min(i + chunkSize, distinct.size()));
+                afterCommit(result, transactionTemplate.execute(status -> moveChunk(chunk, from, to)), true);
+            }
+        } else {
+            if (from == null) {
+                throw new IllegalArgumentException("Either ids or fromStatus is required");
+            }
+            if (!TRANSITIONS.get(from).contains(to)) {
+                throw new IllegalArgumentException("Cannot move orders from " + from + " to " + to);
+            }
+            // Moved orders leave fromStatus, so the id cursor only has to skip the ones left behind
+            long cursor = 0L;
+            while (true) {
+                long after = cursor;
+                ChunkOutcome outcome = transactionTemplate.execute(status -> moveByStatus(from, to, after));
+                afterCommit(result, outcome, false);
+                if (outcome.lastId == null) {
+                    break;
+                }
+                cursor = outcome.lastId;
+            }
+        }
+        result.setElapsedMillis((System.nanoTime() - start) / 1_000_000);
+        return result;
+    }
+
+    private ChunkOutcome moveChunk(List<Long> ids, String from, String to) {
+        Map<Long, Order> found = new HashMap<>();
+        orderRepository.findAllByIdForUpdate(ids).forEach(order -> found.put(order.getId(), order));
+        return move(ids, found, from, to);
+    }
+
+    private ChunkOutcome moveByStatus(String from, String to, long afterId) {
+        Map<Long, Order> found = new LinkedHashMap<>();
+        orderRepository.findByStatusForUpdate(from, afterId, PageRequest.of(0, chunkSize))
+                .forEach(order -> found.put(order.getId(), order));
+        List<Long> ids = new ArrayList<>(found.keySet());
+        ChunkOutcome outcome = move(ids, found, from, to);
+        outcome.lastId = ids.size() < chunkSize ? null : ids.get(ids.size() - 1);
+        return outcome;
+    }
+
+    // Runs inside the chunk transaction with the found rows already locked
+    private ChunkOutcome move(List<Long> ids, Map<Long, Order> found, String from, String to) {
+        ChunkOutcome outcome = new ChunkOutcome();
+        Map<String, List<Long>> bySourceStatus = new LinkedHashMap<>();
+        for (Long id : ids) {
+            Order order = found.get(id);
+            String current = order == null ? null : order.getStatus();
+            if (order == null) {
+                outcome.outcomes.add(new BulkStatusResult.Outcome(id, "NOT_FOUND", null, "Order not found"));
+            } else if (from != null && !from.equals(current)) {
+                outcome.outcomes.add(new BulkStatusResult.Outcome(id, "STATUS_MISMATCH", current,
+                        "Order is " + current + ", not " + from));
+            } else if (!TRANSITIONS.getOrDefault(current, Set.of()).contains(to)) {
+                outcome.outcomes.add(new BulkStatusResult.Outcome(id, "INVALID_TRANSITION", current,
+                        "Cannot move from " + current + " to " + to));
+            } else {
+                bySourceStatus.computeIfAbsent(current, status -> new ArrayList<>()).add(id);
+                outcome.moved.add(new Moved(OrderAnalytics.Snapshot.of(order), order));
+                outcome.outcomes.add(new BulkStatusResult.Outcome(id, "UPDATED", current, null));
+            }
+        }
+        bySourceStatus.forEach((status, statusIds) -> orderRepository.updateStatus(statusIds, status, to));
+        entityManager.clear();
+        outcome.moved.forEach(moved -> {
+            moved.order.setStatus(to);
+            moved.order.setVersion(moved.order.getVersion() + 1); // matches the UPDATE's version bump
+        });
+        return outcome;
+    }
+
+    private void afterCommit(BulkStatusResult result, ChunkOutcome outcome, boolean listUpdated) {
+        for (Moved moved : outcome.moved) {
+            analytics.update(moved.before, moved.order);
+            changeFeed.publish("order-status", moved.order);
+        }
+        result.setUpdated(result.getUpdated() + outcome.moved.size());
+        result.setRejected(result.getRejected() + outcome.outcomes.size() - outcome.moved.size());
+        result.setRequested(result.getRequested() + outcome.outcomes.size());
+        for (BulkStatusResult.Outcome orderOutcome : outcome.outcomes) {
+            if (!listUpdated && "UPDATED".equals(orderOutcome.getResult())) {
+                continue;
+            }
+            if (result.getOutcomes().size() >= maxOutcomes) {
+                result.setOutcomesTruncated(true);
+                break;
+            }
+            result.getOutcomes().add(orderOutcome);
+        }
+    }
+
+    private record Moved(OrderAnalytics.Snapshot before, Order order) {
+    }
+
+    private static final class ChunkOutcome {
+        private final List<BulkStatusResult.Outcome> outcomes = new ArrayList<>();
+        private final List<Moved> moved = new ArrayList<>();
+        private Long lastId; // keyset cursor for the next status-filter chunk, null when done
+    }
+}
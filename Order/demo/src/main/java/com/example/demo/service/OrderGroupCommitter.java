@@ -0,0 +1,224 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Order;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Group commit for order inserts.
+// Callers enqueue their order and wait on a future; one writer thread takes the first waiting order,
+// keeps collecting until the batch is full or the linger time has passed, then inserts the whole
+// batch in one transaction (one JDBC batch, one commit). If the batch fails, each order is retried
+// in its own transaction so every caller gets its own result or error. Every taken order has its
+// future completed even if the writer is interrupted mid-batch, and callers wait at most max-wait-ms.
+@Component
+public class OrderGroupCommitter {
+
+    // Upper bounds of the batch size histogram buckets
+    private static final int[] SIZE_BUCKETS = {1, 4, 16, 64, Integer.MAX_VALUE};
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${order.group-commit.enabled:false}")
+    private boolean enabled;
+
+    @Value("${order.group-commit.max-batch-size:128}")
+    private int maxBatchSize;
+
+    @Value("${order.group-commit.linger-ms:2}")
+    private long lingerMs;
+
+    @Value("${order.group-commit.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${order.group-commit.max-wait-ms:10000}")
+    private long maxWaitMs;
+
+    private BlockingQueue<Pending> queue;
+    private Thread writer;
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong orders = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+    private final AtomicLong commitNanos = new AtomicLong();
+    private final AtomicLong maxBatch = new AtomicLong();
+    private final AtomicLongArray sizeHistogram = new AtomicLongArray(SIZE_BUCKETS.length);
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        writer = Thread.ofPlatform().name("order-group-commit").daemon().start(this::writeLoop);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (writer != null) {
+            writer.interrupt();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Queue an order for the next batch and wait for its committed copy
+    public Order submit(Order order) {
+        CompletableFuture<Order> result = new CompletableFuture<>();
+        Pending pending = new Pending(order, result);
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while queueing order", e);
+        }
+        try {
+            return result.get(maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new RuntimeException(e.getCause());
+        } catch (TimeoutException e) {
+            throw abandon(pending, "Order was not committed within " + maxWaitMs + " ms", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw abandon(pending, "Interrupted while waiting for the order commit", e);
+        }
+    }
+
+    // Stop waiting for an order; if the writer has not taken it yet it is never written
+    private RuntimeException abandon(Pending pending, String message, Exception cause) {
+        if (queue.remove(pending)) {
+            return new RuntimeException(message + "; it was not written", cause);
+        }
+        return new RuntimeException(message + "; it may still be written", cause);
+    }
+
+    // Batch sizes and commit time, including the commits avoided by grouping
+    public Map<String, Object> stats() {
+        long batchCount = batches.get();
+        long orderCount = orders.get();
+        double avgCommitMicros = batchCount == 0 ? 0 : commitNanos.get() / 1000.0 / batchCount;
+
+        Map<String, Object> histogram = new LinkedHashMap<>();
+        int lower = 1;
+        for (int i = 0; i < SIZE_BUCKETS.length; i++) {
+            String label = SIZE_BUCKETS[i] == Integer.MAX_VALUE ? lower + "+"
+                    : lower == SIZE_BUCKETS[i] ? String.valueOf(lower) : lower + "-" + SIZE_BUCKETS[i];
+            histogram.put(label, sizeHistogram.get(i));
+            lower = SIZE_BUCKETS[i] + 1;
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("batches", batchCount);
+        result.put("orders", orderCount);
+        result.put("averageBatchSize", batchCount == 0 ? 0 : (double) orderCount / batchCount);
+        result.put("maxBatchSize", maxBatch.get());
+        result.put("batchSizeHistogram", histogram);
+        result.put("fallbackBatches", fallbacks.get());
+        result.put("averageCommitMicros", avgCommitMicros);
+        result.put("commitsSaved", orderCount - batchCount);
+        result.put("estimatedCommitMicrosSaved", (orderCount - batchCount) * avgCommitMicros);
+        result.put("queueDepth", queue == null ? 0 : queue.size());
+        return result;
+    }
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0 && queue.drainTo(batch, maxBatchSize - batch.size()) == 0) {
+                        break;
+                    }
+                    Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                // Orders taken but not written (interrupted while collecting); a no-op for written ones
+                batch.forEach(pending -> pending.result.completeExceptionally(new IllegalStateException("Shutting down")));
+                batch.clear();
+            }
+        }
+        // Fail whatever is still queued so no caller waits forever
+        List<Pending> left = new ArrayList<>();
+        queue.drainTo(left);
+        left.forEach(pending -> pending.result.completeExceptionally(new IllegalStateException("Shutting down")));
+    }
+
+    private void write(List<Pending> batch) {
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                batch.forEach(pending -> entityManager.persist(pending.order));
+                entityManager.flush();
+                entityManager.clear();
+            });
+            commitNanos.addAndGet(System.nanoTime() - start);
+            record(batch.size());
+            batch.forEach(pending -> pending.result.complete(pending.order));
+        } catch (RuntimeException batchFailure) {
+            // Isolate the bad order(s); ids handed out by the failed batch are discarded
+            fallbacks.incrementAndGet();
+            for (Pending pending : batch) {
+                pending.order.setId(null);
+                long single = System.nanoTime();
+                try {
+                    transactionTemplate.executeWithoutResult(status -> entityManager.persist(pending.order));
+                    commitNanos.addAndGet(System.nanoTime() - single);
+                    record(1);
+                    pending.result.complete(pending.order);
+                } catch (RuntimeException e) {
+                    pending.result.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    private void record(int size) {
+        batches.incrementAndGet();
+        orders.addAndGet(size);
+        maxBatch.accumulateAndGet(size, Math::max);
+        for (int i = 0; i < SIZE_BUCKETS.length; i++) {
+            if (size <= SIZE_BUCKETS[i]) {
+                sizeHistogram.incrementAndGet(i);
+                break;
+            }
+        }
+    }
+
+    private record Pending(Order order, CompletableFuture<Order> result) {
+    }
+}
@@ -0,0 +1,370 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Order;
+import com.example.demo.repository.OrderRepository;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.util.retry.Retry;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Nightly check that orders and payments agree.
+// Orders (table keyset pages merged with the archive in id order) and payments (GET /payments?size=
+// pages in order id order, the next page fetched while the current one is checked) are merge-joined
+// on order id, so memory stays at one page of each whatever the row count. Every mismatch is
+// written as one JSON line to a report file under dir; the last keep-reports reports are kept.
+//
+// MISSING_PAYMENT  a CONFIRMED, SHIPPED or DELIVERED order with no payment at all
+// UNPAID           such an order none of whose payments reached SUCCESS (or was since REFUNDED)
+// DUPLICATE        more than one payment for the order that has not FAILED
+// AMOUNT_DRIFT     a payment that has not FAILED whose amount differs from the order total
+// ORPHAN_PAYMENT   payments whose order id matches no order
+@Component
+public class OrderPaymentReconciler {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderPaymentReconciler.class);
+
+    private static final Set<String> PAID_STATUSES = Set.of("CONFIRMED", "SHIPPED", "DELIVERED");
+    private static final int MAX_LISTED_PAYMENTS = 16;
+    private static final DateTimeFormatter REPORT_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneOffset.UTC);
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderArchive archive;
+
+    @Autowired
+    @Qualifier("paymentClient")
+    private WebClient paymentClient;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${order.reconciliation.enabled:false}")
+    private boolean enabled;
+
+    @Value("${order.reconciliation.dir:data/reconciliation}")
+    private String dir;
+
+    @Value("${order.reconciliation.page-size:2000}")
+    private int pageSize;
+
+    @Value("${order.reconciliation.amount-tolerance:0.005}")
+    private double amountTolerance;
+
+    @Value("${order.reconciliation.keep-reports:7}")
+    private int keepReports;
+
+    @Value("${order.reconciliation.timeout-ms:30000}")
+    private long timeoutMs;
+
+    private final AtomicLong ordersScanned = new AtomicLong();
+    private final AtomicLong paymentsScanned = new AtomicLong();
+    private volatile boolean running;
+    private volatile Map<String, Object> lastRun = Map.of();
+    private volatile Path lastReport;
+
+    @Scheduled(cron = "${order.reconciliation.cron:0 0 2 * * *}")
+    public void scheduledRun() {
+        if (enabled) {
+            reconcile();
+        }
+    }
+
+    // Reconcile every order against every payment now and write the report
+    public synchronized Map<String, Object> reconcile() {
+        long start = System.nanoTime();
+        Instant startedAt = Instant.now();
+        ordersScanned.set(0);
+        paymentsScanned.set(0);
+        running = true;
+        Map<String, Long> mismatches = new TreeMap<>();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("startedAt", startedAt);
+        Path directory = Paths.get(dir);
+        Path report = directory.resolve("reconciliation-" + REPORT_TIME.format(startedAt) + ".ndjson");
+        Path temp = directory.resolve(report.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(directory);
+            try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                mergeJoin(mismatch -> {
+                    mismatches.merge(mismatch.type(), 1L, Long::sum);
+                    try {
+                        out.write(objectMapper.writeValueAsString(mismatch));
+                        out.newLine();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+            Files.move(temp, report, StandardCopyOption.ATOMIC_MOVE);
+            lastReport = report;
+            pruneReports(directory);
+            result.put("outcome", "COMPLETED");
+            result.put("report", report.toAbsolutePath().toString());
+        } catch (IOException | RuntimeException e) {
+            log.error("Order reconciliation failed", e);
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // a partial report is never listed as lastReport
+            }
+            result.put("outcome", "FAILED");
+            result.put("error", String.valueOf(e.getMessage()));
+        } finally {
+            running = false;
+        }
+        result.put("finishedAt", Instant.now());
+        result.put("orders", ordersScanned.get());
+        result.put("payments", paymentsScanned.get());
+        result.put("mismatches", mismatches);
+        result.put("elapsedMillis", (System.nanoTime() - start) / 1_000_000);
+        lastRun = result;
+        log.info("Order reconciliation {}: {} orders, {} payments, mismatches {}",
+                result.get("outcome"), ordersScanned.get(), paymentsScanned.get(), mismatches);
+        return result;
+    }
+
+    // Progress of a running reconciliation and the outcome of the last one
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("running", running);
+        if (running) {
+            result.put("ordersScanned", ordersScanned.get());
+            result.put("paymentsScanned", paymentsScanned.get());
+        }
+        result.put("lastRun", lastRun);
+        return result;
+    }
+
+    // The report of the last completed run, if it is still on disk
+    public Optional<Path> lastReport() {
+        Path report = lastReport;
+        return report != null && Files.exists(report) ? Optional.of(report) : Optional.empty();
+    }
+
+    private void mergeJoin(Consumer<Mismatch> sink) {
+        OrderCursor orders = new OrderCursor();
+        PaymentCursor payments = new PaymentCursor();
+        Order order = orders.next();
+        while (order != null || payments.peek() != null) {
+            long orderKey = order == null ? Long.MAX_VALUE : order.getId();
+            long paymentKey = payments.peek() == null ? Long.MAX_VALUE : payments.peek().orderId();
+            if (paymentKey < orderKey) {
+                PaymentGroup group = payments.take(paymentKey, null);
+                if (orderRepository.existsById(paymentKey) || archive.find(paymentKey).isPresent()) {
+                    continue; // created, or moved between tiers, after the scan passed its id
+                }
+                sink.accept(new Mismatch("ORPHAN_PAYMENT", paymentKey, null, null, group.ids, group.count,
+                        "No order " + paymentKey));
+                continue;
+            }
+            PaymentGroup group = paymentKey == orderKey ? payments.take(orderKey, order) : new PaymentGroup();
+            check(order, group, sink);
+            order = orders.next();
+        }
+    }
+
+    private void check(Order order, PaymentGroup payments, Consumer<Mismatch> sink) {
+        boolean paid = PAID_STATUSES.contains(order.getStatus());
+        if (paid && payments.count == 0) {
+            sink.accept(mismatch("MISSING_PAYMENT", order, payments, "Order is " + order.getStatus() + " but has no payment"));
+        } else if (paid && payments.succeeded == 0) {
+            sink.accept(mismatch("UNPAID", order, payments, "Order is " + order.getStatus() + " but no payment succeeded"));
+        }
+        if (payments.live > 1) {
+            sink.accept(mismatch("DUPLICATE", order, payments, payments.live + " payments have not failed"));
+        }
+        if (payments.drifted > 0) {
+            sink.accept(mismatch("AMOUNT_DRIFT", order, payments, payments.drifted + " payments differ from the order total "
+                    + order.getTotalPrice() + ", first by " + payments.firstDrift));
+        }
+    }
+
+    private static Mismatch mismatch(String type, Order order, PaymentGroup payments, String detail) {
+        return new Mismatch(type, order.getId(), order.getStatus(), order.getTotalPrice(), payments.ids, payments.count, detail);
+    }
+
+    private void pruneReports(Path directory) throws IOException {
+        List<Path> reports = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "reconciliation-*.ndjson")) {
+            files.forEach(reports::add);
+        }
+        Collections.sort(reports); // names sort by start time
+        for (int i = 0; i < reports.size() - keepReports; i++) {
+            Files.deleteIfExists(reports.get(i));
+        }
+    }
+
+    // One report line
+    public record Mismatch(String type, Long orderId, String orderStatus, Double orderTotal,
+                           List<Long> paymentIds, int paymentCount, String detail) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record PaymentRow(Long id, Long orderId, Double amount, String paymentStatus) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record PaymentRowPage(List<PaymentRow> items, Long nextAfterOrderId, Long nextAfterId) {
+    }
+
+    // What the payments of one order add up to; only the first few ids are kept
+    private static final class PaymentGroup {
+        private final List<Long> ids = new ArrayList<>();
+        private int count;
+        private int live;
+        private int succeeded;
+        private int drifted;
+        private Double firstDrift;
+    }
+
+    // Table rows and archived orders merged by id; the table copy wins if an order is in both
+    private final class OrderCursor {
+        private final Iterator<Order> archived = archive.iteratorById();
+        private Order nextArchived = archived.hasNext() ? archived.next() : null;
+        private Iterator<Order> table = Collections.emptyIterator();
+        private Order nextTable;
+        private long tableCursor = 0L;
+        private boolean tableDone;
+
+        private OrderCursor() {
+            nextTable = advanceTable();
+        }
+
+        Order next() {
+            Order order;
+            if (nextTable != null && (nextArchived == null || nextTable.getId() <= nextArchived.getId())) {
+                order = nextTable;
+                if (nextArchived != null && nextArchived.getId().equals(order.getId())) {
+                    nextArchived = archived.hasNext() ? archived.next() : null;
+                }
+                nextTable = advanceTable();
+            } else if (nextArchived != null) {
+                order = nextArchived;
+                nextArchived = archived.hasNext() ? archived.next() : null;
+            } else {
+                return null;
+            }
+            ordersScanned.incrementAndGet();
+            return order;
+        }
+
+        private Order advanceTable() {
+            if (!table.hasNext() && !tableDone) {
+                List<Order> page = orderRepository.findByIdGreaterThanOrderByIdAsc(tableCursor, PageRequest.of(0, pageSize));
+                tableDone = page.size() < pageSize;
+                if (!page.isEmpty()) {
+                    tableCursor = page.get(page.size() - 1).getId();
+                }
+                table = page.iterator();
+            }
+            return table.hasNext() ? table.next() : null;
+        }
+    }
+
+    // Payment pages in (orderId, id) order; the next page is requested as soon as the current one arrives
+    private final class PaymentCursor {
+        private Iterator<PaymentRow> page = Collections.emptyIterator();
+        private CompletableFuture<PaymentRowPage> nextPage = fetch(null, null);
+        private PaymentRow head;
+
+        private PaymentCursor() {
+            advance();
+        }
+
+        PaymentRow peek() {
+            return head;
+        }
+
+        // Consume every payment of orderId; order is null for orphans
+        PaymentGroup take(long orderId, Order order) {
+            PaymentGroup group = new PaymentGroup();
+            while (head != null && head.orderId() == orderId) {
+                group.count++;
+                if (group.ids.size() < MAX_LISTED_PAYMENTS) {
+                    group.ids.add(head.id());
+                }
+                if (!"FAILED".equals(head.paymentStatus())) {
+                    group.live++;
+                    if (order != null && order.getTotalPrice() != null && head.amount() != null) {
+                        double drift = head.amount() - order.getTotalPrice();
+                        if (Math.abs(drift) > amountTolerance) {
+                            group.drifted++;
+                            if (group.firstDrift == null) {
+                                group.firstDrift = drift;
+                            }
+                        }
+                    }
+                }
+                if ("SUCCESS".equals(head.paymentStatus()) || "REFUNDED".equals(head.paymentStatus())) {
+                    group.succeeded++;
+                }
+                advance();
+            }
+            return group;
+        }
+
+        private void advance() {
+            while (!page.hasNext() && nextPage != null) {
+                PaymentRowPage current = nextPage.join();
+                nextPage = current.nextAfterOrderId() == null ? null
+                        : fetch(current.nextAfterOrderId(), current.nextAfterId());
+                page = current.items() == null ? Collections.emptyIterator() : current.items().iterator();
+            }
+            head = page.hasNext() ? page.next() : null;
+            if (head != null) {
+                paymentsScanned.incrementAndGet();
+            }
+        }
+
+        private CompletableFuture<PaymentRowPage> fetch(Long afterOrderId, Long afterId) {
+            return paymentClient.get()
+                    .uri(uri -> uri.path("/payments")
+                            .queryParam("size", pageSize)
+                            .queryParamIfPresent("afterOrderId", Optional.ofNullable(afterOrderId))
+                            .queryParamIfPresent("afterId", Optional.ofNullable(afterId))
+                            .build())
+                    .retrieve()
+                    .bodyToMono(PaymentRowPage.class)
+                    .timeout(Duration.ofMillis(timeoutMs))
+                    .retryWhen(Retry.backoff(3, Duration.ofSeconds(1)))
+                    .toFuture();
+        }
+    }
+}
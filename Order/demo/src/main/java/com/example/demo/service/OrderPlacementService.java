@@ -0,0 +1,206 @@
+package com.example.demo.service;
+
+import com.example.demo.exception.OrderPlacementException;
+import com.example.demo.model.Order;
+import com.example.demo.model.OrderPlacement;
+import com.example.demo.model.OrderRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+// Server-side checkout saga.
+// The product price lookup and the stock reservation run concurrently; once the order row exists
+// the pending payment is created and the reservation confirmed, again concurrently. Any failure
+// undoes the completed steps (release or restock, fail the payment, cancel the order) before the
+// error is returned, so latency is roughly the two slowest hops rather than the sum of all of them.
+@Service
+public class OrderPlacementService {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderPlacementService.class);
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    @Qualifier("productClient")
+    private WebClient productClient;
+
+    @Autowired
+    @Qualifier("paymentClient")
+    private WebClient paymentClient;
+
+    @Value("${order.placement.timeout-ms:3000}")
+    private long timeoutMs;
+
+    // Place an order: price it, hold stock, record it and open a pending payment
+    public Mono<OrderPlacement> placeOrder(OrderRequest request) {
+        if (request.getUserId() == null || request.getProductId() == null
+                || request.getQuantity() == null || request.getQuantity() <= 0) {
+            return Mono.error(new OrderPlacementException(HttpStatus.BAD_REQUEST,
+                    "userId, productId and a positive quantity are required"));
+        }
+        String paymentMode = request.getPaymentMode() == null ? "CREDIT_CARD" : request.getPaymentMode();
+
+        Mono<Double> price = fetchPrice(request.getProductId()).cache();
+        Mono<String> reservation = reserveStock(request.getProductId(), request.getQuantity()).cache();
+
+        return Mono.zipDelayError(price, reservation)
+                .onErrorResume(error -> reservation
+                        .flatMap(this::releaseReservation)
+                        .onErrorResume(ignored -> Mono.empty())
+                        .then(Mono.error(error)))
+                .flatMap(priced -> {
+                    double totalPrice = priced.getT1() * request.getQuantity();
+                    String reservationId = priced.getT2();
+                    Order order = new Order(request.getUserId(), request.getProductId(),
+                            request.getQuantity(), totalPrice, "PENDING");
+
+                    return saveOrder(order)
+                            .onErrorResume(error -> releaseReservation(reservationId)
+                                    .onErrorResume(ignored -> Mono.empty())
+                                    .then(Mono.error(error)))
+                            .flatMap(saved -> completeOrder(saved, reservationId, paymentMode));
+                })
+                .onErrorMap(this::translate);
+    }
+
+    // Create the pending payment and confirm the reservation; compensate whatever succeeded if either fails
+    private Mono<OrderPlacement> completeOrder(Order order, String reservationId, String paymentMode) {
+        Mono<Long> payment = createPayment(order.getId(), order.getTotalPrice(), paymentMode).cache();
+        Mono<Boolean> confirmed = confirmReservation(reservationId).thenReturn(true).cache();
+
+        return Mono.zipDelayError(payment, confirmed)
+                .map(result -> new OrderPlacement(order, result.getT1(), reservationId))
+                .onErrorResume(error -> {
+                    Mono<Void> undoPayment = payment
+                            .flatMap(this::failPayment)
+                            .onErrorResume(ignored -> Mono.empty());
+                    Mono<Void> undoStock = confirmed
+                            .flatMap(done -> restock(order.getProductId(), order.getQuantity()))
+                            .onErrorResume(ignored -> releaseReservation(reservationId));
+                    Mono<Void> cancelOrder = Mono.fromRunnable(() -> orderService.updateOrderStatus(order.getId(), "CANCELLED"))
+                            .subscribeOn(Schedulers.boundedElastic())
+                            .then();
+                    return Mono.whenDelayError(undoPayment, undoStock, cancelOrder)
+                            .onErrorResume(compensationError -> {
+                                log.error("Compensation for order {} incomplete", order.getId(), compensationError);
+                                return Mono.empty();
+                            })
+                            .then(Mono.error(error));
+                });
+    }
+
+    private Mono<Double> fetchPrice(Long productId) {
+        return productClient.get()
+                .uri("/products/{id}", productId)
+                .retrieve()
+                .bodyToMono(JsonNode.class)
+                .map(product -> product.get("price").asDouble())
+                .timeout(timeout());
+    }
+
+    private Mono<String> reserveStock(Long productId, int quantity) {
+        return productClient.post()
+                .uri(uri -> uri.path("/products/{id}/reservations").queryParam("quantity", quantity).build(productId))
+                .retrieve()
+                .bodyToMono(JsonNode.class)
+                .map(reservation -> reservation.get("id").asText())
+                .timeout(timeout());
+    }
+
+    private Mono<Void> confirmReservation(String reservationId) {
+        return productClient.post()
+                .uri("/products/reservations/{id}/confirm", reservationId)
+                .retrieve()
+                .toBodilessEntity()
+                .timeout(timeout())
+                .then();
+    }
+
+    private Mono<Void> releaseReservation(String reservationId) {
+        return productClient.delete()
+                .uri("/products/reservations/{id}", reservationId)
+                .retrieve()
+                .toBodilessEntity()
+                .timeout(timeout())
+                .then();
+    }
+
+    private Mono<Void> restock(Long productId, int quantity) {
+        return productClient.patch()
+                .uri(uri -> uri.path("/products/{id}/stock").queryParam("quantity", quantity).build(productId))
+                .retrieve()
+                .toBodilessEntity()
+                .timeout(timeout())
+                .then();
+    }
+
+    private Mono<Long> createPayment(Long orderId, Double amount, String paymentMode) {
+        Map<String, Object> body = Map.of(
+                "orderId", orderId,
+                "amount", amount,
+                "paymentMode", paymentMode,
+                "paymentStatus", "PENDING");
+        // Keyed by order so a retried call cannot open a second payment
+        return paymentClient.post()
+                .uri("/payments")
+                .header(IdempotencyStore.HEADER, "order-" + orderId)
+                .bodyValue(body)
+                .retrieve()
+                .bodyToMono(JsonNode.class)
+                .map(payment -> payment.get("id").asLong())
+                .timeout(timeout());
+    }
+
+    private Mono<Void> failPayment(Long paymentId) {
+        return paymentClient.patch()
+                .uri("/payments/{id}/status", paymentId)
+                .bodyValue(Map.of("status", "FAILED"))
+                .retrieve()
+                .toBodilessEntity()
+                .timeout(timeout())
+                .then();
+    }
+
+    // JPA is blocking, so the insert runs off the reactive threads
+    private Mono<Order> saveOrder(Order order) {
+        return Mono.fromCallable(() -> orderService.createOrder(order))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Duration timeout() {
+        return Duration.ofMillis(timeoutMs);
+    }
+
+    private Throwable translate(Throwable failure) {
+        Throwable error = Exceptions.unwrapMultiple(failure).get(0);
+        if (error instanceof OrderPlacementException) {
+            return error;
+        }
+        if (error instanceof WebClientResponseException response) {
+            HttpStatus status = HttpStatus.resolve(response.getStatusCode().value());
+            if (status == HttpStatus.NOT_FOUND || status == HttpStatus.CONFLICT || status == HttpStatus.BAD_REQUEST) {
+                return new OrderPlacementException(status, response.getResponseBodyAsString());
+            }
+            return new OrderPlacementException(HttpStatus.BAD_GATEWAY, "Downstream call failed: " + response.getStatusText());
+        }
+        if (error instanceof TimeoutException) {
+            return new OrderPlacementException(HttpStatus.GATEWAY_TIMEOUT, "Downstream call timed out");
+        }
+        return new OrderPlacementException(HttpStatus.BAD_GATEWAY, "Order placement failed: " + error.getMessage());
+    }
+}
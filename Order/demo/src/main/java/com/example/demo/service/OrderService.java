@@ -1,12 +1,31 @@
 package com.example.demo.service;
 
+import com.example.demo.exception.VersionConflictException;
 import com.example.demo.model.Order;
+import com.example.demo.model.OrderPage;
 import com.example.demo.repository.OrderRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class OrderService {
@@ -14,44 +33,122 @@ public class OrderService {
     @Autowired
     private OrderRepository orderRepository;
     
+    @Autowired
+    private OrderGroupCommitter groupCommitter;
+    
+    @Autowired
+    private OrderAnalytics analytics;
+    
+    @Autowired
+    private ChangeFeed changeFeed;
+    
+    @Autowired
+    private OrderArchive archive;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Value("${order.page.max-size:500}")
+    private int maxPageSize;
+    
+    @Value("${order.update.max-attempts:3}")
+    private int maxStatusAttempts;
+    
+    // Rebuild the analytics rollups from the orders table and the archive. Called by
+    // OrderAnalyticsLoader before the web server accepts requests: an order written while the
+    // rebuild streams the table could otherwise be counted by both.
+    @Transactional(readOnly = true)
+    public void buildAnalytics() {
+        Set<Long> tableIds = new HashSet<>();
+        try (Stream<Order> orders = orderRepository.streamAllByOrderByIdAsc()) {
+            orders.forEach(order -> {
+                analytics.add(order);
+                tableIds.add(order.getId());
+                entityManager.detach(order);
+            });
+        }
+        // An order left in both tiers by an interrupted archival run is counted once
+        archive.forEach(order -> {
+            if (!tableIds.contains(order.getId())) {
+                analytics.add(order);
+            }
+        });
+        analytics.markReady();
+    }
+    
     // Create order
     public Order createOrder(Order order) {
         // Set default status if not provided
         if (order.getStatus() == null || order.getStatus().isEmpty()) {
             order.setStatus("PENDING");
         }
-        return orderRepository.save(order);
+        order.setCreatedAt(Instant.now());
+        Order saved = groupCommitter.isEnabled() ? groupCommitter.submit(order) : orderRepository.save(order);
+        analytics.add(saved);
+        return saved;
+    }
+    
+    // Group commit batch sizes and commit latency
+    public Map<String, Object> getGroupCommitStats() {
+        return groupCommitter.stats();
     }
     
     // Get all orders
     public List<Order> getAllOrders() {
-        return orderRepository.findAll();
+        return withArchived(orderRepository.findAll(), archive.count() == 0 ? List.of() : archive.findAll(order -> true));
     }
     
     // Get order by ID
     public Optional<Order> getOrderById(Long id) {
-        return orderRepository.findById(id);
+        return orderRepository.findById(id).or(() -> archive.find(id));
     }
     
     // Get orders by user ID
     public List<Order> getOrdersByUserId(Long userId) {
-        return orderRepository.findByUserId(userId);
+        return withArchived(orderRepository.findByUserId(userId), archive.findByUserId(userId));
     }
     
     // Get orders by status
     public List<Order> getOrdersByStatus(String status) {
-        return orderRepository.findByStatus(status);
+        return withArchived(orderRepository.findByStatus(status), archivedWithStatus(status, 0L, Integer.MAX_VALUE));
     }
     
     // Get orders by product ID
     public List<Order> getOrdersByProductId(Long productId) {
-        return orderRepository.findByProductId(productId);
+        return withArchived(orderRepository.findByProductId(productId), archive.findByProductId(productId));
+    }
+    
+    // Get orders of a user one keyset page at a time
+    public OrderPage getOrdersByUserIdPage(Long userId, Long afterId, int size) {
+        return page(afterId, size,
+                (cursor, pageable) -> orderRepository.findByUserIdAndIdGreaterThanOrderByIdAsc(userId, cursor, pageable),
+                (cursor, pageSize) -> archive.pageByUserId(userId, cursor, pageSize));
+    }
+    
+    // Get orders with a status one keyset page at a time
+    public OrderPage getOrdersByStatusPage(String status, Long afterId, int size) {
+        return page(afterId, size,
+                (cursor, pageable) -> orderRepository.findByStatusAndIdGreaterThanOrderByIdAsc(status, cursor, pageable),
+                (cursor, pageSize) -> archivedWithStatus(status, cursor, pageSize));
+    }
+    
+    // Get orders for a product one keyset page at a time
+    public OrderPage getOrdersByProductIdPage(Long productId, Long afterId, int size) {
+        return page(afterId, size,
+                (cursor, pageable) -> orderRepository.findByProductIdAndIdGreaterThanOrderByIdAsc(productId, cursor, pageable),
+                (cursor, pageSize) -> archive.pageByProductId(productId, cursor, pageSize));
     }
     
     // Update order
     public Order updateOrder(Long id, Order orderDetails) {
-        Order order = orderRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Order not found"));
+        return updateOrder(id, orderDetails, null);
+    }
+    
+    // Update order only if it is still at expectedVersion (null to skip the check)
+    public Order updateOrder(Long id, Order orderDetails, Long expectedVersion) {
+        Order order = findWritable(id);
+        checkVersion(order, expectedVersion);
+        OrderAnalytics.Snapshot before = OrderAnalytics.Snapshot.of(order);
         
         order.setUserId(orderDetails.getUserId());
         order.setProductId(orderDetails.getProductId());
@@ -59,20 +156,139 @@ public class OrderService {
         order.setTotalPrice(orderDetails.getTotalPrice());
         order.setStatus(orderDetails.getStatus());
         
-        return orderRepository.save(order);
+        Order saved;
+        try {
+            saved = orderRepository.save(order);
+        } catch (OptimisticLockingFailureException e) {
+            // A full replacement built on a stale read cannot be replayed safely
+            throw conflict(id, expectedVersion != null ? HttpStatus.PRECONDITION_FAILED : HttpStatus.CONFLICT);
+        }
+        analytics.update(before, saved);
+        return saved;
     }
     
     // Update order status
     public Order updateOrderStatus(Long id, String status) {
-        Order order = orderRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Order not found"));
-        
-        order.setStatus(status);
-        return orderRepository.save(order);
+        return updateOrderStatus(id, status, null);
+    }
+    
+    // Update order status only if it is still at expectedVersion (null to skip the check).
+    // Without a precondition a lost race is retried on a fresh read: the new status does not
+    // depend on the rest of the row, so reapplying it gives the same result.
+    public Order updateOrderStatus(Long id, String status, Long expectedVersion) {
+        for (int attempt = 1; ; attempt++) {
+            Order order = findWritable(id);
+            checkVersion(order, expectedVersion);
+            OrderAnalytics.Snapshot before = OrderAnalytics.Snapshot.of(order);
+            
+            order.setStatus(status);
+            try {
+                Order saved = orderRepository.save(order);
+                analytics.update(before, saved);
+                changeFeed.publish("order-status", saved);
+                return saved;
+            } catch (OptimisticLockingFailureException e) {
+                if (expectedVersion != null) {
+                    throw conflict(id, HttpStatus.PRECONDITION_FAILED);
+                }
+                if (attempt >= maxStatusAttempts) {
+                    throw conflict(id, HttpStatus.CONFLICT);
+                }
+            }
+        }
     }
     
     // Delete order
     public void deleteOrder(Long id) {
-        orderRepository.deleteById(id);
+        orderRepository.findById(id).ifPresent(order -> {
+            orderRepository.delete(order);
+            analytics.remove(OrderAnalytics.Snapshot.of(order));
+        });
+    }
+    
+    // Overall and per-status order counts and revenue
+    public Map<String, Object> getAnalyticsSummary() {
+        return analytics.summary();
+    }
+    
+    // Order count and revenue for one product
+    public Map<String, Object> getProductAnalytics(Long productId) {
+        return analytics.forProduct(productId);
+    }
+    
+    // Order count and spend for one user
+    public Map<String, Object> getUserAnalytics(Long userId) {
+        return analytics.forUser(userId);
+    }
+    
+    // Hourly order count and revenue over a time range
+    public List<Map<String, Object>> getAnalyticsTimeline(Instant from, Instant to) {
+        return analytics.timeline(from, to);
+    }
+    
+    public boolean isAnalyticsReady() {
+        return analytics.isReady();
+    }
+    
+    // Archived orders are immutable, so only orders still in the table can be changed
+    private Order findWritable(Long id) {
+        return orderRepository.findById(id).orElseThrow(() -> new RuntimeException(
+                archive.find(id).isPresent() ? "Order is archived and read-only" : "Order not found"));
+    }
+    
+    private static void checkVersion(Order order, Long expectedVersion) {
+        if (expectedVersion != null && !expectedVersion.equals(order.getVersion())) {
+            throw new VersionConflictException(HttpStatus.PRECONDITION_FAILED,
+                    "Order " + order.getId() + " is at version " + order.getVersion(), order.getVersion());
+        }
+    }
+    
+    private VersionConflictException conflict(Long id, HttpStatus status) {
+        Long current = orderRepository.findById(id).map(Order::getVersion).orElse(null);
+        return new VersionConflictException(status, "Order " + id + " was changed concurrently", current);
+    }
+    
+    // Archived orders with a status after afterId; only closed statuses are ever archived, so any
+    // other status skips the archive instead of decoding all of it
+    private List<Order> archivedWithStatus(String status, long afterId, int size) {
+        if (archive.count() == 0 || !OrderArchive.CLOSED_STATUSES.contains(status)) {
+            return List.of();
+        }
+        return archive.page(order -> order.getStatus().equals(status), afterId, size);
+    }
+    
+    // Table rows plus the archived orders matching the same filter; the table copy wins on overlap
+    private List<Order> withArchived(List<Order> orders, List<Order> archivedOrders) {
+        if (archivedOrders.isEmpty()) {
+            return orders;
+        }
+        Set<Long> tableIds = orders.stream().map(Order::getId).collect(Collectors.toSet());
+        List<Order> all = new ArrayList<>(orders);
+        for (Order archived : archivedOrders) {
+            if (!tableIds.contains(archived.getId())) {
+                all.add(archived);
+            }
+        }
+        return all;
+    }
+    
+    private OrderPage page(Long afterId, int size, BiFunction<Long, Pageable, List<Order>> query,
+                           BiFunction<Long, Integer, List<Order>> archivedQuery) {
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+        long cursor = afterId == null ? 0L : afterId;
+        
+        List<Order> items = query.apply(cursor, PageRequest.of(0, pageSize));
+        if (archive.count() > 0) {
+            // Merge the next page of each tier by id
+            List<Order> merged = new ArrayList<>(items);
+            Set<Long> tableIds = items.stream().map(Order::getId).collect(Collectors.toSet());
+            archivedQuery.apply(cursor, pageSize).stream()
+                    .filter(order -> !tableIds.contains(order.getId()))
+                    .forEach(merged::add);
+            merged.sort(Comparator.comparing(Order::getId));
+            items = merged.size() > pageSize ? new ArrayList<>(merged.subList(0, pageSize)) : merged;
+        }
+        Long nextCursor = items.size() < pageSize ? null : items.get(items.size() - 1).getId();
+        return new OrderPage(items, nextCursor);
     }
 }
@@ -0,0 +1,211 @@
+package com.example.demo.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Checks the bearer tokens issued by the User service without calling it.
+// A token is base64url(header).base64url(claims).base64url(Ed25519 signature); it is accepted when
+// the signature matches a known User service key and it has not expired. The public key comes from
+// auth.public-key or, when that is blank, from the User service's /users/auth/public-key on first
+// use, and again (at most every key-refresh-ms) when a token names a key id not seen yet. Verified
+// tokens are cached until they expire, so a client repeating its token costs a map lookup.
+@Component
+public class TokenVerifier {
+
+    private static final String ISSUER = "user-service";
+
+    private final WebClient userClient;
+    private final ObjectMapper objectMapper;
+    private final long clockSkewSeconds;
+    private final long keyRefreshMs;
+    private final Cache<String, Claims> verified;
+    private volatile Map<String, PublicKey> keys = Map.of();
+    private volatile long lastKeyFetch;
+
+    // Signature objects are not thread-safe; one per thread avoids a provider lookup per token
+    private final ThreadLocal<Signature> verifiers = ThreadLocal.withInitial(() -> {
+        try {
+            return Signature.getInstance("Ed25519");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Ed25519 is not available", e);
+        }
+    });
+
+    // Who a verified token belongs to
+    public record Claims(Long userId, String email, String role, Instant expiresAt) {
+    }
+
+    public TokenVerifier(WebClient.Builder builder, ObjectMapper objectMapper,
+                         @Value("${auth.user-service.url:http://localhost:8081}") String userServiceUrl,
+                         @Value("${auth.public-key:}") String publicKey,
+                         @Value("${auth.cache-size:10000}") long cacheSize,
+                         @Value("${auth.clock-skew-seconds:30}") long clockSkewSeconds,
+                         @Value("${auth.key-refresh-ms:60000}") long keyRefreshMs) {
+        this.objectMapper = objectMapper;
+        this.clockSkewSeconds = clockSkewSeconds;
+        this.keyRefreshMs = keyRefreshMs;
+        if (publicKey.isBlank()) {
+            this.userClient = builder.baseUrl(userServiceUrl).build();
+        } else {
+            this.userClient = null;
+            PublicKey key = decodeKey(publicKey);
+            this.keys = Map.of(keyIdOf(key), key);
+        }
+        this.verified = cacheSize <= 0 ? null : Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String token, Claims claims, long currentTime) {
+                        long seconds = claims.expiresAt().getEpochSecond() + clockSkewSeconds - Instant.now().getEpochSecond();
+                        return TimeUnit.SECONDS.toNanos(Math.max(0, seconds));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String token, Claims claims, long currentTime, long currentDuration) {
+                        return expireAfterCreate(token, claims, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String token, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    // The claims of a valid token. IllegalArgumentException when the token is malformed, forged or
+    // expired; IllegalStateException when no key is available to check it.
+    public Claims verify(String token) {
+        Claims claims = verified == null ? null : verified.getIfPresent(token);
+        if (claims == null) {
+            claims = verifySignature(token);
+            if (verified != null) {
+                verified.put(token, claims);
+            }
+        }
+        if (Instant.now().getEpochSecond() > claims.expiresAt().getEpochSecond() + clockSkewSeconds) {
+            throw new IllegalArgumentException("Token expired");
+        }
+        return claims;
+    }
+
+    private Claims verifySignature(String token) {
+        int first = token.indexOf('.');
+        int second = token.indexOf('.', first + 1);
+        if (first <= 0 || second <= first + 1 || second == token.length() - 1 || token.indexOf('.', second + 1) >= 0) {
+            throw new IllegalArgumentException("Malformed token");
+        }
+        try {
+            JsonNode header = objectMapper.readTree(decode(token.substring(0, first)));
+            if (!"EdDSA".equals(header.path("alg").asText())) {
+                throw new IllegalArgumentException("Unsupported token algorithm");
+            }
+            Signature verifier = verifiers.get();
+            verifier.initVerify(keyFor(header.path("kid").asText()));
+            verifier.update(token.substring(0, second).getBytes(StandardCharsets.US_ASCII));
+            if (!verifier.verify(decode(token.substring(second + 1)))) {
+                throw new IllegalArgumentException("Invalid token signature");
+            }
+            JsonNode payload = objectMapper.readTree(decode(token.substring(first + 1, second)));
+            if (!ISSUER.equals(payload.path("iss").asText()) || !payload.path("exp").canConvertToLong()) {
+                throw new IllegalArgumentException("Invalid token claims");
+            }
+            if (payload.path("iat").asLong(0) > Instant.now().getEpochSecond() + clockSkewSeconds) {
+                throw new IllegalArgumentException("Token issued in the future");
+            }
+            return new Claims(Long.valueOf(payload.path("sub").asText()),
+                    payload.path("email").asText(null),
+                    payload.path("role").asText(null),
+                    Instant.ofEpochSecond(payload.path("exp").asLong()));
+        } catch (IOException | GeneralSecurityException e) {
+            throw new IllegalArgumentException("Malformed token", e);
+        }
+    }
+
+    private static byte[] decode(String part) {
+        try {
+            return Base64.getUrlDecoder().decode(part);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed token", e);
+        }
+    }
+
+    private PublicKey keyFor(String keyId) {
+        PublicKey key = keys.get(keyId);
+        if (key == null && userClient != null) {
+            refreshKeys();
+            key = keys.get(keyId);
+        }
+        if (key == null) {
+            throw new IllegalArgumentException("Unknown signing key");
+        }
+        return key;
+    }
+
+    // Fetch the User service's current key, keeping the ones already known so older tokens still verify
+    private synchronized void refreshKeys() {
+        long now = System.currentTimeMillis();
+        if (lastKeyFetch != 0 && now - lastKeyFetch < keyRefreshMs) {
+            if (keys.isEmpty()) {
+                throw new IllegalStateException("Signing key unavailable");
+            }
+            return;
+        }
+        lastKeyFetch = now;
+        try {
+            JsonNode body = userClient.get()
+                    .uri("/users/auth/public-key")
+                    .retrieve()
+                    .bodyToMono(JsonNode.class)
+                    .block(Duration.ofSeconds(5));
+            PublicKey key = decodeKey(body.path("key").asText());
+            Map<String, PublicKey> updated = new HashMap<>(keys);
+            updated.put(keyIdOf(key), key);
+            keys = Map.copyOf(updated);
+        } catch (RuntimeException e) {
+            if (keys.isEmpty()) {
+                throw new IllegalStateException("Signing key unavailable", e);
+            }
+        }
+    }
+
+    private static PublicKey decodeKey(String encoded) {
+        try {
+            return KeyFactory.getInstance("Ed25519").generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(encoded.trim())));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("Not an Ed25519 public key", e);
+        }
+    }
+
+    // Same key id the User service puts in the token header
+    private static String keyIdOf(PublicKey key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getEncoded());
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 9));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.demo;
+
+import com.example.demo.service.ChangeFeed;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.function.Predicate;
+
+class ChangeFeedTests {
+
+	private static final int HISTORY_SIZE = 8;
+	private static final int SUBSCRIBER_BUFFER = 4;
+	private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+	private ChangeFeed feed;
+
+	@BeforeEach
+	void setUp() {
+		feed = new ChangeFeed();
+		ReflectionTestUtils.setField(feed, "historySize", HISTORY_SIZE);
+		ReflectionTestUtils.setField(feed, "subscriberBuffer", SUBSCRIBER_BUFFER);
+		ReflectionTestUtils.setField(feed, "heartbeatSeconds", 3600L);
+		ReflectionTestUtils.invokeMethod(feed, "init");
+	}
+
+	@Test
+	void resumeReplaysExactlyWhatWasMissed() {
+		publish(5);
+
+		StepVerifier.create(feed.subscribe("2"))
+				.expectNextMatches(id(3))
+				.expectNextMatches(id(4))
+				.expectNextMatches(id(5))
+				.then(() -> publish(1))
+				.expectNextMatches(id(6))
+				.thenCancel()
+				.verify(TIMEOUT);
+	}
+
+	@Test
+	void noLastEventIdStartsWithLiveEvents() {
+		publish(3);
+
+		StepVerifier.create(feed.subscribe(null))
+				.then(() -> publish(1))
+				.expectNextMatches(id(4))
+				.thenCancel()
+				.verify(TIMEOUT);
+	}
+
+	@Test
+	void resumingFromBeforeTheOldestKeptEventResyncs() {
+		publish(HISTORY_SIZE + 5);
+
+		StepVerifier.create(feed.subscribe("3"))
+				.expectNextMatches(resync())
+				.then(() -> publish(1))
+				.expectNextMatches(id(HISTORY_SIZE + 6))
+				.thenCancel()
+				.verify(TIMEOUT);
+	}
+
+	@Test
+	void resumingPastTheLastIdResyncsAndKeepsDeliveringNewEvents() {
+		// As after a restart: the client last saw id 500, this run has only issued 3
+		publish(3);
+
+		StepVerifier.create(feed.subscribe("500"))
+				.expectNextMatches(resync())
+				.then(() -> publish(1))
+				.expectNextMatches(id(4))
+				.thenCancel()
+				.verify(TIMEOUT);
+	}
+
+	@Test
+	void malformedLastEventIdResyncs() {
+		publish(2);
+
+		for (String lastEventId : new String[]{"not-an-id", "-7"}) {
+			StepVerifier.create(feed.subscribe(lastEventId))
+					.expectNextMatches(resync())
+					.then(() -> publish(1))
+					.expectNextMatches(event -> event.id() != null)
+					.thenCancel()
+					.verify(TIMEOUT);
+		}
+	}
+
+	@Test
+	void subscriberThatFallsBehindGetsResyncAndIsDisconnected() {
+		StepVerifier.create(feed.subscribe(null), 0)
+				.then(() -> publish(SUBSCRIBER_BUFFER + 2))
+				.thenRequest(Long.MAX_VALUE)
+				.thenConsumeWhile(event -> !"resync".equals(event.event()))
+				.expectNextMatches(resync())
+				.expectComplete()
+				.verify(TIMEOUT);
+	}
+
+	private void publish(int count) {
+		for (int i = 0; i < count; i++) {
+			feed.publish("test", "event");
+		}
+	}
+
+	private static Predicate<ServerSentEvent<Object>> id(long id) {
+		return event -> Long.toString(id).equals(event.id());
+	}
+
+	private static Predicate<ServerSentEvent<Object>> resync() {
+		return event -> "resync".equals(event.event());
+	}
+
+}
@@ -0,0 +1,203 @@
+package com.example.demo;
+
+import com.example.demo.model.Order;
+import com.example.demo.service.OrderArchive;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderArchiveTests {
+
+	private static final int INDEX_INTERVAL = 4;
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void recordsRoundTripThroughTheSegmentCodec() throws Exception {
+		List<Order> orders = List.of(
+				order(1L, 7L, 3L, 2, 19.99, "DELIVERED", Instant.parse("2026-03-01T10:15:30.123456789Z")),
+				order(2L, -4L, 0L, 0, null, "CANCELLED", null),
+				order(300L, Long.MAX_VALUE, Long.MIN_VALUE, -1, -0.5, "SHIPPED", Instant.ofEpochSecond(-86400)),
+				order(1L << 40, 1L, 1L, Integer.MAX_VALUE, Double.MAX_VALUE, "PENDING", Instant.EPOCH));
+		open().write(orders);
+
+		OrderArchive reopened = open();
+
+		for (Order expected : orders) {
+			assertEquals(describe(expected), describe(reopened.find(expected.getId()).orElseThrow()));
+		}
+		assertEquals(orders.size(), reopened.count());
+	}
+
+	@Test
+	void findHitsEveryRecordAroundIndexBoundaries() throws Exception {
+		// 21 records over 6 index points; ids step by 10 so every gap between them is a miss
+		List<Order> orders = LongStream.rangeClosed(1, 21).mapToObj(n -> order(n * 10, n, n, 1, 1.0)).toList();
+		OrderArchive archive = open();
+		archive.write(orders);
+
+		for (Order expected : orders) {
+			long id = expected.getId();
+			assertEquals(id, archive.find(id).orElseThrow().getId());
+			assertTrue(archive.find(id - 1).isEmpty(), "no order " + (id - 1));
+			assertTrue(archive.find(id + 1).isEmpty(), "no order " + (id + 1));
+		}
+		assertTrue(archive.find(0L).isEmpty());
+		assertTrue(archive.find(211L).isEmpty());
+		assertTrue(archive.find(Long.MAX_VALUE).isEmpty());
+	}
+
+	@Test
+	void iteratorByIdMergesInterleavedSegments() throws Exception {
+		OrderArchive archive = open();
+		archive.write(ordersWithIds(LongStream.rangeClosed(1, 19).filter(id -> id % 2 == 1)));
+		archive.write(ordersWithIds(LongStream.rangeClosed(2, 20).filter(id -> id % 2 == 0)));
+		archive.write(ordersWithIds(LongStream.of(100, 101, 102)));
+		archive.write(List.of());
+
+		List<Long> ids = new ArrayList<>();
+		for (Iterator<Order> it = open().iteratorById(); it.hasNext(); ) {
+			ids.add(it.next().getId());
+		}
+
+		List<Long> expected = new ArrayList<>(LongStream.rangeClosed(1, 20).boxed().toList());
+		expected.addAll(List.of(100L, 101L, 102L));
+		assertEquals(expected, ids);
+	}
+
+	@Test
+	void userAndProductIndexesMatchAFullScan() throws Exception {
+		OrderArchive archive = open();
+		archive.write(LongStream.rangeClosed(1, 40).mapToObj(id -> order(id, id % 3, id % 5, 1, 1.0)).toList());
+		archive.write(LongStream.rangeClosed(41, 90).mapToObj(id -> order(id, id % 3, id % 5, 1, 1.0)).toList());
+
+		for (long userId = 0; userId <= 3; userId++) {
+			long key = userId;
+			assertEquals(scan(archive, order -> order.getUserId() == key), ids(archive.findByUserId(userId)));
+		}
+		for (long productId = 0; productId <= 5; productId++) {
+			long key = productId;
+			assertEquals(scan(archive, order -> order.getProductId() == key), ids(archive.findByProductId(productId)));
+		}
+		assertEquals(describe(archive.find(44L).orElseThrow()),
+				describe(archive.findByUserId(2L).stream().filter(o -> o.getId() == 44L).findFirst().orElseThrow()));
+	}
+
+	@Test
+	void keyIndexPagesWalkAcrossSegmentsInIdOrder() throws Exception {
+		OrderArchive archive = open();
+		archive.write(LongStream.rangeClosed(1, 30).mapToObj(id -> order(id, id % 2, 9L, 1, 1.0)).toList());
+		archive.write(LongStream.rangeClosed(31, 60).mapToObj(id -> order(id, id % 2, 9L, 1, 1.0)).toList());
+
+		List<Long> walked = new ArrayList<>();
+		long cursor = 0;
+		List<Order> page;
+		do {
+			page = archive.pageByUserId(1L, cursor, 7);
+			page.forEach(order -> walked.add(order.getId()));
+			cursor = page.isEmpty() ? cursor : page.get(page.size() - 1).getId();
+		} while (page.size() == 7);
+
+		assertEquals(LongStream.rangeClosed(1, 60).filter(id -> id % 2 == 1).boxed().toList(), walked);
+		assertEquals(List.of(29L, 30L, 31L), ids(archive.pageByProductId(9L, 28L, 3)));
+		assertTrue(archive.pageByProductId(8L, 0L, 10).isEmpty());
+		assertTrue(archive.pageByUserId(0L, 60L, 10).isEmpty());
+	}
+
+	@Test
+	void filteredPagesWalkInterleavedSegmentsInIdOrder() throws Exception {
+		OrderArchive archive = open();
+		archive.write(ordersWithIds(LongStream.rangeClosed(1, 50).filter(id -> id % 3 != 0)));
+		archive.write(ordersWithIds(LongStream.rangeClosed(1, 50).filter(id -> id % 3 == 0)));
+
+		List<Long> walked = new ArrayList<>();
+		long cursor = 0;
+		List<Order> page;
+		do {
+			page = archive.page(order -> "DELIVERED".equals(order.getStatus()), cursor, 6);
+			page.forEach(order -> walked.add(order.getId()));
+			cursor = page.isEmpty() ? cursor : page.get(page.size() - 1).getId();
+		} while (page.size() == 6);
+
+		assertEquals(LongStream.rangeClosed(1, 50).filter(id -> id % 2 == 0).boxed().toList(), walked);
+		assertEquals(List.of(13L, 14L, 15L), ids(archive.page(order -> true, 12L, 3)));
+		assertTrue(archive.page(order -> true, 50L, 10).isEmpty());
+	}
+
+	@Test
+	void discardedSegmentsAreNotLoadedAgain() throws Exception {
+		OrderArchive archive = open();
+		archive.write(ordersWithIds(LongStream.rangeClosed(1, 10)));
+		OrderArchive.Segment second = archive.write(ordersWithIds(LongStream.rangeClosed(11, 20)));
+		archive.write(ordersWithIds(LongStream.rangeClosed(21, 30)));
+
+		archive.discard(second);
+		assertEquals(20, archive.count());
+		assertTrue(archive.find(15L).isEmpty());
+		// What a discard leaves when the segment is still mapped, as on Windows: the file and a marker
+		Path kept = directory.resolve("segment-00000003.seg");
+		Files.createFile(directory.resolve("segment-00000003.seg.discarded"));
+
+		OrderArchive reopened = open();
+
+		assertEquals(10, reopened.count());
+		assertFalse(Files.exists(kept));
+		try (Stream<Path> files = Files.list(directory)) {
+			assertEquals(List.of("segment-00000001.seg"), files.map(f -> f.getFileName().toString()).toList());
+		}
+	}
+
+	private OrderArchive open() {
+		OrderArchive archive = new OrderArchive();
+		ReflectionTestUtils.setField(archive, "dir", directory.toString());
+		ReflectionTestUtils.setField(archive, "indexInterval", INDEX_INTERVAL);
+		ReflectionTestUtils.invokeMethod(archive, "open");
+		return archive;
+	}
+
+	private static List<Long> scan(OrderArchive archive, Predicate<Order> filter) {
+		return ids(archive.findAll(filter));
+	}
+
+	private static List<Long> ids(List<Order> orders) {
+		return orders.stream().map(Order::getId).sorted(Comparator.naturalOrder()).toList();
+	}
+
+	private static List<Order> ordersWithIds(LongStream ids) {
+		return ids.mapToObj(id -> order(id, 1L, 1L, 1, 1.0)).toList();
+	}
+
+	private static Order order(long id, long userId, long productId, int quantity, Double totalPrice) {
+		return order(id, userId, productId, quantity, totalPrice, id % 2 == 0 ? "DELIVERED" : "CANCELLED", null);
+	}
+
+	private static Order order(long id, long userId, long productId, int quantity, Double totalPrice,
+							   String status, Instant createdAt) {
+		Order order = new Order(userId, productId, quantity, totalPrice, status);
+		order.setId(id);
+		order.setCreatedAt(createdAt);
+		return order;
+	}
+
+	private static String describe(Order order) {
+		return order.getId() + "/" + order.getUserId() + "/" + order.getProductId() + "/" + order.getQuantity()
+				+ "/" + order.getTotalPrice() + "/" + order.getStatus() + "/" + order.getCreatedAt();
+	}
+
+}
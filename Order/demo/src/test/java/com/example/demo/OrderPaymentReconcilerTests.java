@@ -0,0 +1,183 @@
+package com.example.demo;
+
+import com.example.demo.model.Order;
+import com.example.demo.repository.OrderRepository;
+import com.example.demo.service.OrderArchive;
+import com.example.demo.service.OrderPaymentReconciler;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OrderPaymentReconcilerTests {
+
+	// Small pages so both cursors cross page boundaries
+	private static final int PAGE_SIZE = 2;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final List<Order> table = new ArrayList<>();
+	private final List<PaymentRow> payments = new ArrayList<>();
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void mismatchesAreReportedInOrderIdOrder() throws Exception {
+		table.add(order(1L, "CONFIRMED"));
+		table.add(order(2L, "CONFIRMED"));
+		table.add(order(4L, "DELIVERED"));
+		table.add(order(6L, "PENDING"));
+		table.add(order(7L, "CONFIRMED"));
+		OrderArchive archive = archive(List.of(order(3L, "SHIPPED"), order(5L, "DELIVERED")));
+
+		payments.add(new PaymentRow(10L, 0L, 10.0, "SUCCESS"));
+		payments.add(new PaymentRow(11L, 1L, 10.0, "SUCCESS"));
+		payments.add(new PaymentRow(12L, 3L, 10.0, "FAILED"));
+		payments.add(new PaymentRow(13L, 4L, 10.0, "SUCCESS"));
+		payments.add(new PaymentRow(14L, 4L, 10.0, "PENDING"));
+		payments.add(new PaymentRow(15L, 5L, 12.5, "SUCCESS"));
+		payments.add(new PaymentRow(16L, 7L, 10.0, "FAILED"));
+		payments.add(new PaymentRow(17L, 7L, 10.004, "SUCCESS"));
+		payments.add(new PaymentRow(18L, 8L, 10.0, "SUCCESS"));
+		payments.add(new PaymentRow(19L, 99L, 10.0, "SUCCESS"));
+		payments.add(new PaymentRow(20L, 99L, 10.0, "FAILED"));
+
+		Map<String, Object> result = reconciler(archive, Set.of()).reconcile();
+
+		assertEquals("COMPLETED", result.get("outcome"));
+		assertEquals(7L, result.get("orders"));
+		assertEquals(11L, result.get("payments"));
+		assertEquals(List.of("ORPHAN_PAYMENT 0 [10]", "MISSING_PAYMENT 2 []", "UNPAID 3 [12]", "DUPLICATE 4 [13, 14]",
+				"AMOUNT_DRIFT 5 [15]", "ORPHAN_PAYMENT 8 [18]", "ORPHAN_PAYMENT 99 [19, 20]"), report(result));
+	}
+
+	@Test
+	void ordersInBothTiersAreCheckedOnceAndLateOrdersAreNotOrphans() throws Exception {
+		table.add(order(1L, "CONFIRMED"));
+		table.add(order(3L, "DELIVERED"));
+		// Archived copies of 1 and 3 left behind by an interrupted archive run
+		OrderArchive archive = archive(List.of(order(1L, "CONFIRMED"), order(2L, "DELIVERED"), order(3L, "SHIPPED")));
+
+		payments.add(new PaymentRow(10L, 1L, 10.0, "SUCCESS"));
+		payments.add(new PaymentRow(11L, 2L, 10.0, "SUCCESS"));
+		payments.add(new PaymentRow(12L, 3L, 10.0, "REFUNDED"));
+		payments.add(new PaymentRow(13L, 4L, 10.0, "SUCCESS"));
+
+		// Order 4 was placed after the table scan passed its id
+		Map<String, Object> result = reconciler(archive, Set.of(4L)).reconcile();
+
+		assertEquals("COMPLETED", result.get("outcome"));
+		assertEquals(3L, result.get("orders"));
+		assertEquals(List.of(), report(result));
+	}
+
+	private OrderPaymentReconciler reconciler(OrderArchive archive, Set<Long> createdLater) {
+		OrderPaymentReconciler reconciler = new OrderPaymentReconciler();
+		ReflectionTestUtils.setField(reconciler, "orderRepository", repository(createdLater));
+		ReflectionTestUtils.setField(reconciler, "archive", archive);
+		ReflectionTestUtils.setField(reconciler, "paymentClient", paymentClient());
+		ReflectionTestUtils.setField(reconciler, "objectMapper", objectMapper);
+		ReflectionTestUtils.setField(reconciler, "dir", directory.resolve("reports").toString());
+		ReflectionTestUtils.setField(reconciler, "pageSize", PAGE_SIZE);
+		ReflectionTestUtils.setField(reconciler, "amountTolerance", 0.005);
+		ReflectionTestUtils.setField(reconciler, "keepReports", 7);
+		ReflectionTestUtils.setField(reconciler, "timeoutMs", 5000L);
+		return reconciler;
+	}
+
+	private OrderArchive archive(List<Order> orders) throws Exception {
+		OrderArchive archive = new OrderArchive();
+		ReflectionTestUtils.setField(archive, "dir", directory.resolve("archive").toString());
+		ReflectionTestUtils.setField(archive, "indexInterval", 4);
+		ReflectionTestUtils.invokeMethod(archive, "open");
+		archive.write(orders);
+		return archive;
+	}
+
+	// Keyset pages over the table list; existsById also sees orders created after the scan
+	private OrderRepository repository(Set<Long> createdLater) {
+		return (OrderRepository) Proxy.newProxyInstance(OrderRepository.class.getClassLoader(),
+				new Class<?>[]{OrderRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+					case "findByIdGreaterThanOrderByIdAsc" -> table.stream()
+							.filter(order -> order.getId() > (Long) args[0])
+							.sorted(Comparator.comparing(Order::getId))
+							.limit(((Pageable) args[1]).getPageSize())
+							.toList();
+					case "existsById" -> createdLater.contains((Long) args[0])
+							|| table.stream().anyMatch(order -> order.getId().equals(args[0]));
+					default -> throw new UnsupportedOperationException(method.getName());
+				});
+	}
+
+	// Serves GET /payments pages in (orderId, id) order like the payment service does
+	private WebClient paymentClient() {
+		return WebClient.builder().exchangeFunction(request -> {
+			MultiValueMap<String, String> query = UriComponentsBuilder.fromUri(request.url()).build().getQueryParams();
+			long afterOrderId = Long.parseLong(query.getOrDefault("afterOrderId", List.of("-1")).get(0));
+			long afterId = Long.parseLong(query.getOrDefault("afterId", List.of("-1")).get(0));
+			int size = Integer.parseInt(query.getFirst("size"));
+			List<PaymentRow> items = payments.stream()
+					.sorted(Comparator.comparing(PaymentRow::orderId).thenComparing(PaymentRow::id))
+					.filter(p -> p.orderId() > afterOrderId || (p.orderId() == afterOrderId && p.id() > afterId))
+					.limit(size)
+					.toList();
+			PaymentRow last = items.size() == size ? items.get(size - 1) : null;
+			Map<String, Object> page = new LinkedHashMap<>();
+			page.put("items", items);
+			page.put("nextAfterOrderId", last == null ? null : last.orderId());
+			page.put("nextAfterId", last == null ? null : last.id());
+			try {
+				return Mono.just(ClientResponse.create(HttpStatus.OK)
+						.header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+						.body(objectMapper.writeValueAsString(page))
+						.build());
+			} catch (Exception e) {
+				return Mono.error(e);
+			}
+		}).build();
+	}
+
+	// "TYPE orderId [paymentIds]" per report line
+	private List<String> report(Map<String, Object> result) throws Exception {
+		List<String> lines = new ArrayList<>();
+		for (String line : Files.readAllLines(Path.of((String) result.get("report")))) {
+			JsonNode mismatch = objectMapper.readTree(line);
+			List<Long> ids = new ArrayList<>();
+			mismatch.path("paymentIds").forEach(id -> ids.add(id.asLong()));
+			lines.add(mismatch.path("type").asText() + " " + mismatch.path("orderId").asLong() + " " + ids);
+		}
+		return lines;
+	}
+
+	private static Order order(long id, String status) {
+		Order order = new Order(1L, 1L, 1, 10.0, status);
+		order.setId(id);
+		return order;
+	}
+
+	record PaymentRow(Long id, Long orderId, Double amount, String paymentStatus) {
+	}
+
+}
@@ -0,0 +1,101 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.PaymentApplication;
+import com.example.demo.model.Payment;
+import com.example.demo.service.GatewayResilience;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+// Load test of the gateway guard with faults injected into the stub gateway (20-50 ms per call).
+// 32 caller threads share a bulkhead of 12:
+// - healthy: no faults
+// - slow: 20% of the calls take 5 s and hit the 250 ms deadline
+// - failing: 60% of the calls throw, so the breaker keeps opening and probing
+// Run with "-Djmh.include=GatewayResilienceBenchmark" for the latency percentiles a processing worker
+// sees per scenario; the aux counters show how the calls ended.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Threads(32)
+@Fork(1)
+public class GatewayResilienceBenchmark {
+
+    @Param({"healthy", "slow", "failing"})
+    public String scenario;
+
+    private ConfigurableApplicationContext context;
+    private GatewayResilience gateway;
+    private Payment payment;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        String ledgerDir = Files.createTempDirectory("payment-ledger-bench").toString();
+        context = new SpringApplicationBuilder(PaymentApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.jpa.show-sql=false", "logging.level.root=WARN")
+                .run("--payment.ledger.dir=" + ledgerDir,
+                        "--payment.gateway.stub.min-latency-ms=20",
+                        "--payment.gateway.stub.max-latency-ms=50",
+                        "--payment.gateway.stub.slow-latency-ms=5000",
+                        "--payment.gateway.stub.slow-rate=" + ("slow".equals(scenario) ? 0.2 : 0.0),
+                        "--payment.gateway.stub.error-rate=" + ("failing".equals(scenario) ? 0.6 : 0.0),
+                        "--payment.gateway.resilience.timeout-ms=250",
+                        "--payment.gateway.resilience.open-ms=1000");
+        gateway = context.getBean(GatewayResilience.class);
+        payment = new Payment(1L, 10.0, "UPI", "PROCESSING");
+        payment.setId(1L);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public GatewayResilience.Outcome guardedCharge(Outcomes outcomes) {
+        GatewayResilience.Outcome outcome = gateway.charge(payment);
+        switch (outcome) {
+            case APPROVED -> outcomes.approved++;
+            case DECLINED -> outcomes.declined++;
+            case TIMEOUT -> outcomes.timedOut++;
+            case ERROR -> outcomes.errored++;
+            case BULKHEAD_FULL -> outcomes.bulkheadFull++;
+            case CIRCUIT_OPEN -> outcomes.circuitOpen++;
+        }
+        return outcome;
+    }
+
+    // One counter per gateway outcome, reported next to the latency so fast refusals are not
+    // mistaken for fast answers
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Outcomes {
+        public long approved;
+        public long declined;
+        public long timedOut;
+        public long errored;
+        public long bulkheadFull;
+        public long circuitOpen;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.model.Payment;
+import com.example.demo.model.PaymentEvent;
+import com.example.demo.service.PaymentLedger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Startup replay of a payment ledger holding EVENTS events (each payment created, then moved through
+// PROCESSING, SUCCESS and REFUNDED). With snapshotted=true a snapshot covers all but the last tenth,
+// so only that tail is replayed from the log.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class PaymentLedgerBenchmark {
+
+    private static final String[] STATUSES = {"PENDING", "PROCESSING", "SUCCESS", "REFUNDED"};
+
+    @Param({"2000000"})
+    private int events;
+
+    @Param({"false", "true"})
+    private boolean snapshotted;
+
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("payment-ledger-replay");
+        PaymentLedger ledger = ledger();
+        ledger.open();
+        int payments = events / STATUSES.length;
+        int snapshotAt = snapshotted ? events / 10 * 9 : -1;
+        int written = 0;
+        List<CompletableFuture<PaymentEvent>> inFlight = new ArrayList<>();
+        for (int step = 0; step < STATUSES.length; step++) {
+            for (int i = 1; i <= payments; i++) {
+                Payment payment = new Payment((long) i, 10.0 * (1 + i % 20), "UPI", STATUSES[step]);
+                payment.setId((long) i);
+                payment.setVersion((long) step);
+                inFlight.add(ledger.appendAsync(step == 0 ? PaymentEvent.CREATED : PaymentEvent.STATUS_CHANGED, payment));
+                written++;
+                if (inFlight.size() == 10_000 || written == snapshotAt) {
+                    inFlight.forEach(CompletableFuture::join);
+                    inFlight.clear();
+                }
+                if (written == snapshotAt) {
+                    ledger.snapshot();
+                }
+            }
+        }
+        inFlight.forEach(CompletableFuture::join);
+        ledger.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public Map<String, Object> rebuild() throws IOException {
+        return ledger().rebuild();
+    }
+
+    private PaymentLedger ledger() {
+        return new PaymentLedger(true, directory.toString(), 64L << 20, 4096, 0, 2);
+    }
+}
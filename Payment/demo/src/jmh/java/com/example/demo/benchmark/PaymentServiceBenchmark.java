@@ -0,0 +1,82 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.PaymentApplication;
+import com.example.demo.model.Payment;
+import com.example.demo.repository.PaymentRepository;
+import com.example.demo.service.PaymentService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Payment service hot paths against the embedded H2 database, seeded with PAYMENTS pending payments
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PaymentServiceBenchmark {
+
+    private static final int PAYMENTS = 20_000;
+    private static final String[] MODES = {"CREDIT_CARD", "DEBIT_CARD", "UPI", "NET_BANKING", "CASH"};
+
+    private ConfigurableApplicationContext context;
+    private PaymentService paymentService;
+    private ObjectMapper objectMapper;
+    private List<Payment> page;
+    private long firstId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        // A fresh ledger per run, so earlier runs' payments are not restored into the table
+        String ledgerDir = Files.createTempDirectory("payment-ledger-bench").toString();
+        context = new SpringApplicationBuilder(PaymentApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.jpa.show-sql=false", "logging.level.root=WARN")
+                .run("--payment.ledger.dir=" + ledgerDir);
+        paymentService = context.getBean(PaymentService.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+
+        List<Payment> payments = new ArrayList<>(PAYMENTS);
+        for (int i = 0; i < PAYMENTS; i++) {
+            payments.add(new Payment((long) i + 1, 10.0 * (1 + i % 20), MODES[i % MODES.length], "PENDING"));
+        }
+        List<Payment> saved = context.getBean(PaymentRepository.class).saveAll(payments);
+        firstId = saved.get(0).getId();
+        page = saved.subList(0, 100);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object processPayment() {
+        return paymentService.updatePaymentStatus(firstId + ThreadLocalRandom.current().nextInt(PAYMENTS), "SUCCESS");
+    }
+
+    @Benchmark
+    public byte[] serializePaymentList() throws Exception {
+        return objectMapper.writeValueAsBytes(page);
+    }
+}
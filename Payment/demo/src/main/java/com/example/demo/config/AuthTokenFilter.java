@@ -0,0 +1,74 @@
+package com.example.demo.config;
+
+import com.example.demo.service.TokenVerifier;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+
+// Reads "Authorization: Bearer <token>" and checks the token locally with TokenVerifier.
+// The caller's claims are left in the "auth.claims" request attribute for handlers to check.
+// A bad or expired token is always answered with 401; a missing one only when auth.required is set,
+// except for preflight requests and auth.public-paths.
+@Component
+public class AuthTokenFilter extends OncePerRequestFilter {
+
+    public static final String CLAIMS_ATTRIBUTE = "auth.claims";
+
+    private static final String BEARER = "Bearer ";
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    @Autowired
+    private TokenVerifier tokenVerifier;
+
+    @Value("${auth.required:false}")
+    private boolean required;
+
+    @Value("${auth.public-paths:}")
+    private List<String> publicPaths;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (authorization != null && authorization.regionMatches(true, 0, BEARER, 0, BEARER.length())) {
+            try {
+                request.setAttribute(CLAIMS_ATTRIBUTE, tokenVerifier.verify(authorization.substring(BEARER.length()).trim()));
+            } catch (IllegalArgumentException e) {
+                response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer error=\"invalid_token\"");
+                response.sendError(HttpStatus.UNAUTHORIZED.value(), e.getMessage());
+                return;
+            } catch (IllegalStateException e) {
+                response.setHeader(HttpHeaders.RETRY_AFTER, "5");
+                response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), e.getMessage());
+                return;
+            }
+        } else if (required && !"OPTIONS".equals(request.getMethod()) && !isPublic(request)) {
+            response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer");
+            response.sendError(HttpStatus.UNAUTHORIZED.value(), "Authentication required");
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    private boolean isPublic(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (String pattern : publicPaths) {
+            if (!pattern.isBlank() && pathMatcher.match(pattern.trim(), path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
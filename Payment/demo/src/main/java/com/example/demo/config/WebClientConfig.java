@@ -0,0 +1,16 @@
+package com.example.demo.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.client.WebClient;
+
+@Configuration
+public class WebClientConfig {
+    
+    @Bean
+    public WebClient orderClient(WebClient.Builder builder,
+                                 @Value("${payment.order-service.url}") String orderServiceUrl) {
+        return builder.baseUrl(orderServiceUrl).build();
+    }
+}
@@ -1,12 +1,31 @@
 package com.example.demo.controller;
 
+import com.example.demo.exception.ProcessingRejectedException;
+import com.example.demo.exception.VersionConflictException;
 import com.example.demo.model.Payment;
+import com.example.demo.model.PaymentEvent;
+import com.example.demo.model.PaymentPage;
+import com.example.demo.model.RefundJob;
+import com.example.demo.model.RefundRequest;
+import com.example.demo.service.BulkRefundService;
+import com.example.demo.service.ChangeFeed;
+import com.example.demo.service.GatewayResilience;
+import com.example.demo.service.IdempotencyStore;
+import com.example.demo.service.PaymentLedger;
+import com.example.demo.service.PaymentProcessor;
+import com.example.demo.service.PaymentRollups;
 import com.example.demo.service.PaymentService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Map;
 
@@ -17,11 +36,43 @@ public class PaymentController {
     @Autowired
     private PaymentService paymentService;
     
-    // Create payment
+    @Autowired
+    private ChangeFeed changeFeed;
+    
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+    
+    @Autowired
+    private PaymentProcessor paymentProcessor;
+    
+    @Autowired
+    private PaymentLedger ledger;
+    
+    @Autowired
+    private PaymentRollups rollups;
+    
+    @Autowired
+    private GatewayResilience gatewayResilience;
+    
+    @Autowired
+    private BulkRefundService bulkRefundService;
+    
+    // Create payment; a repeated Idempotency-Key gets the original response instead of a second payment
     @PostMapping
-    public ResponseEntity<Payment> createPayment(@RequestBody Payment payment) {
-        Payment createdPayment = paymentService.createPayment(payment);
-        return new ResponseEntity<>(createdPayment, HttpStatus.CREATED);
+    public ResponseEntity<?> createPayment(
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+            @RequestBody Payment payment) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return new ResponseEntity<>(paymentService.createPayment(payment), HttpStatus.CREATED);
+        }
+        return idempotencyStore.execute(idempotencyKey, payment,
+                () -> new ResponseEntity<>(paymentService.createPayment(payment), HttpStatus.CREATED));
+    }
+    
+    // Idempotency-Key store size and replay counters
+    @GetMapping("/idempotency/stats")
+    public ResponseEntity<Map<String, Object>> getIdempotencyStats() {
+        return new ResponseEntity<>(idempotencyStore.stats(), HttpStatus.OK);
     }
     
     // Get all payments
@@ -31,18 +82,90 @@ public class PaymentController {
         return new ResponseEntity<>(payments, HttpStatus.OK);
     }
     
-    // Get payment by ID
+    // Get all payments in (orderId, id) order one keyset page at a time (pass nextAfterOrderId/nextAfterId back)
+    @GetMapping(params = "size")
+    public ResponseEntity<PaymentPage> getPaymentsPage(@RequestParam(required = false) Long afterOrderId,
+            @RequestParam(required = false) Long afterId,
+            @RequestParam int size) {
+        PaymentPage page = paymentService.getPaymentsPage(afterOrderId, afterId, size);
+        return new ResponseEntity<>(page, HttpStatus.OK);
+    }
+    
+    // Live payment status changes as Server-Sent Events; reconnects resume from Last-Event-ID
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> streamPaymentEvents(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return changeFeed.subscribe(lastEventId);
+    }
+    
+    // Event feed subscriber and delivery counters
+    @GetMapping("/events/stats")
+    public ResponseEntity<Map<String, Object>> getEventStats() {
+        return new ResponseEntity<>(changeFeed.stats(), HttpStatus.OK);
+    }
+    
+    // Get payment by ID; the ETag is the version to send back as If-Match
     @GetMapping("/{id}")
     public ResponseEntity<?> getPaymentById(@PathVariable Long id) {
         try {
             Payment payment = paymentService.getPaymentById(id)
                     .orElseThrow(() -> new RuntimeException("Payment not found"));
-            return new ResponseEntity<>(payment, HttpStatus.OK);
+            return new ResponseEntity<>(payment, ETags.headers(payment.getVersion()), HttpStatus.OK);
         } catch (Exception e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
         }
     }
     
+    // Every recorded change of a payment, oldest first
+    @GetMapping("/{id}/history")
+    public ResponseEntity<?> getPaymentHistory(@PathVariable Long id) {
+        List<PaymentEvent> history = paymentService.getPaymentHistory(id);
+        if (history.isEmpty()) {
+            return new ResponseEntity<>("No history for payment " + id, HttpStatus.NOT_FOUND);
+        }
+        return new ResponseEntity<>(history, HttpStatus.OK);
+    }
+    
+    // Ledger size, group commit batching and snapshot state
+    @GetMapping("/ledger/stats")
+    public ResponseEntity<Map<String, Object>> getLedgerStats() {
+        return new ResponseEntity<>(ledger.stats(), HttpStatus.OK);
+    }
+    
+    // Write a ledger snapshot now instead of waiting for snapshot-every events
+    @PostMapping("/ledger/snapshot")
+    public ResponseEntity<Map<String, Object>> snapshotLedger() {
+        return new ResponseEntity<>(ledger.snapshot(), HttpStatus.OK);
+    }
+    
+    // All-time payment count and amount by mode and status
+    @GetMapping("/rollups")
+    public ResponseEntity<Map<String, Object>> getRollups() {
+        return new ResponseEntity<>(rollups.totals(), HttpStatus.OK);
+    }
+    
+    // Count and amount by mode and status of payments created in [from, to], per bucket and summed;
+    // granularity is MINUTE, HOUR or DAY, or picked from the range when left out
+    @GetMapping("/rollups/range")
+    public ResponseEntity<?> getRollupRange(@RequestParam String from,
+                                            @RequestParam(required = false) String to,
+                                            @RequestParam(required = false) String granularity) {
+        try {
+            Instant start = Instant.parse(from);
+            Instant end = to == null ? Instant.now() : Instant.parse(to);
+            if (end.isBefore(start)) {
+                return new ResponseEntity<>("to must not be before from", HttpStatus.BAD_REQUEST);
+            }
+            PaymentRollups.Granularity size = granularity == null ? null
+                    : PaymentRollups.Granularity.valueOf(granularity.toUpperCase());
+            return new ResponseEntity<>(rollups.range(start, end, size), HttpStatus.OK);
+        } catch (DateTimeParseException e) {
+            return new ResponseEntity<>("from and to must be ISO-8601 instants", HttpStatus.BAD_REQUEST);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+    
     // Get payment by order ID
     @GetMapping("/order/{orderId}")
     public ResponseEntity<?> getPaymentByOrderId(@PathVariable Long orderId) {
@@ -81,34 +204,105 @@ public class PaymentController {
         return new ResponseEntity<>(payments, HttpStatus.OK);
     }
     
-    // Update payment
+    // Update payment; with If-Match it only applies to that version (412 otherwise)
     @PutMapping("/{id}")
-    public ResponseEntity<?> updatePayment(@PathVariable Long id, @RequestBody Payment payment) {
+    public ResponseEntity<?> updatePayment(@PathVariable Long id, @RequestBody Payment payment,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
-            Payment updatedPayment = paymentService.updatePayment(id, payment);
-            return new ResponseEntity<>(updatedPayment, HttpStatus.OK);
+            Payment updatedPayment = paymentService.updatePayment(id, payment, ETags.parseIfMatch(ifMatch));
+            return new ResponseEntity<>(updatedPayment, ETags.headers(updatedPayment.getVersion()), HttpStatus.OK);
+        } catch (VersionConflictException e) {
+            return new ResponseEntity<>(e.getMessage(), ETags.headers(e.getCurrentVersion()), e.getStatus());
         } catch (Exception e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
         }
     }
     
-    // Update payment status
+    // Update payment status; with If-Match it only applies to that version (412 otherwise)
     @PatchMapping("/{id}/status")
-    public ResponseEntity<?> updatePaymentStatus(@PathVariable Long id, @RequestBody Map<String, String> statusData) {
+    public ResponseEntity<?> updatePaymentStatus(@PathVariable Long id, @RequestBody Map<String, String> statusData,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
-            Payment payment = paymentService.updatePaymentStatus(id, statusData.get("status"));
-            return new ResponseEntity<>(payment, HttpStatus.OK);
+            Payment payment = paymentService.updatePaymentStatus(id, statusData.get("status"), ETags.parseIfMatch(ifMatch));
+            return new ResponseEntity<>(payment, ETags.headers(payment.getVersion()), HttpStatus.OK);
+        } catch (VersionConflictException e) {
+            return new ResponseEntity<>(e.getMessage(), ETags.headers(e.getCurrentVersion()), e.getStatus());
         } catch (Exception e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
         }
     }
     
-    // Process payment
+    // Queue payment for the gateway and answer 202 with it in PROCESSING; the outcome arrives on /payments/events.
+    // With If-Match it only applies to that version (412 otherwise); a full queue or an open gateway
+    // circuit answers 503 with Retry-After
     @PostMapping("/{id}/process")
-    public ResponseEntity<?> processPayment(@PathVariable Long id) {
+    public ResponseEntity<?> processPayment(@PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
-            Payment payment = paymentService.processPayment(id);
-            return new ResponseEntity<>(payment, HttpStatus.OK);
+            Payment payment = paymentProcessor.submit(id, ETags.parseIfMatch(ifMatch));
+            return new ResponseEntity<>(payment, ETags.headers(payment.getVersion()), HttpStatus.ACCEPTED);
+        } catch (ProcessingRejectedException e) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+            return new ResponseEntity<>(e.getMessage(), headers, HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (VersionConflictException e) {
+            return new ResponseEntity<>(e.getMessage(), ETags.headers(e.getCurrentVersion()), e.getStatus());
+        } catch (IllegalStateException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
+        } catch (Exception e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+        }
+    }
+    
+    // Processing queue depth, worker use and gateway outcomes
+    @GetMapping("/processing/stats")
+    public ResponseEntity<Map<String, Object>> getProcessingStats() {
+        return new ResponseEntity<>(paymentProcessor.stats(), HttpStatus.OK);
+    }
+    
+    // Per gateway provider: bulkhead use, circuit breaker state, call outcomes and latency histogram
+    @GetMapping("/gateway/stats")
+    public ResponseEntity<Map<String, Object>> getGatewayStats() {
+        return new ResponseEntity<>(gatewayResilience.stats(), HttpStatus.OK);
+    }
+    
+    // Refund the payments of the listed orders, or of every order for a product, in the background;
+    // answers 202 with the job, whose progress is reported at /payments/refunds/{jobId}
+    @PostMapping("/refunds")
+    public ResponseEntity<?> startRefunds(@RequestBody RefundRequest request) {
+        try {
+            return new ResponseEntity<>(bulkRefundService.submit(request), HttpStatus.ACCEPTED);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+    
+    // Get all refund jobs, newest first
+    @GetMapping("/refunds")
+    public ResponseEntity<List<RefundJob>> getRefundJobs() {
+        return new ResponseEntity<>(bulkRefundService.getJobs(), HttpStatus.OK);
+    }
+    
+    // Get refund job status and progress
+    @GetMapping("/refunds/{jobId}")
+    public ResponseEntity<?> getRefundJob(@PathVariable Long jobId) {
+        try {
+            RefundJob job = bulkRefundService.getJob(jobId)
+                    .orElseThrow(() -> new RuntimeException("Refund job not found"));
+            return new ResponseEntity<>(job, HttpStatus.OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+        }
+    }
+    
+    // Run a finished refund job again for the payments it left unsettled (still REFUNDING because the
+    // gateway never answered); 409 while the job is still running
+    @PostMapping("/refunds/{jobId}/resume")
+    public ResponseEntity<?> resumeRefundJob(@PathVariable Long jobId) {
+        try {
+            return new ResponseEntity<>(bulkRefundService.resume(jobId), HttpStatus.ACCEPTED);
+        } catch (IllegalStateException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
         } catch (Exception e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
         }
@@ -0,0 +1,21 @@
+package com.example.demo.exception;
+
+// The payment cannot be queued now (full queue or open gateway circuit); the caller should retry
+// after retryAfterSeconds
+public class ProcessingRejectedException extends RuntimeException {
+    
+    private final long retryAfterSeconds;
+    
+    public ProcessingRejectedException(String message) {
+        this(message, 1);
+    }
+    
+    public ProcessingRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+    
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
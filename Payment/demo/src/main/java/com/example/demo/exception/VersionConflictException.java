@@ -0,0 +1,26 @@
+package com.example.demo.exception;
+
+import org.springframework.http.HttpStatus;
+
+// An update lost an optimistic version check: 412 when the client's If-Match no longer
+// matches, 409 when an unconditional update lost a race it could not (or no longer) retry
+public class VersionConflictException extends RuntimeException {
+    
+    private final HttpStatus status;
+    
+    private final Long currentVersion;
+    
+    public VersionConflictException(HttpStatus status, String message, Long currentVersion) {
+        super(message);
+        this.status = status;
+        this.currentVersion = currentVersion;
+    }
+    
+    public HttpStatus getStatus() {
+        return status;
+    }
+    
+    public Long getCurrentVersion() {
+        return currentVersion;
+    }
+}
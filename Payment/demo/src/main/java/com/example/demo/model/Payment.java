@@ -2,8 +2,14 @@ package com.example.demo.model;
 
 import jakarta.persistence.*;
 
+import java.time.Instant;
+
 @Entity
-@Table(name = "payments")
+@Table(name = "payments", indexes = {
+        @Index(name = "idx_payments_order_id", columnList = "order_id, id"),
+        @Index(name = "idx_payments_status", columnList = "payment_status, id"),
+        @Index(name = "idx_payments_mode", columnList = "payment_mode, id")
+})
 public class Payment {
     
     @Id
@@ -20,7 +26,13 @@ public class Payment {
     private String paymentMode; // CREDIT_CARD, DEBIT_CARD, UPI, NET_BANKING, CASH
     
     @Column(nullable = false, name = "payment_status")
-    private String paymentStatus; // PENDING, SUCCESS, FAILED, REFUNDED
+    private String paymentStatus; // PENDING, PROCESSING, SUCCESS, FAILED, REFUNDED
+    
+    @Column(name = "created_at", updatable = false)
+    private Instant createdAt;
+    
+    @Version
+    private Long version; // bumped on every update; exposed as the ETag
     
     // Constructors
     public Payment() {
@@ -73,4 +85,20 @@ public class Payment {
     public void setPaymentStatus(String paymentStatus) {
         this.paymentStatus = paymentStatus;
     }
+    
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+    
+    public Long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
@@ -0,0 +1,152 @@
+package com.example.demo.model;
+
+import java.time.Instant;
+
+// One entry of the payment ledger: the full state of a payment right after a change
+public class PaymentEvent {
+    
+    public static final String CREATED = "CREATED";
+    public static final String UPDATED = "UPDATED";
+    public static final String STATUS_CHANGED = "STATUS_CHANGED";
+    public static final String DELETED = "DELETED";
+    
+    private long position; // byte offset of the event in the ledger
+    
+    private long previousPosition; // the payment's previous event, -1 for its first
+    
+    private Instant recordedAt;
+    
+    private String type; // CREATED, UPDATED, STATUS_CHANGED, DELETED
+    
+    private Long paymentId;
+    
+    private Long orderId;
+    
+    private Double amount;
+    
+    private String paymentMode;
+    
+    private String paymentStatus;
+    
+    private Long version;
+    
+    private Instant createdAt;
+    
+    // Constructors
+    public PaymentEvent() {
+    }
+    
+    public PaymentEvent(long position, long previousPosition, Instant recordedAt, String type, Long paymentId,
+                        Long orderId, Double amount, String paymentMode, String paymentStatus, Long version,
+                        Instant createdAt) {
+        this.position = position;
+        this.previousPosition = previousPosition;
+        this.recordedAt = recordedAt;
+        this.type = type;
+        this.paymentId = paymentId;
+        this.orderId = orderId;
+        this.amount = amount;
+        this.paymentMode = paymentMode;
+        this.paymentStatus = paymentStatus;
+        this.version = version;
+        this.createdAt = createdAt;
+    }
+    
+    // The payment as it stood after this event
+    public Payment toPayment() {
+        Payment payment = new Payment(orderId, amount, paymentMode, paymentStatus);
+        payment.setId(paymentId);
+        payment.setVersion(version);
+        payment.setCreatedAt(createdAt);
+        return payment;
+    }
+    
+    // Getters and Setters
+    public long getPosition() {
+        return position;
+    }
+    
+    public void setPosition(long position) {
+        this.position = position;
+    }
+    
+    public long getPreviousPosition() {
+        return previousPosition;
+    }
+    
+    public void setPreviousPosition(long previousPosition) {
+        this.previousPosition = previousPosition;
+    }
+    
+    public Instant getRecordedAt() {
+        return recordedAt;
+    }
+    
+    public void setRecordedAt(Instant recordedAt) {
+        this.recordedAt = recordedAt;
+    }
+    
+    public String getType() {
+        return type;
+    }
+    
+    public void setType(String type) {
+        this.type = type;
+    }
+    
+    public Long getPaymentId() {
+        return paymentId;
+    }
+    
+    public void setPaymentId(Long paymentId) {
+        this.paymentId = paymentId;
+    }
+    
+    public Long getOrderId() {
+        return orderId;
+    }
+    
+    public void setOrderId(Long orderId) {
+        this.orderId = orderId;
+    }
+    
+    public Double getAmount() {
+        return amount;
+    }
+    
+    public void setAmount(Double amount) {
+        this.amount = amount;
+    }
+    
+    public String getPaymentMode() {
+        return paymentMode;
+    }
+    
+    public void setPaymentMode(String paymentMode) {
+        this.paymentMode = paymentMode;
+    }
+    
+    public String getPaymentStatus() {
+        return paymentStatus;
+    }
+    
+    public void setPaymentStatus(String paymentStatus) {
+        this.paymentStatus = paymentStatus;
+    }
+    
+    public Long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+    
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.demo.model;
+
+import java.util.List;
+
+public class PaymentPage {
+    
+    private List<Payment> items;
+    
+    // Pass both back as afterOrderId/afterId for the next page; null on the last page
+    private Long nextAfterOrderId;
+    
+    private Long nextAfterId;
+    
+    // Constructors
+    public PaymentPage() {
+    }
+    
+    public PaymentPage(List<Payment> items, Long nextAfterOrderId, Long nextAfterId) {
+        this.items = items;
+        this.nextAfterOrderId = nextAfterOrderId;
+        this.nextAfterId = nextAfterId;
+    }
+    
+    // Getters and Setters
+    public List<Payment> getItems() {
+        return items;
+    }
+    
+    public void setItems(List<Payment> items) {
+        this.items = items;
+    }
+    
+    public Long getNextAfterOrderId() {
+        return nextAfterOrderId;
+    }
+    
+    public void setNextAfterOrderId(Long nextAfterOrderId) {
+        this.nextAfterOrderId = nextAfterOrderId;
+    }
+    
+    public Long getNextAfterId() {
+        return nextAfterId;
+    }
+    
+    public void setNextAfterId(Long nextAfterId) {
+        this.nextAfterId = nextAfterId;
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.demo.model;
+
+import java.time.Instant;
+import java.util.List;
+
+// A bulk refund and its progress; persisted with its checkpoint so it can be resumed after a restart
+public class RefundJob {
+    
+    private Long id;
+    
+    private String status; // QUEUED, SELECTING, RUNNING, COMPLETED, FAILED
+    
+    private List<Long> orderIds;
+    
+    private Long productId;
+    
+    private Instant createdAt;
+    
+    private Instant finishedAt;
+    
+    private int resumes; // times the job was picked up again after a restart or a resume request
+    
+    private long selected; // payments chosen for refunding
+    
+    private long processed;
+    
+    private long refunded;
+    
+    private long alreadyRefunded;
+    
+    private long notRefundable; // not SUCCESS, so never charged or already being handled
+    
+    private long notFound;
+    
+    private long failed; // declined by the gateway, or an error after the payment was claimed
+    
+    private long unsettled; // gateway never gave a final answer; left REFUNDING for a resume
+    
+    private String error; // why a FAILED job stopped
+    
+    // Constructors
+    public RefundJob() {
+    }
+    
+    public RefundJob(Long id, List<Long> orderIds, Long productId) {
+        this.id = id;
+        this.status = "QUEUED";
+        this.orderIds = orderIds;
+        this.productId = productId;
+        this.createdAt = Instant.now();
+    }
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public String getStatus() {
+        return status;
+    }
+    
+    public void setStatus(String status) {
+        this.status = status;
+    }
+    
+    public List<Long> getOrderIds() {
+        return orderIds;
+    }
+    
+    public void setOrderIds(List<Long> orderIds) {
+        this.orderIds = orderIds;
+    }
+    
+    public Long getProductId() {
+        return productId;
+    }
+    
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+    
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+    
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+    
+    public void setFinishedAt(Instant finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+    
+    public int getResumes() {
+        return resumes;
+    }
+    
+    public void setResumes(int resumes) {
+        this.resumes = resumes;
+    }
+    
+    public long getSelected() {
+        return selected;
+    }
+    
+    public void setSelected(long selected) {
+        this.selected = selected;
+    }
+    
+    public long getProcessed() {
+        return processed;
+    }
+    
+    public void setProcessed(long processed) {
+        this.processed = processed;
+    }
+    
+    public long getRefunded() {
+        return refunded;
+    }
+    
+    public void setRefunded(long refunded) {
+        this.refunded = refunded;
+    }
+    
+    public long getAlreadyRefunded() {
+        return alreadyRefunded;
+    }
+    
+    public void setAlreadyRefunded(long alreadyRefunded) {
+        this.alreadyRefunded = alreadyRefunded;
+    }
+    
+    public long getNotRefundable() {
+        return notRefundable;
+    }
+    
+    public void setNotRefundable(long notRefundable) {
+        this.notRefundable = notRefundable;
+    }
+    
+    public long getNotFound() {
+        return notFound;
+    }
+    
+    public void setNotFound(long notFound) {
+        this.notFound = notFound;
+    }
+    
+    public long getFailed() {
+        return failed;
+    }
+    
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+    
+    public long getUnsettled() {
+        return unsettled;
+    }
+    
+    public void setUnsettled(long unsettled) {
+        this.unsettled = unsettled;
+    }
+    
+    public String getError() {
+        return error;
+    }
+    
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.demo.model;
+
+import java.util.List;
+
+public class RefundRequest {
+    
+    private List<Long> orderIds; // refund the payments of these orders
+    
+    private Long productId; // or of every order for this product, looked up in the Order service
+    
+    // Constructors
+    public RefundRequest() {
+    }
+    
+    public RefundRequest(List<Long> orderIds, Long productId) {
+        this.orderIds = orderIds;
+        this.productId = productId;
+    }
+    
+    // Getters and Setters
+    public List<Long> getOrderIds() {
+        return orderIds;
+    }
+    
+    public void setOrderIds(List<Long> orderIds) {
+        this.orderIds = orderIds;
+    }
+    
+    public Long getProductId() {
+        return productId;
+    }
+    
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+}
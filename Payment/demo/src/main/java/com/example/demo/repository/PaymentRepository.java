@@ -1,15 +1,26 @@
 package com.example.demo.repository;
 
 import com.example.demo.model.Payment;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface PaymentRepository extends JpaRepository<Payment, Long> {
     Optional<Payment> findByOrderId(Long orderId);
+    List<Payment> findByOrderIdIn(Collection<Long> orderIds);
     List<Payment> findByPaymentStatus(String paymentStatus);
     List<Payment> findByPaymentMode(String paymentMode);
+    
+    // Keyset page over every payment in (orderId, id) order, served by the (order_id, id) index
+    @Query("select p from Payment p where p.orderId > :afterOrderId or (p.orderId = :afterOrderId and p.id > :afterId) "
+            + "order by p.orderId, p.id")
+    List<Payment> findPageByOrderId(@Param("afterOrderId") Long afterOrderId, @Param("afterId") Long afterId,
+            Pageable pageable);
 }
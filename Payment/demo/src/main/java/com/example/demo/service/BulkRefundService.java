@@ -0,0 +1,525 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Payment;
+import com.example.demo.model.RefundJob;
+import com.example.demo.model.RefundRequest;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.util.FileSystemUtils;
+import reactor.util.retry.Retry;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bulk refunds.
+// A job refunds the payments of a list of orders, or of every order for a product (order ids paged
+// from the Order service). Jobs run one at a time on a driver thread that feeds the selected payments
+// to a pool of parallelism workers, never more than that in flight. A worker claims the payment
+// (SUCCESS -> REFUNDING), asks the gateway through GatewayResilience and records REFUNDED, or puts
+// the payment back to SUCCESS when the gateway declined. Fast refusals (open circuit, full
+// bulkhead), timeouts and errors are retried with backoff up to max-attempts times, so an outage
+// pauses the pipeline instead of failing the rest of the job. A payment still without an answer after
+// that may or may not have been refunded, so it stays REFUNDING and is counted as unsettled; resuming
+// the job (POST /payments/refunds/{jobId}/resume, or a restart while it runs) asks the gateway again.
+//
+// Each job has a directory under dir with job.json (request, status, counters), payments (the
+// selected ids, written once when selection is done) and progress (one "id RESULT" line per finished
+// payment, flushed every checkpoint-every lines). Unfinished jobs are resumed on startup and skip the
+// payments listed in progress, except unsettled ones. A payment whose line was lost is just handled
+// again: it is REFUNDED already, or still REFUNDING and claimed again, and the gateway sees the same
+// payment id as idempotency reference, so nothing is refunded twice.
+@Service
+public class BulkRefundService {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkRefundService.class);
+
+    private static final Set<String> FINISHED = Set.of("COMPLETED", "FAILED");
+    private static final int SELECT_CHUNK = 1000;
+
+    // How one payment of a job ended
+    enum Result {
+        REFUNDED, ALREADY_REFUNDED, NOT_REFUNDABLE, NOT_FOUND, FAILED, UNSETTLED
+    }
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private GatewayResilience gateway;
+
+    @Autowired
+    @Qualifier("orderClient")
+    private WebClient orderClient;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${payment.refunds.dir:data/refund-jobs}")
+    private String dir;
+
+    @Value("${payment.refunds.parallelism:8}")
+    private int parallelism;
+
+    @Value("${payment.refunds.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${payment.refunds.retry-backoff-ms:500}")
+    private long retryBackoffMs;
+
+    @Value("${payment.refunds.checkpoint-every:100}")
+    private int checkpointEvery;
+
+    @Value("${payment.refunds.max-order-ids:100000}")
+    private int maxOrderIds;
+
+    @Value("${payment.refunds.order-page-size:1000}")
+    private int orderPageSize;
+
+    @Value("${payment.refunds.order-timeout-ms:30000}")
+    private long orderTimeoutMs;
+
+    @Value("${payment.refunds.keep-jobs:100}")
+    private int keepJobs;
+
+    private final Map<Long, RefundJob> jobs = new ConcurrentSkipListMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private Path directory;
+    private ExecutorService driver;
+    private ExecutorService workers;
+
+    @PostConstruct
+    void start() throws IOException {
+        directory = Paths.get(dir);
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> jobDirs = Files.newDirectoryStream(directory, Files::isDirectory)) {
+            for (Path jobDir : jobDirs) {
+                Path file = jobDir.resolve("job.json");
+                if (Files.exists(file)) {
+                    RefundJob job = objectMapper.readValue(file.toFile(), RefundJob.class);
+                    jobs.put(job.getId(), job);
+                    nextId.accumulateAndGet(job.getId() + 1, Math::max);
+                }
+            }
+        }
+        driver = Executors.newSingleThreadExecutor(daemonThreads("refund-driver-"));
+        workers = Executors.newFixedThreadPool(parallelism, daemonThreads("refund-worker-"));
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        // Interrupted jobs keep their checkpoint and carry on at the next start
+        driver.shutdownNow();
+        workers.shutdownNow();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinished() {
+        for (RefundJob job : jobs.values()) {
+            if (!FINISHED.contains(job.getStatus())) {
+                synchronized (job) {
+                    job.setResumes(job.getResumes() + 1);
+                }
+                log.info("Resuming refund job {} ({})", job.getId(), job.getStatus());
+                driver.execute(() -> run(job, true));
+            }
+        }
+    }
+
+    // Queue a refund job for the given orders or product
+    public RefundJob submit(RefundRequest request) {
+        List<Long> orderIds = request.getOrderIds();
+        boolean byOrders = orderIds != null && !orderIds.isEmpty();
+        if (byOrders == (request.getProductId() != null)) {
+            throw new IllegalArgumentException("Exactly one of orderIds or productId is required");
+        }
+        if (byOrders && orderIds.size() > maxOrderIds) {
+            throw new IllegalArgumentException("At most " + maxOrderIds + " order ids per job");
+        }
+        RefundJob job = new RefundJob(nextId.getAndIncrement(), byOrders ? List.copyOf(orderIds) : null,
+                request.getProductId());
+        save(job);
+        jobs.put(job.getId(), job);
+        driver.execute(() -> run(job, false));
+        return job;
+    }
+
+    // Run a finished job again for the payments it left unsettled; settled payments are skipped
+    public RefundJob resume(Long id) {
+        RefundJob job = getJob(id).orElseThrow(() -> new RuntimeException("Refund job not found"));
+        synchronized (job) {
+            if (!FINISHED.contains(job.getStatus())) {
+                throw new IllegalStateException("Refund job is " + job.getStatus());
+            }
+            job.setStatus("QUEUED");
+            job.setError(null);
+            job.setFinishedAt(null);
+            job.setResumes(job.getResumes() + 1);
+        }
+        save(job);
+        driver.execute(() -> run(job, true));
+        return job;
+    }
+
+    // Get refund job by ID
+    public Optional<RefundJob> getJob(Long id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    // Every kept refund job, newest first
+    public List<RefundJob> getJobs() {
+        List<RefundJob> result = new ArrayList<>(jobs.values());
+        result.sort((a, b) -> Long.compare(b.getId(), a.getId()));
+        return result;
+    }
+
+    private void run(RefundJob job, boolean resuming) {
+        Path jobDir = directory.resolve(String.valueOf(job.getId()));
+        try {
+            List<Long> paymentIds = readIds(jobDir.resolve("payments"));
+            if (paymentIds == null) {
+                setStatus(job, "SELECTING");
+                paymentIds = select(job);
+                writeIds(jobDir.resolve("payments"), paymentIds);
+            }
+            Set<Long> done = readProgress(jobDir.resolve("progress"), job);
+            synchronized (job) {
+                job.setSelected(paymentIds.size());
+            }
+            setStatus(job, "RUNNING");
+
+            try (Checkpoint checkpoint = new Checkpoint(job, jobDir.resolve("progress"))) {
+                Semaphore inFlight = new Semaphore(parallelism);
+                for (Long id : paymentIds) {
+                    if (done.contains(id)) {
+                        continue;
+                    }
+                    inFlight.acquire();
+                    checkpoint.check();
+                    try {
+                        workers.execute(() -> {
+                            try {
+                                checkpoint.record(id, refund(id, resuming));
+                            } finally {
+                                inFlight.release();
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        inFlight.release();
+                        return; // shutting down
+                    }
+                }
+                inFlight.acquire(parallelism);
+            }
+            finish(job, "COMPLETED", null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // shutting down
+        } catch (Exception e) {
+            log.error("Refund job {} failed", job.getId(), e);
+            finish(job, "FAILED", e.getMessage());
+        }
+    }
+
+    // Refund one payment; null when interrupted by shutdown, so the payment is handled on resume
+    private Result refund(Long id, boolean resuming) {
+        try {
+            Payment payment = paymentService.getPaymentById(id).orElse(null);
+            if (payment == null) {
+                return Result.NOT_FOUND;
+            }
+            if ("REFUNDED".equals(payment.getPaymentStatus())) {
+                return Result.ALREADY_REFUNDED;
+            }
+            Payment claimed;
+            try {
+                claimed = paymentService.startRefund(id, resuming);
+            } catch (IllegalStateException e) {
+                return Result.NOT_REFUNDABLE;
+            }
+            for (int attempt = 1; ; attempt++) {
+                GatewayResilience.Outcome outcome = gateway.refund(claimed);
+                if (outcome == GatewayResilience.Outcome.APPROVED) {
+                    paymentService.updatePaymentStatus(id, "REFUNDED");
+                    return Result.REFUNDED;
+                }
+                if (outcome == GatewayResilience.Outcome.DECLINED) {
+                    paymentService.updatePaymentStatus(id, "SUCCESS");
+                    return Result.FAILED;
+                }
+                if (attempt >= maxAttempts) {
+                    // A timeout or error may hide a refund that went through; leave it REFUNDING
+                    log.warn("Refund of payment {} unsettled after {} attempts ({})", id, attempt, outcome);
+                    return Result.UNSETTLED;
+                }
+                long backoff = Math.max(gateway.retryAfterMillis(), retryBackoffMs << Math.min(attempt - 1, 6));
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null; // left REFUNDING; the resumed job claims it again
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Refund of payment {} failed", id, e);
+            return paymentService.getPaymentById(id).isPresent() ? Result.FAILED : Result.NOT_FOUND;
+        }
+    }
+
+    // Payment ids of the job's orders, in order id order
+    private List<Long> select(RefundJob job) {
+        Set<Long> orderIds = new LinkedHashSet<>();
+        if (job.getOrderIds() != null) {
+            orderIds.addAll(job.getOrderIds());
+        } else {
+            Long after = null;
+            do {
+                OrderIdPage page = fetchOrderIds(job.getProductId(), after);
+                page.items().forEach(order -> orderIds.add(order.id()));
+                after = page.nextCursor();
+            } while (after != null);
+        }
+        List<Long> sorted = new ArrayList<>(orderIds);
+        sorted.sort(null);
+        List<Long> paymentIds = new ArrayList<>();
+        for (int i = 0; i < sorted.size(); i += SELECT_CHUNK) {
+            List<Payment> payments = paymentService.getPaymentsByOrderIds(sorted.subList(i, Math.min(i + SELECT_CHUNK, sorted.size())));
+            payments.sort((a, b) -> a.getOrderId().equals(b.getOrderId())
+                    ? Long.compare(a.getId(), b.getId()) : Long.compare(a.getOrderId(), b.getOrderId()));
+            payments.forEach(payment -> paymentIds.add(payment.getId()));
+        }
+        return paymentIds;
+    }
+
+    private OrderIdPage fetchOrderIds(Long productId, Long after) {
+        return orderClient.get()
+                .uri(uri -> uri.path("/orders/product/{productId}")
+                        .queryParam("size", orderPageSize)
+                        .queryParamIfPresent("after", Optional.ofNullable(after))
+                        .build(productId))
+                .retrieve()
+                .bodyToMono(OrderIdPage.class)
+                .timeout(Duration.ofMillis(orderTimeoutMs))
+                .retryWhen(Retry.backoff(3, Duration.ofSeconds(1)))
+                .block();
+    }
+
+    // Payments already handled according to the progress file; the job's counters are recounted from it
+    private Set<Long> readProgress(Path file, RefundJob job) throws IOException {
+        Set<Long> done = new HashSet<>();
+        synchronized (job) {
+            job.setProcessed(0);
+            job.setRefunded(0);
+            job.setAlreadyRefunded(0);
+            job.setNotRefundable(0);
+            job.setNotFound(0);
+            job.setFailed(0);
+            job.setUnsettled(0);
+            if (!Files.exists(file)) {
+                return done;
+            }
+            String content = Files.readString(file, StandardCharsets.UTF_8);
+            for (String line : content.split("\n")) {
+                int space = line.indexOf(' ');
+                if (space < 0) {
+                    continue;
+                }
+                try {
+                    Long id = Long.valueOf(line.substring(0, space));
+                    Result result = Result.valueOf(line.substring(space + 1));
+                    // Unsettled payments are tried again; a later line for the same payment settles it
+                    if (result != Result.UNSETTLED && done.add(id)) {
+                        count(job, result);
+                    }
+                } catch (IllegalArgumentException e) {
+                    // torn last line; the payment is handled again
+                }
+            }
+            if (!content.isEmpty() && !content.endsWith("\n")) {
+                Files.writeString(file, "\n", StandardOpenOption.APPEND);
+            }
+        }
+        return done;
+    }
+
+    private static void count(RefundJob job, Result result) {
+        job.setProcessed(job.getProcessed() + 1);
+        switch (result) {
+            case REFUNDED -> job.setRefunded(job.getRefunded() + 1);
+            case ALREADY_REFUNDED -> job.setAlreadyRefunded(job.getAlreadyRefunded() + 1);
+            case NOT_REFUNDABLE -> job.setNotRefundable(job.getNotRefundable() + 1);
+            case NOT_FOUND -> job.setNotFound(job.getNotFound() + 1);
+            case FAILED -> job.setFailed(job.getFailed() + 1);
+            case UNSETTLED -> job.setUnsettled(job.getUnsettled() + 1);
+        }
+    }
+
+    private static List<Long> readIds(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        List<Long> ids = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (!line.isEmpty()) {
+                ids.add(Long.valueOf(line));
+            }
+        }
+        return ids;
+    }
+
+    private static void writeIds(Path file, List<Long> ids) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Long id : ids) {
+                out.write(id.toString());
+                out.write('\n');
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void setStatus(RefundJob job, String status) {
+        synchronized (job) {
+            job.setStatus(status);
+        }
+        save(job);
+    }
+
+    private void finish(RefundJob job, String status, String error) {
+        synchronized (job) {
+            job.setStatus(status);
+            job.setError(error);
+            job.setFinishedAt(Instant.now());
+        }
+        save(job);
+        log.info("Refund job {} {}: {} of {} payments refunded, {} unsettled", job.getId(), status, job.getRefunded(),
+                job.getSelected(), job.getUnsettled());
+        prune();
+    }
+
+    // job.json is replaced atomically, so a crash leaves the previous checkpoint intact
+    private void save(RefundJob job) {
+        Path jobDir = directory.resolve(String.valueOf(job.getId()));
+        try {
+            Files.createDirectories(jobDir);
+            Path temp = jobDir.resolve("job.json.tmp");
+            synchronized (job) {
+                Files.write(temp, objectMapper.writeValueAsBytes(job));
+                Files.move(temp, jobDir.resolve("job.json"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Drop the oldest finished jobs beyond keep-jobs
+    private void prune() {
+        List<RefundJob> finished = getJobs().stream().filter(job -> FINISHED.contains(job.getStatus())).toList();
+        for (RefundJob job : finished.subList(Math.min(keepJobs, finished.size()), finished.size())) {
+            jobs.remove(job.getId());
+            try {
+                FileSystemUtils.deleteRecursively(directory.resolve(String.valueOf(job.getId())));
+            } catch (IOException e) {
+                log.warn("Could not delete refund job {}", job.getId(), e);
+            }
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, prefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // Appends finished payments to the progress file; every checkpoint-every lines the file is flushed
+    // and job.json saved. The first write error stops the job.
+    private final class Checkpoint implements AutoCloseable {
+        private final RefundJob job;
+        private final BufferedWriter out;
+        private int unflushed;
+        private IOException failure;
+
+        private Checkpoint(RefundJob job, Path file) throws IOException {
+            this.job = job;
+            this.out = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+
+        private synchronized void record(Long id, Result result) {
+            if (result == null || failure != null) {
+                return;
+            }
+            try {
+                out.write(id + " " + result + "\n");
+                synchronized (job) {
+                    count(job, result);
+                }
+                if (++unflushed >= checkpointEvery) {
+                    out.flush();
+                    unflushed = 0;
+                    save(job);
+                }
+            } catch (IOException | UncheckedIOException e) {
+                failure = e instanceof IOException io ? io : ((UncheckedIOException) e).getCause();
+            }
+        }
+
+        private synchronized void check() throws IOException {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            out.close();
+            check();
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record OrderRef(Long id) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record OrderIdPage(List<OrderRef> items, Long nextCursor) {
+    }
+}
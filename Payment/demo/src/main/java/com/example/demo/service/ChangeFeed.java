@@ -0,0 +1,119 @@
+package com.example.demo.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.Exceptions;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Server-Sent Events feed of committed status changes.
+// Events get increasing ids and go into a replay sink that keeps the most recent history-size
+// of them, so a client reconnecting with Last-Event-ID is replayed exactly what it missed. Each
+// subscriber has its own bounded buffer: one that falls further behind than that is sent a
+// "resync" event and disconnected instead of slowing the publisher or growing without limit.
+// The same resync is sent when the requested Last-Event-ID has already left the history, or is
+// one this run never issued, such as an id from before a restart.
+@Component
+public class ChangeFeed {
+
+    private static final long NONE = -1;
+
+    @Value("${events.history-size:1024}")
+    private int historySize;
+
+    @Value("${events.subscriber-buffer:256}")
+    private int subscriberBuffer;
+
+    @Value("${events.heartbeat-seconds:15}")
+    private long heartbeatSeconds;
+
+    private Sinks.Many<ServerSentEvent<Object>> sink;
+
+    private final AtomicLong lastId = new AtomicLong();
+    private final AtomicLong subscribers = new AtomicLong();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder resyncs = new LongAdder();
+
+    @PostConstruct
+    void init() {
+        sink = Sinks.many().replay().limit(historySize);
+    }
+
+    // Publish an event to every subscriber; call only after the change has committed
+    public synchronized void publish(String type, Object data) {
+        long id = lastId.incrementAndGet();
+        sink.emitNext(ServerSentEvent.builder(data).id(Long.toString(id)).event(type).build(),
+                Sinks.EmitFailureHandler.FAIL_FAST);
+        published.increment();
+    }
+
+    // Live events, preceded by whatever was missed after lastEventId when one is given
+    public Flux<ServerSentEvent<Object>> subscribe(String lastEventId) {
+        return Flux.defer(() -> {
+            long resumeAfter = parse(lastEventId);
+            long last = lastId.get();
+            long oldestKept = Math.max(1, last - historySize + 1);
+            // An id past the last one was issued before a restart (ids start again at 1) or is made up;
+            // either way nothing after it can be replayed
+            boolean gap = resumeAfter != NONE && (resumeAfter + 1 < oldestKept || resumeAfter > last);
+            long after = resumeAfter == NONE || gap ? last : resumeAfter;
+            // Room for the replayed backlog on top of the live buffer, so resuming is not itself an overflow
+            int backlog = (int) Math.max(0, Math.min(historySize, last - after));
+
+            Flux<ServerSentEvent<Object>> events = sink.asFlux()
+                    .filter(event -> Long.parseLong(event.id()) > after);
+            if (gap) {
+                resyncs.increment();
+                events = Flux.concat(Flux.just(resync()), events);
+            }
+            // Heartbeats keep idle connections open through proxies
+            Flux<ServerSentEvent<Object>> heartbeats = Flux.interval(Duration.ofSeconds(heartbeatSeconds))
+                    .map(tick -> ServerSentEvent.builder().comment("heartbeat").build());
+
+            subscribers.incrementAndGet();
+            return Flux.merge(events, heartbeats)
+                    .onBackpressureBuffer(subscriberBuffer + backlog, BufferOverflowStrategy.ERROR)
+                    .onErrorResume(Exceptions::isOverflow, overflow -> {
+                        resyncs.increment();
+                        return Flux.just(resync());
+                    })
+                    .doFinally(signal -> subscribers.decrementAndGet());
+        });
+    }
+
+    // Subscriber and event counters
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("subscribers", subscribers.get());
+        result.put("lastEventId", lastId.get());
+        result.put("published", published.sum());
+        result.put("resyncs", resyncs.sum());
+        return result;
+    }
+
+    private static ServerSentEvent<Object> resync() {
+        return ServerSentEvent.builder().event("resync").data((Object) "Reload the list, events were dropped").build();
+    }
+
+    // NONE without a Last-Event-ID; an id that is not a valid event id is treated as one past the history
+    private static long parse(String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return NONE;
+        }
+        try {
+            long id = Long.parseLong(lastEventId.trim());
+            return id >= 0 ? id : Long.MAX_VALUE;
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Payment;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Guards every gateway call so a slow or failing provider cannot tie up the processing workers.
+// Each provider (PaymentGateway.name()) gets its own guard:
+// - a bulkhead: at most max-concurrent calls in flight; a call waits up to max-wait-ms for a slot.
+//   A slot is only given back when the provider call really returns, so a hung provider keeps its
+//   bulkhead full and later calls fail fast instead of piling up threads.
+// - a deadline: the worker stops waiting after timeout-ms and the call is interrupted.
+// - a circuit breaker over the last window-size calls: once minimum-calls are in and at least
+//   failure-rate-threshold percent of them errored or timed out, calls are refused for open-ms; then
+//   half-open-probes trial calls decide between closing it again and another open period.
+// Declines are answers, not failures, and do not count against the breaker. Settings are read from
+// payment.gateway.resilience.<provider>.* first, then payment.gateway.resilience.*.
+@Component
+public class GatewayResilience {
+
+    private static final Logger log = LoggerFactory.getLogger(GatewayResilience.class);
+
+    // Upper bounds in milliseconds of the latency histogram buckets
+    private static final long[] LATENCY_BUCKETS = {50, 100, 250, 500, 1000, 2000, 5000, Long.MAX_VALUE};
+
+    // What became of a guarded call. Only APPROVED and DECLINED reached a verdict; the request was
+    // never sent for BULKHEAD_FULL and CIRCUIT_OPEN, and its fate is unknown for TIMEOUT and ERROR.
+    public enum Outcome {
+        APPROVED, DECLINED, TIMEOUT, ERROR, BULKHEAD_FULL, CIRCUIT_OPEN
+    }
+
+    @Autowired
+    private PaymentGateway gateway;
+
+    @Autowired
+    private Environment environment;
+
+    private final Map<String, Guard> guards = new ConcurrentHashMap<>();
+
+    @PreDestroy
+    void stop() {
+        guards.values().forEach(guard -> guard.calls.shutdownNow());
+    }
+
+    // Charge the payment through the provider's guard
+    public Outcome charge(Payment payment) {
+        return guard(gateway.name()).call("charge", payment, () -> gateway.charge(payment));
+    }
+
+    // Refund the payment through the same guard as charges, so both share the provider's limits
+    public Outcome refund(Payment payment) {
+        return guard(gateway.name()).call("refund", payment, () -> gateway.refund(payment));
+    }
+
+    // Milliseconds until the provider's breaker lets calls through again, 0 when it does now
+    public long retryAfterMillis() {
+        return guard(gateway.name()).breaker.retryAfterMillis(System.currentTimeMillis());
+    }
+
+    // Bulkhead, breaker, outcome and latency figures per provider
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        guard(gateway.name()); // list the active provider before its first call
+        guards.forEach((name, guard) -> result.put(name, guard.stats()));
+        return result;
+    }
+
+    private Guard guard(String provider) {
+        return guards.computeIfAbsent(provider, Guard::new);
+    }
+
+    private <T> T setting(String provider, String key, Class<T> type, T defaultValue) {
+        T value = environment.getProperty("payment.gateway.resilience." + provider + "." + key, type);
+        return value != null ? value : environment.getProperty("payment.gateway.resilience." + key, type, defaultValue);
+    }
+
+    private final class Guard {
+        private final String provider;
+        private final int maxConcurrent;
+        private final long maxWaitMs;
+        private final long timeoutMs;
+        private final Semaphore bulkhead;
+        private final ExecutorService calls;
+        private final Breaker breaker;
+        private final LongAdder[] outcomes = new LongAdder[Outcome.values().length];
+        private final AtomicLongArray latencyHistogram = new AtomicLongArray(LATENCY_BUCKETS.length);
+        private final LongAdder latencyMillis = new LongAdder();
+
+        private Guard(String provider) {
+            this.provider = provider;
+            this.maxConcurrent = setting(provider, "max-concurrent", Integer.class, 12);
+            this.maxWaitMs = setting(provider, "max-wait-ms", Long.class, 250L);
+            this.timeoutMs = setting(provider, "timeout-ms", Long.class, 3000L);
+            this.bulkhead = new Semaphore(maxConcurrent);
+            this.breaker = new Breaker(
+                    setting(provider, "window-size", Integer.class, 50),
+                    setting(provider, "minimum-calls", Integer.class, 20),
+                    setting(provider, "failure-rate-threshold", Integer.class, 50),
+                    setting(provider, "open-ms", Long.class, 10000L),
+                    setting(provider, "half-open-probes", Integer.class, 3));
+            AtomicInteger threadNumber = new AtomicInteger();
+            this.calls = Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "gateway-" + provider + "-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            for (int i = 0; i < outcomes.length; i++) {
+                outcomes[i] = new LongAdder();
+            }
+        }
+
+        private Outcome call(String operation, Payment payment, Callable<Boolean> request) {
+            long permit = breaker.tryAcquire(System.currentTimeMillis());
+            if (permit < 0) {
+                return count(Outcome.CIRCUIT_OPEN);
+            }
+            try {
+                if (!bulkhead.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS)) {
+                    breaker.release(permit);
+                    return count(Outcome.BULKHEAD_FULL);
+                }
+            } catch (InterruptedException e) {
+                breaker.release(permit);
+                Thread.currentThread().interrupt();
+                return count(Outcome.BULKHEAD_FULL);
+            }
+
+            // The slot goes back when the call returns, or here if the call is cancelled before it starts
+            AtomicBoolean started = new AtomicBoolean();
+            long start = System.nanoTime();
+            Future<Boolean> call;
+            try {
+                call = calls.submit(() -> {
+                    if (!started.compareAndSet(false, true)) {
+                        return false;
+                    }
+                    try {
+                        return request.call();
+                    } finally {
+                        bulkhead.release();
+                    }
+                });
+            } catch (RuntimeException e) {
+                // Executor shut down
+                bulkhead.release();
+                breaker.release(permit);
+                return count(Outcome.ERROR);
+            }
+
+            Outcome outcome;
+            try {
+                outcome = call.get(timeoutMs, TimeUnit.MILLISECONDS) ? Outcome.APPROVED : Outcome.DECLINED;
+            } catch (TimeoutException e) {
+                cancel(call, started);
+                outcome = Outcome.TIMEOUT;
+            } catch (ExecutionException e) {
+                log.warn("Gateway {} {} of payment {} failed", provider, operation, payment.getId(), e.getCause());
+                outcome = Outcome.ERROR;
+            } catch (InterruptedException e) {
+                cancel(call, started);
+                Thread.currentThread().interrupt();
+                outcome = Outcome.ERROR;
+            }
+            recordLatency((System.nanoTime() - start) / 1_000_000);
+            boolean opened = breaker.onResult(permit, outcome == Outcome.TIMEOUT || outcome == Outcome.ERROR,
+                    System.currentTimeMillis());
+            if (opened) {
+                log.warn("Gateway {} circuit opened", provider);
+            }
+            return count(outcome);
+        }
+
+        private void cancel(Future<Boolean> call, AtomicBoolean started) {
+            call.cancel(true);
+            if (started.compareAndSet(false, true)) {
+                bulkhead.release();
+            }
+        }
+
+        private Outcome count(Outcome outcome) {
+            outcomes[outcome.ordinal()].increment();
+            return outcome;
+        }
+
+        private void recordLatency(long millis) {
+            latencyMillis.add(millis);
+            for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+                if (millis <= LATENCY_BUCKETS[i]) {
+                    latencyHistogram.incrementAndGet(i);
+                    return;
+                }
+            }
+        }
+
+        private Map<String, Object> stats() {
+            Map<String, Object> byOutcome = new LinkedHashMap<>();
+            for (Outcome outcome : Outcome.values()) {
+                byOutcome.put(outcome.name(), outcomes[outcome.ordinal()].sum());
+            }
+
+            Map<String, Object> histogram = new LinkedHashMap<>();
+            long timed = 0;
+            long lower = 0;
+            for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+                String label = LATENCY_BUCKETS[i] == Long.MAX_VALUE ? lower + "+" : lower + "-" + LATENCY_BUCKETS[i];
+                histogram.put(label, latencyHistogram.get(i));
+                timed += latencyHistogram.get(i);
+                lower = LATENCY_BUCKETS[i] + 1;
+            }
+
+            Map<String, Object> bulkheadStats = new LinkedHashMap<>();
+            bulkheadStats.put("maxConcurrent", maxConcurrent);
+            bulkheadStats.put("inFlight", maxConcurrent - bulkhead.availablePermits());
+            bulkheadStats.put("maxWaitMs", maxWaitMs);
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("timeoutMs", timeoutMs);
+            result.put("bulkhead", bulkheadStats);
+            result.put("breaker", breaker.stats(System.currentTimeMillis()));
+            result.put("outcomes", byOutcome);
+            result.put("latencyMillisHistogram", histogram);
+            result.put("averageLatencyMillis", timed == 0 ? 0 : (double) latencyMillis.sum() / timed);
+            return result;
+        }
+    }
+
+    // Count-based circuit breaker. tryAcquire hands out a permit tagged with the breaker's current
+    // generation, which changes on every state change; results of calls admitted under an older
+    // state are ignored, so a slow call from before the breaker opened cannot close it again.
+    private static final class Breaker {
+        private enum State { CLOSED, OPEN, HALF_OPEN }
+
+        private final boolean[] window; // true for a failed call
+        private final int minimumCalls;
+        private final int failureRateThreshold;
+        private final long openMs;
+        private final int halfOpenProbes;
+
+        private State state = State.CLOSED;
+        private long generation;
+        private int windowNext;
+        private int windowCalls;
+        private int windowFailures;
+        private long openUntil;
+        private int probesStarted;
+        private int probesSucceeded;
+        private long opens;
+
+        private Breaker(int windowSize, int minimumCalls, int failureRateThreshold, long openMs, int halfOpenProbes) {
+            this.window = new boolean[windowSize];
+            this.minimumCalls = Math.min(minimumCalls, windowSize);
+            this.failureRateThreshold = failureRateThreshold;
+            this.openMs = openMs;
+            this.halfOpenProbes = halfOpenProbes;
+        }
+
+        // A permit (>= 0) for one call, or -1 when the call must not be made
+        private synchronized long tryAcquire(long now) {
+            if (state == State.OPEN) {
+                if (now < openUntil) {
+                    return -1;
+                }
+                moveTo(State.HALF_OPEN);
+            }
+            if (state == State.HALF_OPEN) {
+                if (probesStarted >= halfOpenProbes) {
+                    return -1;
+                }
+                probesStarted++;
+            }
+            return generation;
+        }
+
+        // Give back a permit whose call was never made
+        private synchronized void release(long permit) {
+            if (permit == generation && state == State.HALF_OPEN) {
+                probesStarted--;
+            }
+        }
+
+        // Record a call's result; true when this result opened the breaker
+        private synchronized boolean onResult(long permit, boolean failed, long now) {
+            if (permit != generation) {
+                return false;
+            }
+            if (state == State.HALF_OPEN) {
+                if (failed) {
+                    open(now);
+                    return true;
+                }
+                if (++probesSucceeded >= halfOpenProbes) {
+                    moveTo(State.CLOSED);
+                }
+                return false;
+            }
+            if (windowCalls == window.length) {
+                windowFailures -= window[windowNext] ? 1 : 0;
+            } else {
+                windowCalls++;
+            }
+            window[windowNext] = failed;
+            windowFailures += failed ? 1 : 0;
+            windowNext = (windowNext + 1) % window.length;
+            if (windowCalls >= minimumCalls && windowFailures * 100L >= (long) failureRateThreshold * windowCalls) {
+                open(now);
+                return true;
+            }
+            return false;
+        }
+
+        private synchronized long retryAfterMillis(long now) {
+            return state == State.OPEN ? Math.max(0, openUntil - now) : 0;
+        }
+
+        private void open(long now) {
+            moveTo(State.OPEN);
+            openUntil = now + openMs;
+            opens++;
+        }
+
+        private void moveTo(State next) {
+            state = next;
+            generation++;
+            windowNext = 0;
+            windowCalls = 0;
+            windowFailures = 0;
+            probesStarted = 0;
+            probesSucceeded = 0;
+        }
+
+        private synchronized Map<String, Object> stats(long now) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("state", state == State.OPEN && now >= openUntil ? State.HALF_OPEN : state);
+            result.put("windowCalls", windowCalls);
+            result.put("windowFailureRate", windowCalls == 0 ? 0 : windowFailures * 100.0 / windowCalls);
+            result.put("retryAfterMillis", retryAfterMillis(now));
+            result.put("opens", opens);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Payment;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// Stand-in gateway for local runs and load tests: waits a random latency between min and max,
+// then declines failure-rate of the charges and refunds. For resilience tests it can also inject faults:
+// error-rate of the calls throw, and slow-rate of them take slow-latency-ms instead.
+@Component
+@ConditionalOnProperty(name = "payment.gateway.type", havingValue = "stub", matchIfMissing = true)
+public class LocalGatewayStub implements PaymentGateway {
+    
+    @Value("${payment.gateway.stub.min-latency-ms:300}")
+    private long minLatencyMs;
+    
+    @Value("${payment.gateway.stub.max-latency-ms:2000}")
+    private long maxLatencyMs;
+    
+    @Value("${payment.gateway.stub.failure-rate:0.0}")
+    private double failureRate;
+    
+    @Value("${payment.gateway.stub.error-rate:0.0}")
+    private double errorRate;
+    
+    @Value("${payment.gateway.stub.slow-rate:0.0}")
+    private double slowRate;
+    
+    @Value("${payment.gateway.stub.slow-latency-ms:10000}")
+    private long slowLatencyMs;
+    
+    @Override
+    public String name() {
+        return "stub";
+    }
+    
+    @Override
+    public boolean charge(Payment payment) {
+        return respond();
+    }
+    
+    @Override
+    public boolean refund(Payment payment) {
+        return respond();
+    }
+    
+    private boolean respond() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long latency = maxLatencyMs > minLatencyMs ? random.nextLong(minLatencyMs, maxLatencyMs + 1) : minLatencyMs;
+        if (random.nextDouble() < slowRate) {
+            latency = slowLatencyMs;
+        }
+        try {
+            Thread.sleep(latency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the gateway", e);
+        }
+        if (random.nextDouble() < errorRate) {
+            throw new IllegalStateException("Injected gateway error");
+        }
+        return random.nextDouble() >= failureRate;
+    }
+}
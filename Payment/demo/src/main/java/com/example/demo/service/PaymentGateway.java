@@ -0,0 +1,20 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Payment;
+
+// Outbound payment gateway used by the processing workers, always called through GatewayResilience.
+// Implementations block for the whole round trip, are called from several threads at once and should
+// give up when interrupted.
+// The payment id stays the same when a payment is retried, so it can be sent as the gateway's
+// idempotency reference.
+public interface PaymentGateway {
+    
+    // Provider name; bulkhead, deadline and circuit breaker settings are kept per provider
+    String name();
+    
+    // Charge the payment; true when the gateway approved it
+    boolean charge(Payment payment);
+    
+    // Refund a charged payment in full; true when the gateway accepted the refund
+    boolean refund(Payment payment);
+}
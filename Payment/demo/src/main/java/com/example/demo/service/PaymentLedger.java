@@ -0,0 +1,699 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Payment;
+import com.example.demo.model.PaymentEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+// Append-only ledger of payment changes, the durable record behind the in-memory payments table.
+// Every change is appended as an event holding the payment's full state. One writer thread takes
+// every waiting append, writes them with one sequential write and one fsync, then releases the
+// callers (group commit). Each event points back to the payment's previous event, so a payment's
+// history is a short chain walk. Log segments roll at segment-bytes and are never rewritten.
+//
+// Every snapshot-every events the latest event of every payment is written to a snapshot together
+// with the log position it covers. On startup the newest valid snapshot is loaded and the log is
+// replayed from that position. The snapshot is taken while appends continue: an event is only
+// applied over an older version or position, so replaying events the snapshot already holds changes
+// nothing. PaymentService appends a payment's events in commit order and only commits once they are here.
+// A torn record at the end of the log (a crash mid-write) is cut off; a bad record anywhere else
+// stops the start.
+//
+// Record: length | CRC32 of payload | payload. Payload: previous position, time, type, payment id,
+// null flags, order id, amount bits, version, mode, status (varints, strings length-prefixed UTF-8),
+// then optionally the creation time as epoch seconds and nanos (older records end before it).
+// Snapshot: MAGIC | covered position | entries (length, position, payload) | count | CRC32 | MAGIC.
+@Component
+public class PaymentLedger {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentLedger.class);
+
+    private static final int SNAPSHOT_MAGIC = 0x50534E31; // "PSN1"
+    private static final int MAX_RECORD_BYTES = 1 << 20;
+    private static final String[] TYPES = {
+            PaymentEvent.CREATED, PaymentEvent.UPDATED, PaymentEvent.STATUS_CHANGED, PaymentEvent.DELETED};
+    private static final int NO_ORDER_ID = 1;
+    private static final int NO_AMOUNT = 2;
+    private static final int NO_VERSION = 4;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long segmentBytes;
+    private final int maxBatch;
+    private final long snapshotEvery;
+    private final int keepSnapshots;
+
+    // Latest event of every payment ever recorded, deleted ones included
+    private final Map<Long, PaymentEvent> latest = new ConcurrentHashMap<>();
+    private final TreeMap<Long, Path> segments = new TreeMap<>();
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService snapshotter = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "payment-ledger-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean snapshotRunning = new AtomicBoolean();
+    private final Object snapshotLock = new Object();
+
+    private FileChannel channel;
+    private long segmentStart;
+    private volatile long end;
+    private volatile long snapshotPosition = -1;
+    private volatile boolean running;
+    private Thread writer;
+    private volatile Map<String, Object> lastRebuild = Map.of();
+
+    private final AtomicLong events = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong syncNanos = new AtomicLong();
+    private final AtomicLong eventsSinceSnapshot = new AtomicLong();
+
+    public PaymentLedger(@Value("${payment.ledger.enabled:true}") boolean enabled,
+                         @Value("${payment.ledger.dir:data/payment-ledger}") String dir,
+                         @Value("${payment.ledger.segment-bytes:67108864}") long segmentBytes,
+                         @Value("${payment.ledger.max-batch:256}") int maxBatch,
+                         @Value("${payment.ledger.snapshot-every:100000}") long snapshotEvery,
+                         @Value("${payment.ledger.keep-snapshots:2}") int keepSnapshots) {
+        this.enabled = enabled;
+        this.directory = Paths.get(dir);
+        this.segmentBytes = segmentBytes;
+        this.maxBatch = maxBatch;
+        this.snapshotEvery = snapshotEvery;
+        this.keepSnapshots = Math.max(1, keepSnapshots);
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        rebuild();
+        Map.Entry<Long, Path> last = segments.lastEntry();
+        if (last == null) {
+            Files.createDirectories(directory);
+            last = Map.entry(0L, newSegment(0L));
+        }
+        segmentStart = last.getKey();
+        channel = FileChannel.open(last.getValue(), StandardOpenOption.WRITE);
+        channel.position(end - segmentStart);
+        running = true;
+        writer = new Thread(this::writeLoop, "payment-ledger-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        running = false;
+        if (writer != null) {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        snapshotter.shutdown();
+        snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Record a change to payment and wait until it is on disk; null when the ledger is disabled
+    public PaymentEvent append(String type, Payment payment) {
+        try {
+            return appendAsync(type, payment).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    // Queue a change for the next group commit; completes once it is on disk
+    public CompletableFuture<PaymentEvent> appendAsync(String type, Payment payment) {
+        if (!enabled) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (!running) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Payment ledger is closed"));
+        }
+        PaymentEvent event = new PaymentEvent(-1, -1, Instant.now(), type, payment.getId(), payment.getOrderId(),
+                payment.getAmount(), payment.getPaymentMode(), payment.getPaymentStatus(), payment.getVersion(),
+                payment.getCreatedAt());
+        Pending pending = new Pending(event, new CompletableFuture<>());
+        queue.add(pending);
+        return pending.result;
+    }
+
+    // Current state of every payment that has not been deleted
+    public List<Payment> currentPayments() {
+        List<Payment> payments = new ArrayList<>();
+        for (PaymentEvent event : latest.values()) {
+            if (!PaymentEvent.DELETED.equals(event.getType())) {
+                payments.add(event.toPayment());
+            }
+        }
+        return payments;
+    }
+
+    // Highest payment id ever recorded, deleted ones included, so ids are never handed out twice
+    public long maxPaymentId() {
+        return latest.keySet().stream().mapToLong(Long::longValue).max().orElse(0L);
+    }
+
+    // Every event of one payment, oldest first
+    public List<PaymentEvent> history(Long paymentId) {
+        List<PaymentEvent> history = new ArrayList<>();
+        PaymentEvent event = latest.get(paymentId);
+        while (event != null) {
+            history.add(0, event);
+            event = event.getPreviousPosition() < 0 ? null : read(event.getPreviousPosition());
+        }
+        return history;
+    }
+
+    // Load the newest valid snapshot and replay the log after it; returns what was read
+    public synchronized Map<String, Object> rebuild() throws IOException {
+        long start = System.nanoTime();
+        latest.clear();
+        segments.clear();
+        if (Files.isDirectory(directory)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "ledger-*.log")) {
+                for (Path file : files) {
+                    segments.put(parsePosition(file, "ledger-", ".log"), file);
+                }
+            }
+        }
+        long from = loadSnapshot();
+        long replayed = 0;
+        end = segments.isEmpty() ? 0L : segments.firstKey();
+        for (Map.Entry<Long, Path> segment : segments.entrySet()) {
+            long base = segment.getKey();
+            boolean lastSegment = segment.getKey().equals(segments.lastKey());
+            long size = Files.size(segment.getValue());
+            if (base + size <= from) {
+                end = base + size;
+                continue;
+            }
+            MappedByteBuffer buffer;
+            try (FileChannel file = FileChannel.open(segment.getValue(), StandardOpenOption.READ)) {
+                buffer = file.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            int offset = (int) Math.max(0, from - base);
+            while (offset < size) {
+                PaymentEvent event = readRecord(buffer, offset, base + offset);
+                if (event == null) {
+                    if (!lastSegment) {
+                        throw new IOException("Corrupt payment ledger record at " + (base + offset) + " in " + segment.getValue());
+                    }
+                    log.warn("Cutting torn payment ledger tail at {} ({} bytes)", base + offset, size - offset);
+                    try (FileChannel file = FileChannel.open(segment.getValue(), StandardOpenOption.WRITE)) {
+                        file.truncate(offset);
+                        file.force(true);
+                    }
+                    break;
+                }
+                apply(event);
+                replayed++;
+                offset += 8 + buffer.getInt(offset);
+            }
+            end = base + offset;
+        }
+        eventsSinceSnapshot.set(replayed);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("snapshotPosition", snapshotPosition);
+        result.put("eventsReplayed", replayed);
+        result.put("payments", latest.size());
+        result.put("end", end);
+        result.put("elapsedMillis", (System.nanoTime() - start) / 1_000_000);
+        lastRebuild = result;
+        log.info("Payment ledger at {}: {}", directory.toAbsolutePath(), result);
+        return result;
+    }
+
+    // Write a snapshot of the latest event of every payment now
+    public Map<String, Object> snapshot() {
+        if (!enabled) {
+            return Map.of("enabled", false);
+        }
+        synchronized (snapshotLock) {
+            return writeSnapshot();
+        }
+    }
+
+    private Map<String, Object> writeSnapshot() {
+        long start = System.nanoTime();
+        long position = end; // every event before this is already in latest
+        eventsSinceSnapshot.set(0);
+        Path target = directory.resolve(String.format("snapshot-%020d.snap", position));
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        long count = 0;
+        try {
+            CRC32 crc = new CRC32();
+            try (OutputStream file = Files.newOutputStream(temp);
+                 DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(file, 1 << 16), crc))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeLong(position);
+                ByteBuffer entry = ByteBuffer.allocate(MAX_RECORD_BYTES);
+                for (PaymentEvent event : latest.values()) {
+                    entry.clear();
+                    putVarLong(entry, event.getPosition());
+                    encode(entry, event);
+                    out.writeInt(entry.position());
+                    out.write(entry.array(), 0, entry.position());
+                    count++;
+                }
+                out.writeLong(count);
+                out.flush();
+                long checksum = crc.getValue();
+                out.writeInt((int) checksum);
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.flush();
+            }
+            try (FileChannel file = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                file.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            snapshotPosition = position;
+            pruneSnapshots();
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // removed by the next snapshot's prune
+            }
+            throw new UncheckedIOException("Cannot write payment ledger snapshot " + target, e);
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("position", position);
+        result.put("payments", count);
+        result.put("elapsedMillis", (System.nanoTime() - start) / 1_000_000);
+        log.info("Payment ledger snapshot: {}", result);
+        return result;
+    }
+
+    // Log size, group commit effect and snapshot state
+    public Map<String, Object> stats() {
+        long batchCount = batches.get();
+        long eventCount = events.get();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("directory", directory.toAbsolutePath().toString());
+        synchronized (this) {
+            result.put("segments", segments.size());
+            result.put("bytes", end - (segments.isEmpty() ? 0 : segments.firstKey()));
+        }
+        result.put("payments", latest.size());
+        result.put("eventsAppended", eventCount);
+        result.put("fsyncs", batchCount);
+        result.put("averageBatchSize", batchCount == 0 ? 0 : (double) eventCount / batchCount);
+        result.put("averageFsyncMicros", batchCount == 0 ? 0 : syncNanos.get() / 1000.0 / batchCount);
+        result.put("queueDepth", queue.size());
+        result.put("snapshotPosition", snapshotPosition);
+        result.put("eventsSinceSnapshot", eventsSinceSnapshot.get());
+        result.put("lastRebuild", lastRebuild);
+        return result;
+    }
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                buffer = write(batch, buffer);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+        List<Pending> left = new ArrayList<>();
+        queue.drainTo(left);
+        left.forEach(pending -> pending.result.completeExceptionally(new IllegalStateException("Payment ledger is closed")));
+    }
+
+    // Encode the batch with positions and back links, write it, fsync once, then publish it
+    private ByteBuffer write(List<Pending> batch, ByteBuffer buffer) {
+        long start = System.nanoTime();
+        Map<Long, Long> previous = new HashMap<>();
+        buffer.clear();
+        long position = end;
+        try {
+            for (Pending pending : batch) {
+                PaymentEvent event = pending.event;
+                Long prior = previous.get(event.getPaymentId());
+                if (prior == null) {
+                    PaymentEvent last = latest.get(event.getPaymentId());
+                    prior = last == null ? -1L : last.getPosition();
+                }
+                event.setPreviousPosition(prior);
+                event.setPosition(position);
+                buffer = ensure(buffer, 8 + maxEncodedSize(event));
+                int recordStart = buffer.position();
+                buffer.position(recordStart + 8);
+                encode(buffer, event);
+                int length = buffer.position() - recordStart - 8;
+                CRC32 crc = new CRC32();
+                crc.update(buffer.array(), recordStart + 8, length);
+                buffer.putInt(recordStart, length);
+                buffer.putInt(recordStart + 4, (int) crc.getValue());
+                previous.put(event.getPaymentId(), position);
+                position += 8 + length;
+            }
+            buffer.flip();
+            if (end > segmentStart && end - segmentStart + buffer.remaining() > segmentBytes) {
+                roll();
+            }
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException | RuntimeException e) {
+            try {
+                channel.truncate(end - segmentStart);
+                channel.position(end - segmentStart);
+            } catch (IOException ignored) {
+                // the torn tail is cut off on the next start
+            }
+            RuntimeException failure = e instanceof IOException io ? new UncheckedIOException("Cannot append to payment ledger", io)
+                    : (RuntimeException) e;
+            batch.forEach(pending -> pending.result.completeExceptionally(failure));
+            return buffer;
+        }
+        for (Pending pending : batch) {
+            apply(pending.event);
+        }
+        end = position;
+        syncNanos.addAndGet(System.nanoTime() - start);
+        batches.incrementAndGet();
+        events.addAndGet(batch.size());
+        batch.forEach(pending -> pending.result.complete(pending.event));
+        if (snapshotEvery > 0 && eventsSinceSnapshot.addAndGet(batch.size()) >= snapshotEvery
+                && snapshotRunning.compareAndSet(false, true)) {
+            snapshotter.execute(() -> {
+                try {
+                    snapshot();
+                } catch (RuntimeException e) {
+                    log.error("Payment ledger snapshot failed", e);
+                } finally {
+                    snapshotRunning.set(false);
+                }
+            });
+        }
+        return buffer;
+    }
+
+    private void roll() throws IOException {
+        channel.force(true);
+        channel.close();
+        segmentStart = end;
+        channel = FileChannel.open(newSegment(end), StandardOpenOption.WRITE);
+    }
+
+    private Path newSegment(long base) throws IOException {
+        Path file = directory.resolve(String.format("ledger-%020d.log", base));
+        Files.createFile(file);
+        synchronized (this) {
+            segments.put(base, file);
+        }
+        return file;
+    }
+
+    // Only a newer event replaces what is known about a payment, so replays are idempotent. Newer
+    // means a higher row version; position only decides between events of the same version (a delete
+    // keeps the version of the row it removes) or without one.
+    private void apply(PaymentEvent event) {
+        latest.merge(event.getPaymentId(), event, (known, incoming) -> isNewer(incoming, known) ? incoming : known);
+    }
+
+    private static boolean isNewer(PaymentEvent incoming, PaymentEvent known) {
+        if (incoming.getVersion() != null && known.getVersion() != null
+                && !incoming.getVersion().equals(known.getVersion())) {
+            return incoming.getVersion() > known.getVersion();
+        }
+        return incoming.getPosition() > known.getPosition();
+    }
+
+    private PaymentEvent read(long position) {
+        Map.Entry<Long, Path> segment;
+        synchronized (this) {
+            segment = segments.floorEntry(position);
+        }
+        if (segment == null) {
+            return null;
+        }
+        try (FileChannel file = FileChannel.open(segment.getValue(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(8);
+            file.read(header, position - segment.getKey());
+            int length = header.getInt(0);
+            if (length <= 0 || length > MAX_RECORD_BYTES) {
+                return null;
+            }
+            ByteBuffer record = ByteBuffer.allocate(8 + length);
+            file.read(record, position - segment.getKey());
+            return readRecord(record, 0, position);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read payment ledger at " + position, e);
+        }
+    }
+
+    // The record at offset, or null if it is cut short or fails its checksum
+    private static PaymentEvent readRecord(ByteBuffer buffer, int offset, long position) {
+        if (buffer.limit() - offset < 8) {
+            return null;
+        }
+        int length = buffer.getInt(offset);
+        if (length <= 0 || length > MAX_RECORD_BYTES || buffer.limit() - offset - 8 < length) {
+            return null;
+        }
+        ByteBuffer payload = buffer.slice(offset + 8, length);
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+            return null;
+        }
+        return decode(payload, position);
+    }
+
+    // Newest snapshot that passes its checksum; returns the log position to replay from
+    private long loadSnapshot() throws IOException {
+        snapshotPosition = -1;
+        if (!Files.isDirectory(directory)) {
+            return 0L;
+        }
+        List<Path> snapshots = listSnapshots();
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            Path file = snapshots.get(i);
+            MappedByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            int footer = buffer.capacity() - 16;
+            if (footer < 12 || buffer.getInt(0) != SNAPSHOT_MAGIC || buffer.getInt(buffer.capacity() - 4) != SNAPSHOT_MAGIC) {
+                log.warn("Skipping unreadable payment ledger snapshot {}", file);
+                continue;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(0, footer + 8));
+            if ((int) crc.getValue() != buffer.getInt(footer + 8)) {
+                log.warn("Skipping payment ledger snapshot {} with a bad checksum", file);
+                continue;
+            }
+            long position = buffer.getLong(4);
+            int offset = 12;
+            while (offset < footer) {
+                int length = buffer.getInt(offset);
+                ByteBuffer entry = buffer.slice(offset + 4, length);
+                long eventPosition = readVarLong(entry);
+                apply(decode(entry, eventPosition));
+                offset += 4 + length;
+            }
+            snapshotPosition = position;
+            return position;
+        }
+        return 0L;
+    }
+
+    private List<Path> listSnapshots() throws IOException {
+        List<Path> snapshots = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "snapshot-*.snap")) {
+            files.forEach(snapshots::add);
+        }
+        snapshots.sort(null); // zero-padded positions sort numerically
+        return snapshots;
+    }
+
+    private void pruneSnapshots() throws IOException {
+        List<Path> snapshots = listSnapshots();
+        for (int i = 0; i < snapshots.size() - keepSnapshots; i++) {
+            Files.deleteIfExists(snapshots.get(i));
+        }
+    }
+
+    private static long parsePosition(Path file, String prefix, String suffix) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+    }
+
+    private static void encode(ByteBuffer out, PaymentEvent event) {
+        putVarLong(out, zigZag(event.getPreviousPosition()));
+        putVarLong(out, event.getRecordedAt().toEpochMilli());
+        out.put((byte) typeCode(event.getType()));
+        putVarLong(out, event.getPaymentId());
+        int flags = (event.getOrderId() == null ? NO_ORDER_ID : 0)
+                | (event.getAmount() == null ? NO_AMOUNT : 0)
+                | (event.getVersion() == null ? NO_VERSION : 0);
+        out.put((byte) flags);
+        putVarLong(out, event.getOrderId() == null ? 0 : zigZag(event.getOrderId()));
+        out.putLong(Double.doubleToRawLongBits(event.getAmount() == null ? 0 : event.getAmount()));
+        putVarLong(out, event.getVersion() == null ? 0 : event.getVersion());
+        putString(out, event.getPaymentMode());
+        putString(out, event.getPaymentStatus());
+        if (event.getCreatedAt() != null) {
+            putVarLong(out, zigZag(event.getCreatedAt().getEpochSecond()));
+            putVarLong(out, event.getCreatedAt().getNano());
+        }
+    }
+
+    private static PaymentEvent decode(ByteBuffer in, long position) {
+        long previous = unZigZag(readVarLong(in));
+        Instant recordedAt = Instant.ofEpochMilli(readVarLong(in));
+        String type = TYPES[in.get()];
+        long paymentId = readVarLong(in);
+        int flags = in.get();
+        long orderId = unZigZag(readVarLong(in));
+        double amount = Double.longBitsToDouble(in.getLong());
+        long version = readVarLong(in);
+        String mode = readString(in);
+        String status = readString(in);
+        Instant createdAt = in.hasRemaining() ? Instant.ofEpochSecond(unZigZag(readVarLong(in)), readVarLong(in)) : null;
+        return new PaymentEvent(position, previous, recordedAt, type, paymentId,
+                (flags & NO_ORDER_ID) != 0 ? null : orderId,
+                (flags & NO_AMOUNT) != 0 ? null : amount,
+                mode, status,
+                (flags & NO_VERSION) != 0 ? null : version,
+                createdAt);
+    }
+
+    private static int typeCode(String type) {
+        for (int i = 0; i < TYPES.length; i++) {
+            if (TYPES[i].equals(type)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown payment event type " + type);
+    }
+
+    // Varints take at most 10 bytes, a UTF-8 char at most 3
+    private static int maxEncodedSize(PaymentEvent event) {
+        int strings = (event.getPaymentMode() == null ? 0 : event.getPaymentMode().length())
+                + (event.getPaymentStatus() == null ? 0 : event.getPaymentStatus().length());
+        return 8 * 10 + 1 + 1 + 8 + 3 * strings;
+    }
+
+    private static ByteBuffer ensure(ByteBuffer buffer, int needed) {
+        if (buffer.remaining() >= needed) {
+            return buffer;
+        }
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + needed));
+        buffer.flip();
+        bigger.put(buffer);
+        return bigger;
+    }
+
+    private static void putString(ByteBuffer out, String value) {
+        if (value == null) {
+            putVarLong(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putVarLong(out, bytes.length + 1L);
+        out.put(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = (int) readVarLong(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length - 1];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void putVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private record Pending(PaymentEvent event, CompletableFuture<PaymentEvent> result) {
+    }
+}
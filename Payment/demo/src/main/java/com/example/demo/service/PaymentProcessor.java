@@ -0,0 +1,175 @@
+package com.example.demo.service;
+
+import com.example.demo.exception.ProcessingRejectedException;
+import com.example.demo.model.Payment;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Asynchronous payment processing.
+// A request claims the payment (PENDING/FAILED -> PROCESSING) and queues it; a fixed pool of workers
+// calls the PaymentGateway and records SUCCESS or FAILED through finishProcessing, so the change
+// feed sees every step and request threads never wait on the gateway. A result is only recorded while
+// the payment is still PROCESSING: an update, refund or delete made during the gateway call is kept
+// and the result counted as superseded. The queue is bounded: when it is full the claim is undone
+// (back to PENDING or FAILED, whichever it was claimed from) and the caller is told to retry later.
+// Payments still PROCESSING at startup (the previous run stopped mid-charge) are queued again.
+// Gateway calls go through GatewayResilience. While the gateway's circuit is open new requests are
+// turned away up front; a payment whose charge was never sent (circuit open, bulkhead full) or whose
+// outcome is unknown (deadline passed, or the call threw after it may have reached the provider) goes
+// back to PENDING to be retried. Retrying is safe because the payment id is the gateway's idempotency
+// reference.
+@Component
+public class PaymentProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentProcessor.class);
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private GatewayResilience gateway;
+
+    @Value("${payment.processing.workers:16}")
+    private int workers;
+
+    @Value("${payment.processing.queue-capacity:1000}")
+    private int queueCapacity;
+
+    private ThreadPoolExecutor executor;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder deferred = new LongAdder();
+    private final LongAdder superseded = new LongAdder();
+    private final LongAdder gatewayNanos = new LongAdder();
+
+    @PostConstruct
+    void start() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                task -> {
+                    Thread thread = new Thread(task, "payment-worker-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        // Whatever is still queued stays PROCESSING and is picked up again on the next start
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterrupted() {
+        for (Payment payment : paymentService.getPaymentsByStatus("PROCESSING")) {
+            try {
+                executor.execute(() -> process(payment.getId()));
+                submitted.increment();
+            } catch (RejectedExecutionException e) {
+                log.warn("Processing queue full, payment {} left in PROCESSING until the next start", payment.getId());
+            }
+        }
+    }
+
+    // Claim the payment and queue it for the gateway; returns the payment as PROCESSING
+    public Payment submit(Long id, Long expectedVersion) {
+        long retryAfterMillis = gateway.retryAfterMillis();
+        if (retryAfterMillis > 0) {
+            rejected.increment();
+            throw new ProcessingRejectedException("Payment gateway is unavailable", (retryAfterMillis + 999) / 1000);
+        }
+        if (executor.getQueue().remainingCapacity() == 0) {
+            rejected.increment();
+            throw new ProcessingRejectedException("Payment processing queue is full");
+        }
+        PaymentService.StatusChange claim = paymentService.startProcessing(id, expectedVersion);
+        try {
+            executor.execute(() -> process(id));
+            submitted.increment();
+            return claim.payment();
+        } catch (RejectedExecutionException e) {
+            // Lost the last free slot to another request; hand the payment back
+            rejected.increment();
+            try {
+                paymentService.finishProcessing(id, claim.previousStatus());
+            } catch (RuntimeException undo) {
+                log.warn("Could not undo the claim on payment {}", id, undo);
+            }
+            throw new ProcessingRejectedException("Payment processing queue is full");
+        }
+    }
+
+    // Queue depth, worker use and gateway outcomes
+    public Map<String, Object> stats() {
+        long done = succeeded.sum() + failed.sum() + deferred.sum();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("workers", workers);
+        result.put("activeWorkers", executor.getActiveCount());
+        result.put("queueDepth", executor.getQueue().size());
+        result.put("queueCapacity", queueCapacity);
+        result.put("submitted", submitted.sum());
+        result.put("rejected", rejected.sum());
+        result.put("succeeded", succeeded.sum());
+        result.put("failed", failed.sum());
+        result.put("deferred", deferred.sum());
+        result.put("superseded", superseded.sum());
+        result.put("averageGatewayMillis", done == 0 ? 0 : gatewayNanos.sum() / 1_000_000.0 / done);
+        return result;
+    }
+
+    private void process(Long id) {
+        Payment payment = paymentService.getPaymentById(id).orElse(null);
+        if (payment == null || !"PROCESSING".equals(payment.getPaymentStatus())) {
+            return; // deleted or changed by someone else while queued
+        }
+        long start = System.nanoTime();
+        GatewayResilience.Outcome outcome = gateway.charge(payment);
+        gatewayNanos.add(System.nanoTime() - start);
+        String status;
+        switch (outcome) {
+            case APPROVED -> {
+                status = "SUCCESS";
+                succeeded.increment();
+            }
+            case DECLINED -> {
+                status = "FAILED";
+                failed.increment();
+            }
+            default -> {
+                status = "PENDING";
+                deferred.increment();
+            }
+        }
+        try {
+            paymentService.finishProcessing(id, status);
+        } catch (IllegalStateException e) {
+            // Changed by someone else during the gateway call; their change stands
+            superseded.increment();
+            log.warn("Gateway result {} for payment {} not recorded: {}", outcome, id, e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("Could not record gateway result {} for payment {}", outcome, id, e);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Payment;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Payment count and amount by mode and status, all time and per minute, hour and day of creation.
+// Every write applies the difference between the old and the new version of a payment, so the
+// rollups stay exact without rescanning. Each granularity is a ring of the most recent N buckets
+// holding one count and one amount per (mode, status) cell in flat primitive arrays; a range query
+// reads only the buckets it covers, so a 30-day summary is 30 day buckets whatever the row count.
+// Changes to a payment older than a ring's window only reach the coarser rings and the totals.
+// Modes and statuses outside the known ones are counted together under OTHER, which keeps the
+// number of cells, and so the size of every bucket, fixed.
+@Component
+public class PaymentRollups {
+
+    // Finest granularity first
+    public enum Granularity {
+        MINUTE(Duration.ofMinutes(1)), HOUR(Duration.ofHours(1)), DAY(Duration.ofDays(1));
+
+        private final long seconds;
+
+        Granularity(Duration length) {
+            this.seconds = length.getSeconds();
+        }
+    }
+
+    private static final String OTHER = "OTHER";
+    private static final Set<String> MODES = Set.of("CREDIT_CARD", "DEBIT_CARD", "UPI", "NET_BANKING", "CASH", "PAYPAL");
+    private static final Set<String> STATUSES = Set.of("PENDING", "PROCESSING", "SUCCESS", "FAILED", "REFUNDING", "REFUNDED");
+    private static final int CELLS = (MODES.size() + 1) * (STATUSES.size() + 1);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> cellIndex = new HashMap<>();
+    private final List<String[]> cells = new ArrayList<>(); // index -> {mode, status}
+    private final Ring[] rings;
+    private final int maxPoints;
+    private final long[] totalCounts = new long[CELLS];
+    private final double[] totalAmounts = new double[CELLS];
+
+    public PaymentRollups(@Value("${payment.rollups.minute-buckets:1440}") int minuteBuckets,
+                          @Value("${payment.rollups.hour-buckets:2160}") int hourBuckets,
+                          @Value("${payment.rollups.day-buckets:1830}") int dayBuckets,
+                          @Value("${payment.rollups.max-points:1500}") int maxPoints) {
+        this.rings = new Ring[]{
+                new Ring(Granularity.MINUTE, minuteBuckets),
+                new Ring(Granularity.HOUR, hourBuckets),
+                new Ring(Granularity.DAY, dayBuckets)};
+        this.maxPoints = maxPoints;
+    }
+
+    // Count a new payment
+    public void add(Payment payment) {
+        add(Snapshot.of(payment));
+    }
+
+    public void add(Snapshot payment) {
+        lock.writeLock().lock();
+        try {
+            apply(payment, 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Move a payment from its previous version to its current one
+    public void update(Snapshot before, Payment after) {
+        lock.writeLock().lock();
+        try {
+            apply(before, -1);
+            apply(Snapshot.of(after), 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Forget a deleted payment
+    public void remove(Snapshot before) {
+        lock.writeLock().lock();
+        try {
+            apply(before, -1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // All-time count and amount by mode and status
+    public Map<String, Object> totals() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("totals", cellsToMap(totalCounts, totalAmounts, 0));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Buckets of payments created between from and to, and their sum. Without a granularity the finest
+    // one whose window reaches back to from and that needs at most max-points buckets is used.
+    public Map<String, Object> range(Instant from, Instant to, Granularity granularity) {
+        Ring ring = granularity == null ? pick(from, to) : rings[granularity.ordinal()];
+        long first = Math.floorDiv(from.getEpochSecond(), ring.seconds);
+        long last = Math.floorDiv(to.getEpochSecond(), ring.seconds);
+        if (last - first + 1 > maxPoints) {
+            throw new IllegalArgumentException("Range needs " + (last - first + 1) + " " + ring.granularity
+                    + " buckets; at most " + maxPoints + " are returned");
+        }
+        lock.readLock().lock();
+        try {
+            if (ring.newest != Long.MIN_VALUE && first <= ring.newest - ring.slots) {
+                throw new IllegalArgumentException(ring.granularity + " buckets only reach back to "
+                        + Instant.ofEpochSecond((ring.newest - ring.slots + 1) * ring.seconds));
+            }
+            long[] sumCounts = new long[cells.size()];
+            double[] sumAmounts = new double[cells.size()];
+            List<Map<String, Object>> points = new ArrayList<>();
+            for (long bucket = first; bucket <= last && bucket <= ring.newest; bucket++) {
+                int slot = ring.slotOf(bucket);
+                if (ring.buckets[slot] != bucket) {
+                    continue;
+                }
+                int base = slot * ring.cellCapacity;
+                boolean empty = true;
+                for (int cell = 0; cell < cells.size(); cell++) {
+                    sumCounts[cell] += ring.counts[base + cell];
+                    sumAmounts[cell] += ring.amounts[base + cell];
+                    empty &= ring.counts[base + cell] == 0;
+                }
+                if (!empty) {
+                    Map<String, Object> point = new LinkedHashMap<>();
+                    point.put("start", Instant.ofEpochSecond(bucket * ring.seconds));
+                    point.put("cells", cellsToMap(ring.counts, ring.amounts, base));
+                    points.add(point);
+                }
+            }
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("granularity", ring.granularity);
+            result.put("from", Instant.ofEpochSecond(first * ring.seconds));
+            result.put("to", Instant.ofEpochSecond((last + 1) * ring.seconds));
+            result.put("totals", cellsToMap(sumCounts, sumAmounts, 0));
+            result.put("buckets", points);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Ring pick(Instant from, Instant to) {
+        long now = Instant.now().getEpochSecond();
+        for (Ring ring : rings) {
+            long buckets = Math.floorDiv(to.getEpochSecond(), ring.seconds) - Math.floorDiv(from.getEpochSecond(), ring.seconds) + 1;
+            long oldest = Math.floorDiv(now, ring.seconds) - ring.slots + 1;
+            if (buckets <= maxPoints && Math.floorDiv(from.getEpochSecond(), ring.seconds) >= oldest) {
+                return ring;
+            }
+        }
+        return rings[rings.length - 1];
+    }
+
+    private void apply(Snapshot payment, int sign) {
+        int cell = cellOf(payment.mode, payment.status);
+        double amount = sign * payment.amount;
+        totalCounts[cell] += sign;
+        totalAmounts[cell] += amount;
+        if (payment.createdAtSecond != Long.MIN_VALUE) {
+            for (Ring ring : rings) {
+                ring.add(Math.floorDiv(payment.createdAtSecond, ring.seconds), cell, sign, amount);
+            }
+        }
+    }
+
+    // Cells are numbered in order of first use; at most CELLS (mode, status) pairs exist
+    private int cellOf(String mode, String status) {
+        mode = mode != null && MODES.contains(mode) ? mode : OTHER;
+        status = status != null && STATUSES.contains(status) ? status : OTHER;
+        String key = mode + '\u0000' + status;
+        Integer cell = cellIndex.get(key);
+        if (cell != null) {
+            return cell;
+        }
+        cell = cells.size();
+        cells.add(new String[]{mode, status});
+        cellIndex.put(key, cell);
+        return cell;
+    }
+
+    // mode -> status -> {count, amount}, leaving out empty cells
+    private Map<String, Object> cellsToMap(long[] counts, double[] amounts, int base) {
+        Map<String, Object> byMode = new TreeMap<>();
+        long count = 0;
+        double amount = 0;
+        for (int cell = 0; cell < cells.size(); cell++) {
+            if (counts[base + cell] == 0) {
+                continue;
+            }
+            String[] key = cells.get(cell);
+            Map<String, Object> totals = new LinkedHashMap<>();
+            totals.put("count", counts[base + cell]);
+            totals.put("amount", amounts[base + cell]);
+            @SuppressWarnings("unchecked")
+            Map<String, Object> byStatus = (Map<String, Object>) byMode.computeIfAbsent(String.valueOf(key[0]), m -> new TreeMap<>());
+            byStatus.put(String.valueOf(key[1]), totals);
+            count += counts[base + cell];
+            amount += amounts[base + cell];
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("count", count);
+        result.put("amount", amount);
+        result.put("byMode", byMode);
+        return result;
+    }
+
+    // The fields of a payment the rollups depend on, taken before the payment is changed
+    public record Snapshot(String mode, String status, double amount, long createdAtSecond) {
+        public static Snapshot of(Payment payment) {
+            return new Snapshot(
+                    payment.getPaymentMode(),
+                    payment.getPaymentStatus(),
+                    payment.getAmount() == null ? 0.0 : payment.getAmount(),
+                    payment.getCreatedAt() == null ? Long.MIN_VALUE : payment.getCreatedAt().getEpochSecond());
+        }
+    }
+
+    // The newest `slots` buckets of one granularity; bucket b lives in slot b mod slots and a slot
+    // is cleared when the window moves past its old bucket
+    private static final class Ring {
+        private final Granularity granularity;
+        private final long seconds;
+        private final int slots;
+        private final long[] buckets;
+        private final int cellCapacity = CELLS;
+        private final long[] counts;
+        private final double[] amounts;
+        private long newest = Long.MIN_VALUE;
+
+        private Ring(Granularity granularity, int slots) {
+            this.granularity = granularity;
+            this.seconds = granularity.seconds;
+            this.slots = slots;
+            this.buckets = new long[slots];
+            Arrays.fill(buckets, Long.MIN_VALUE);
+            this.counts = new long[slots * cellCapacity];
+            this.amounts = new double[slots * cellCapacity];
+        }
+
+        private int slotOf(long bucket) {
+            return (int) Math.floorMod(bucket, (long) slots);
+        }
+
+        private void add(long bucket, int cell, int sign, double amount) {
+            if (newest != Long.MIN_VALUE && bucket <= newest - slots) {
+                return; // older than the window
+            }
+            if (bucket > newest) {
+                newest = bucket;
+            }
+            int slot = slotOf(bucket);
+            if (buckets[slot] != bucket) {
+                if (buckets[slot] > bucket) {
+                    return; // the slot already holds a newer bucket
+                }
+                buckets[slot] = bucket;
+                Arrays.fill(counts, slot * cellCapacity, (slot + 1) * cellCapacity, 0L);
+                Arrays.fill(amounts, slot * cellCapacity, (slot + 1) * cellCapacity, 0.0);
+            }
+            counts[slot * cellCapacity + cell] += sign;
+            amounts[slot * cellCapacity + cell] += amount;
+        }
+    }
+}
@@ -1,26 +1,131 @@
 package com.example.demo.service;
 
+import com.example.demo.exception.VersionConflictException;
 import com.example.demo.model.Payment;
+import com.example.demo.model.PaymentEvent;
+import com.example.demo.model.PaymentPage;
 import com.example.demo.repository.PaymentRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 @Service
 public class PaymentService {
     
+    private static final Logger log = LoggerFactory.getLogger(PaymentService.class);
+    
+    private static final int LOCK_STRIPES = 64;
+    
+    // Writes to one payment run one at a time, so its ledger events are appended in commit order
+    private final ReentrantLock[] paymentLocks = new ReentrantLock[LOCK_STRIPES];
+    
+    {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            paymentLocks[i] = new ReentrantLock();
+        }
+    }
+    
     @Autowired
     private PaymentRepository paymentRepository;
     
+    @Autowired
+    private ChangeFeed changeFeed;
+    
+    @Autowired
+    private PaymentLedger ledger;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private PaymentRollups rollups;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Value("${payment.update.max-attempts:3}")
+    private int maxStatusAttempts;
+    
+    @Value("${payment.page.max-size:5000}")
+    private int maxPageSize;
+    
+    // Runs before requests arrive: refill the table from the ledger, then build the rollups from the table
+    @PostConstruct
+    void initialize() {
+        restoreFromLedger();
+        jdbcTemplate.query("select payment_mode, payment_status, amount, created_at from payments", row -> {
+            Timestamp createdAt = row.getTimestamp(4);
+            rollups.add(new PaymentRollups.Snapshot(row.getString(1), row.getString(2), row.getDouble(3),
+                    createdAt == null ? Long.MIN_VALUE : createdAt.toInstant().getEpochSecond()));
+        });
+    }
+    
+    // The payments table is in memory by default, so it starts empty; refill an empty table from the
+    // ledger. Ids keep their values and the identity column restarts after the highest id ever used.
+    private void restoreFromLedger() {
+        if (!ledger.isEnabled() || paymentRepository.count() > 0) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>();
+        for (Payment payment : ledger.currentPayments()) {
+            rows.add(new Object[]{payment.getId(), payment.getOrderId(), payment.getAmount(),
+                    payment.getPaymentMode(), payment.getPaymentStatus(), payment.getVersion(),
+                    payment.getCreatedAt() == null ? null : Timestamp.from(payment.getCreatedAt())});
+        }
+        for (int i = 0; i < rows.size(); i += 1000) {
+            jdbcTemplate.batchUpdate("insert into payments (id, order_id, amount, payment_mode, payment_status, version, created_at) "
+                    + "values (?, ?, ?, ?, ?, ?, ?)", rows.subList(i, Math.min(i + 1000, rows.size())));
+        }
+        restartIdsAfter(ledger.maxPaymentId());
+        if (!rows.isEmpty()) {
+            log.info("Restored {} payments from the ledger", rows.size());
+        }
+    }
+    
+    // Resetting an identity column has no portable SQL. Databases without a known statement continue
+    // after the highest restored id, so ids of payments deleted above it may be handed out again.
+    private void restartIdsAfter(long maxId) {
+        String database = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        if ("H2".equals(database)) {
+            jdbcTemplate.execute("alter table payments alter column id restart with " + (maxId + 1));
+        } else if ("MySQL".equals(database)) {
+            jdbcTemplate.execute("alter table payments auto_increment = " + (maxId + 1));
+        } else {
+            log.warn("Cannot restart payment ids after {} on {}; new ids follow the highest restored one", maxId, database);
+        }
+    }
+    
     // Create payment
     public Payment createPayment(Payment payment) {
         // Set default status if not provided
         if (payment.getPaymentStatus() == null || payment.getPaymentStatus().isEmpty()) {
             payment.setPaymentStatus("PENDING");
         }
-        return paymentRepository.save(payment);
+        payment.setCreatedAt(Instant.now());
+        // No other write can reach the new id before this transaction commits
+        Payment saved = saveAndRecord(payment, PaymentEvent.CREATED);
+        rollups.add(saved);
+        return saved;
     }
     
     // Get all payments
@@ -28,6 +133,20 @@ public class PaymentService {
         return paymentRepository.findAll();
     }
     
+    // Get all payments in (orderId, id) order one keyset page at a time
+    public PaymentPage getPaymentsPage(Long afterOrderId, Long afterId, int size) {
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+        List<Payment> items = paymentRepository.findPageByOrderId(
+                afterOrderId == null ? Long.MIN_VALUE : afterOrderId,
+                afterId == null ? Long.MIN_VALUE : afterId,
+                PageRequest.of(0, pageSize));
+        if (items.size() < pageSize) {
+            return new PaymentPage(items, null, null);
+        }
+        Payment last = items.get(items.size() - 1);
+        return new PaymentPage(items, last.getOrderId(), last.getId());
+    }
+    
     // Get payment by ID
     public Optional<Payment> getPaymentById(Long id) {
         return paymentRepository.findById(id);
@@ -38,6 +157,11 @@ public class PaymentService {
         return paymentRepository.findByOrderId(orderId);
     }
     
+    // Get every payment of the given orders
+    public List<Payment> getPaymentsByOrderIds(Collection<Long> orderIds) {
+        return paymentRepository.findByOrderIdIn(orderIds);
+    }
+    
     // Get payments by status
     public List<Payment> getPaymentsByStatus(String status) {
         return paymentRepository.findByPaymentStatus(status);
@@ -50,39 +174,154 @@ public class PaymentService {
     
     // Update payment
     public Payment updatePayment(Long id, Payment paymentDetails) {
-        Payment payment = paymentRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Payment not found"));
-        
-        payment.setOrderId(paymentDetails.getOrderId());
-        payment.setAmount(paymentDetails.getAmount());
-        payment.setPaymentMode(paymentDetails.getPaymentMode());
-        payment.setPaymentStatus(paymentDetails.getPaymentStatus());
-        
-        return paymentRepository.save(payment);
+        return updatePayment(id, paymentDetails, null);
+    }
+    
+    // Update payment only if it is still at expectedVersion (null to skip the check)
+    public Payment updatePayment(Long id, Payment paymentDetails, Long expectedVersion) {
+        return locked(id, () -> {
+            Payment payment = paymentRepository.findById(id)
+                    .orElseThrow(() -> new RuntimeException("Payment not found"));
+            checkVersion(payment, expectedVersion);
+            PaymentRollups.Snapshot before = PaymentRollups.Snapshot.of(payment);
+            
+            payment.setOrderId(paymentDetails.getOrderId());
+            payment.setAmount(paymentDetails.getAmount());
+            payment.setPaymentMode(paymentDetails.getPaymentMode());
+            payment.setPaymentStatus(paymentDetails.getPaymentStatus());
+            
+            Payment saved;
+            try {
+                saved = saveAndRecord(payment, PaymentEvent.UPDATED);
+            } catch (OptimisticLockingFailureException e) {
+                // A full replacement built on a stale read cannot be replayed safely
+                throw conflict(id, expectedVersion != null ? HttpStatus.PRECONDITION_FAILED : HttpStatus.CONFLICT);
+            }
+            rollups.update(before, saved);
+            return saved;
+        });
     }
     
     // Update payment status
     public Payment updatePaymentStatus(Long id, String status) {
-        Payment payment = paymentRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Payment not found"));
-        
-        payment.setPaymentStatus(status);
-        return paymentRepository.save(payment);
+        return updatePaymentStatus(id, status, null);
+    }
+    
+    // Update payment status only if it is still at expectedVersion (null to skip the check)
+    public Payment updatePaymentStatus(Long id, String status, Long expectedVersion) {
+        return setStatus(id, status, expectedVersion, null);
     }
     
-    // Process payment (simulate payment processing)
-    public Payment processPayment(Long id) {
-        Payment payment = paymentRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Payment not found"));
-        
-        // Simulate payment processing logic
-        // In real scenario, this would integrate with payment gateway
-        payment.setPaymentStatus("SUCCESS");
-        return paymentRepository.save(payment);
+    // Claim a PENDING or FAILED payment for the gateway by moving it to PROCESSING; only one of
+    // several concurrent callers can win, the others see IllegalStateException. The status it was
+    // claimed from comes back with it so an unqueued claim can be undone exactly.
+    public StatusChange startProcessing(Long id, Long expectedVersion) {
+        return changeStatus(id, "PROCESSING", expectedVersion, Set.of("PENDING", "FAILED"));
+    }
+    
+    // Move a claimed payment on from PROCESSING (gateway result, or undoing the claim); a payment
+    // changed or deleted meanwhile keeps that change and the caller sees IllegalStateException or
+    // "Payment not found"
+    public Payment finishProcessing(Long id, String status) {
+        return setStatus(id, status, null, Set.of("PROCESSING"));
+    }
+    
+    // Claim a SUCCESS payment for a refund by moving it to REFUNDING; resuming also takes back a payment
+    // left REFUNDING by an interrupted refund job
+    public Payment startRefund(Long id, boolean resuming) {
+        return setStatus(id, "REFUNDING", null, resuming ? Set.of("SUCCESS", "REFUNDING") : Set.of("SUCCESS"));
     }
     
     // Delete payment
     public void deletePayment(Long id) {
-        paymentRepository.deleteById(id);
+        locked(id, () -> {
+            paymentRepository.findById(id).ifPresent(payment -> {
+                transactionTemplate.executeWithoutResult(status -> {
+                    paymentRepository.delete(payment);
+                    paymentRepository.flush();
+                    ledger.append(PaymentEvent.DELETED, payment);
+                });
+                rollups.remove(PaymentRollups.Snapshot.of(payment));
+            });
+            return null;
+        });
+    }
+    
+    // Every recorded change of a payment, oldest first; deleted payments keep their history
+    public List<PaymentEvent> getPaymentHistory(Long id) {
+        return ledger.history(id);
+    }
+    
+    // Without a precondition a lost race is retried on a fresh read: the new status does not
+    // depend on the rest of the row, so reapplying it gives the same result. allowedFrom (null
+    // for any) is checked against every fresh read.
+    private Payment setStatus(Long id, String status, Long expectedVersion, Set<String> allowedFrom) {
+        return changeStatus(id, status, expectedVersion, allowedFrom).payment();
+    }
+    
+    private StatusChange changeStatus(Long id, String status, Long expectedVersion, Set<String> allowedFrom) {
+        return locked(id, () -> {
+            for (int attempt = 1; ; attempt++) {
+                Payment payment = paymentRepository.findById(id)
+                        .orElseThrow(() -> new RuntimeException("Payment not found"));
+                checkVersion(payment, expectedVersion);
+                if (allowedFrom != null && !allowedFrom.contains(payment.getPaymentStatus())) {
+                    throw new IllegalStateException("Payment " + id + " is " + payment.getPaymentStatus());
+                }
+                PaymentRollups.Snapshot before = PaymentRollups.Snapshot.of(payment);
+                String previousStatus = payment.getPaymentStatus();
+                
+                payment.setPaymentStatus(status);
+                try {
+                    Payment saved = saveAndRecord(payment, PaymentEvent.STATUS_CHANGED);
+                    rollups.update(before, saved);
+                    changeFeed.publish("payment-status", saved);
+                    return new StatusChange(saved, previousStatus);
+                } catch (OptimisticLockingFailureException e) {
+                    if (expectedVersion != null) {
+                        throw conflict(id, HttpStatus.PRECONDITION_FAILED);
+                    }
+                    if (attempt >= maxStatusAttempts) {
+                        throw conflict(id, HttpStatus.CONFLICT);
+                    }
+                }
+            }
+        });
+    }
+    
+    // Save and record the change in one transaction: the row only commits once its event is on disk,
+    // and an append that fails rolls the row back, so the caller's error means nothing changed
+    private Payment saveAndRecord(Payment payment, String type) {
+        return transactionTemplate.execute(status -> {
+            Payment saved = paymentRepository.saveAndFlush(payment);
+            ledger.append(type, saved);
+            return saved;
+        });
+    }
+    
+    private <T> T locked(Long id, Supplier<T> action) {
+        ReentrantLock lock = paymentLocks[Math.floorMod(id.hashCode(), LOCK_STRIPES)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private static void checkVersion(Payment payment, Long expectedVersion) {
+        if (expectedVersion != null && !expectedVersion.equals(payment.getVersion())) {
+            throw new VersionConflictException(HttpStatus.PRECONDITION_FAILED,
+                    "Payment " + payment.getId() + " is at version " + payment.getVersion(), payment.getVersion());
+        }
+    }
+    
+    private VersionConflictException conflict(Long id, HttpStatus status) {
+        Long current = paymentRepository.findById(id).map(Payment::getVersion).orElse(null);
+        return new VersionConflictException(status, "Payment " + id + " was changed concurrently", current);
+    }
+    
+    // A status change and the status it replaced
+    public record StatusChange(Payment payment, String previousStatus) {
     }
 }
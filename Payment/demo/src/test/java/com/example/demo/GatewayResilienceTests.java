@@ -0,0 +1,176 @@
+package com.example.demo;
+
+import com.example.demo.model.Payment;
+import com.example.demo.service.GatewayResilience;
+import com.example.demo.service.GatewayResilience.Outcome;
+import com.example.demo.service.PaymentGateway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GatewayResilienceTests {
+
+	private static final long OPEN_MS = 200;
+	private static final long SLOW_ID = 99L;
+
+	private final StubGateway gateway = new StubGateway();
+	private GatewayResilience resilience;
+
+	@AfterEach
+	void stop() {
+		if (resilience != null) {
+			ReflectionTestUtils.invokeMethod(resilience, "stop");
+		}
+	}
+
+	@Test
+	void opensAtTheFailureRateAndRefusesCallsUntilOpenMsPass() {
+		resilience = resilience(2);
+		gateway.failing = false;
+		assertEquals(Outcome.APPROVED, charge(1L));
+		assertEquals(Outcome.APPROVED, charge(2L));
+		gateway.failing = true;
+		assertEquals(Outcome.ERROR, charge(3L));
+		// 2 of 4 calls failed: 50% reaches the threshold
+		assertEquals(Outcome.ERROR, charge(4L));
+
+		int calls = gateway.calls.get();
+		assertEquals(Outcome.CIRCUIT_OPEN, charge(5L));
+		assertEquals(calls, gateway.calls.get());
+		assertTrue(resilience.retryAfterMillis() > 0);
+	}
+
+	@Test
+	void declinesDoNotCountAsFailures() {
+		resilience = resilience(2);
+		gateway.declining = true;
+		for (long id = 1; id <= 10; id++) {
+			assertEquals(Outcome.DECLINED, charge(id));
+		}
+		assertEquals(0, resilience.retryAfterMillis());
+	}
+
+	@Test
+	void successfulProbesCloseTheBreaker() throws Exception {
+		resilience = resilience(2);
+		open();
+		Thread.sleep(OPEN_MS + 50);
+
+		gateway.failing = false;
+		assertEquals(0, resilience.retryAfterMillis());
+		assertEquals(Outcome.APPROVED, charge(10L));
+		assertEquals(Outcome.APPROVED, charge(11L));
+		// Closed again with an empty window: one failure is below minimum-calls
+		gateway.failing = true;
+		assertEquals(Outcome.ERROR, charge(12L));
+		gateway.failing = false;
+		assertEquals(Outcome.APPROVED, charge(13L));
+	}
+
+	@Test
+	void aFailedProbeOpensTheBreakerAgain() throws Exception {
+		resilience = resilience(2);
+		open();
+		Thread.sleep(OPEN_MS + 50);
+
+		assertEquals(Outcome.ERROR, charge(10L));
+
+		assertEquals(Outcome.CIRCUIT_OPEN, charge(11L));
+		assertTrue(resilience.retryAfterMillis() > 0);
+	}
+
+	@Test
+	void resultsOfCallsAdmittedBeforeAStateChangeAreIgnored() throws Exception {
+		resilience = resilience(2);
+		// Admitted while closed, then held inside the gateway
+		CompletableFuture<Outcome> slow = CompletableFuture.supplyAsync(() -> charge(SLOW_ID));
+		assertTrue(gateway.slowEntered.await(5, TimeUnit.SECONDS));
+		open();
+		Thread.sleep(OPEN_MS + 50);
+		gateway.failing = false;
+		assertEquals(Outcome.APPROVED, charge(10L)); // first of two probes
+
+		// The old call fails now; under the half-open state that would reopen the breaker
+		gateway.releaseSlow.countDown();
+		assertEquals(Outcome.ERROR, slow.get(5, TimeUnit.SECONDS));
+
+		assertEquals(Outcome.APPROVED, charge(11L)); // second probe closes it
+		assertEquals(Outcome.APPROVED, charge(12L));
+	}
+
+	// Four failures in a row fill the window
+	private void open() {
+		gateway.failing = true;
+		for (long id = 1; id <= 4; id++) {
+			assertEquals(Outcome.ERROR, charge(id));
+		}
+		assertEquals(Outcome.CIRCUIT_OPEN, charge(5L));
+	}
+
+	private Outcome charge(long id) {
+		Payment payment = new Payment(id, 10.0, "UPI", "PROCESSING");
+		payment.setId(id);
+		return resilience.charge(payment);
+	}
+
+	private GatewayResilience resilience(int halfOpenProbes) {
+		MockEnvironment environment = new MockEnvironment()
+				.withProperty("payment.gateway.resilience.window-size", "4")
+				.withProperty("payment.gateway.resilience.minimum-calls", "4")
+				.withProperty("payment.gateway.resilience.failure-rate-threshold", "50")
+				.withProperty("payment.gateway.resilience.open-ms", Long.toString(OPEN_MS))
+				.withProperty("payment.gateway.resilience.half-open-probes", Integer.toString(halfOpenProbes))
+				.withProperty("payment.gateway.resilience.timeout-ms", "5000");
+		GatewayResilience guarded = new GatewayResilience();
+		ReflectionTestUtils.setField(guarded, "gateway", gateway);
+		ReflectionTestUtils.setField(guarded, "environment", environment);
+		return guarded;
+	}
+
+	// Approves, declines or throws on demand; payment SLOW_ID blocks until released and then throws
+	private static final class StubGateway implements PaymentGateway {
+		private final CountDownLatch slowEntered = new CountDownLatch(1);
+		private final CountDownLatch releaseSlow = new CountDownLatch(1);
+		private final AtomicInteger calls = new AtomicInteger();
+		private volatile boolean failing;
+		private volatile boolean declining;
+
+		@Override
+		public String name() {
+			return "test";
+		}
+
+		@Override
+		public boolean charge(Payment payment) {
+			calls.incrementAndGet();
+			if (payment.getId() == SLOW_ID) {
+				slowEntered.countDown();
+				try {
+					releaseSlow.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				throw new IllegalStateException("Connection reset");
+			}
+			if (failing) {
+				throw new IllegalStateException("Gateway unavailable");
+			}
+			return !declining;
+		}
+
+		@Override
+		public boolean refund(Payment payment) {
+			return charge(payment);
+		}
+	}
+
+}
@@ -0,0 +1,219 @@
+package com.example.demo;
+
+import com.example.demo.model.Payment;
+import com.example.demo.model.PaymentEvent;
+import com.example.demo.service.PaymentLedger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PaymentLedgerTests {
+
+	@TempDir
+	Path directory;
+
+	private final List<PaymentLedger> opened = new ArrayList<>();
+
+	@AfterEach
+	void closeAll() throws Exception {
+		for (PaymentLedger ledger : opened) {
+			ledger.close();
+		}
+	}
+
+	@Test
+	void historyFollowsThePreviousEventChain() throws Exception {
+		PaymentLedger ledger = open(1 << 20);
+		ledger.append(PaymentEvent.CREATED, payment(1L, "PENDING", 0L));
+		ledger.append(PaymentEvent.CREATED, payment(2L, "PENDING", 0L));
+		ledger.append(PaymentEvent.STATUS_CHANGED, payment(1L, "PROCESSING", 1L));
+		ledger.append(PaymentEvent.STATUS_CHANGED, payment(2L, "FAILED", 1L));
+		ledger.append(PaymentEvent.STATUS_CHANGED, payment(1L, "SUCCESS", 2L));
+
+		assertEquals(List.of("PENDING", "PROCESSING", "SUCCESS"), statuses(ledger.history(1L)));
+		assertEquals(List.of("PENDING", "FAILED"), statuses(ledger.history(2L)));
+		assertEquals(List.of(PaymentEvent.CREATED, PaymentEvent.STATUS_CHANGED, PaymentEvent.STATUS_CHANGED),
+				ledger.history(1L).stream().map(PaymentEvent::getType).toList());
+	}
+
+	@Test
+	void restartReplaysTheLogAcrossSegments() throws Exception {
+		PaymentLedger ledger = open(256);
+		for (long id = 1; id <= 20; id++) {
+			ledger.append(PaymentEvent.CREATED, payment(id, "PENDING", 0L));
+			ledger.append(PaymentEvent.STATUS_CHANGED, payment(id, "SUCCESS", 1L));
+		}
+		ledger.append(PaymentEvent.DELETED, payment(7L, "SUCCESS", 1L));
+		ledger.close();
+		assertTrue(segments().size() > 1);
+
+		PaymentLedger reopened = open(256);
+
+		assertEquals(19, reopened.currentPayments().size());
+		assertTrue(reopened.currentPayments().stream().allMatch(p -> "SUCCESS".equals(p.getPaymentStatus())));
+		assertEquals(20L, reopened.maxPaymentId());
+		assertEquals(List.of("PENDING", "SUCCESS", "SUCCESS"), statuses(reopened.history(7L)));
+	}
+
+	@Test
+	void snapshotPlusTailRestoresTheLatestState() throws Exception {
+		PaymentLedger ledger = open(1 << 20);
+		for (long id = 1; id <= 10; id++) {
+			ledger.append(PaymentEvent.CREATED, payment(id, "PENDING", 0L));
+		}
+		ledger.snapshot();
+		ledger.append(PaymentEvent.STATUS_CHANGED, payment(3L, "SUCCESS", 1L));
+		ledger.append(PaymentEvent.CREATED, payment(11L, "PENDING", 0L));
+		ledger.close();
+
+		PaymentLedger reopened = open(1 << 20);
+		Map<String, Object> rebuild = reopened.rebuild();
+
+		assertTrue((Long) rebuild.get("snapshotPosition") > 0);
+		assertEquals(2L, rebuild.get("eventsReplayed"));
+		assertEquals(11, reopened.currentPayments().size());
+		assertEquals("SUCCESS", current(reopened, 3L).getPaymentStatus());
+		assertEquals(List.of("PENDING", "SUCCESS"), statuses(reopened.history(3L)));
+	}
+
+	@Test
+	void corruptSnapshotFallsBackToTheLog() throws Exception {
+		PaymentLedger ledger = open(1 << 20);
+		ledger.append(PaymentEvent.CREATED, payment(1L, "PENDING", 0L));
+		ledger.snapshot();
+		ledger.append(PaymentEvent.STATUS_CHANGED, payment(1L, "SUCCESS", 1L));
+		ledger.close();
+		Path snapshot;
+		try (Stream<Path> files = Files.list(directory)) {
+			snapshot = files.filter(f -> f.getFileName().toString().endsWith(".snap")).findFirst().orElseThrow();
+		}
+		flipByte(snapshot, 14);
+
+		PaymentLedger reopened = open(1 << 20);
+
+		assertEquals(-1L, reopened.rebuild().get("snapshotPosition"));
+		assertEquals("SUCCESS", current(reopened, 1L).getPaymentStatus());
+	}
+
+	@Test
+	void tornTailIsCutOffAndAppendsContinue() throws Exception {
+		PaymentLedger ledger = open(1 << 20);
+		ledger.append(PaymentEvent.CREATED, payment(1L, "PENDING", 0L));
+		ledger.append(PaymentEvent.STATUS_CHANGED, payment(1L, "SUCCESS", 1L));
+		ledger.close();
+		Path segment = segments().get(0);
+		long intact = Files.size(segment);
+		// Half of a record: a header promising 40 bytes followed by only 5
+		try (FileChannel file = FileChannel.open(segment, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+			file.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 40, 1, 2, 3, 4, 5, 6, 7, 8, 9}));
+		}
+
+		PaymentLedger reopened = open(1 << 20);
+
+		assertEquals(intact, Files.size(segment));
+		assertEquals("SUCCESS", current(reopened, 1L).getPaymentStatus());
+		reopened.append(PaymentEvent.STATUS_CHANGED, payment(1L, "REFUNDED", 2L));
+		reopened.close();
+		assertEquals(List.of("PENDING", "SUCCESS", "REFUNDED"), statuses(open(1 << 20).history(1L)));
+	}
+
+	@Test
+	void checksumFailureInTheLastRecordIsTreatedAsTorn() throws Exception {
+		PaymentLedger ledger = open(1 << 20);
+		ledger.append(PaymentEvent.CREATED, payment(1L, "PENDING", 0L));
+		long firstEnd = Files.size(segments().get(0));
+		ledger.append(PaymentEvent.STATUS_CHANGED, payment(1L, "SUCCESS", 1L));
+		ledger.close();
+		flipByte(segments().get(0), firstEnd + 10);
+
+		PaymentLedger reopened = open(1 << 20);
+
+		assertEquals(firstEnd, Files.size(segments().get(0)));
+		assertEquals("PENDING", current(reopened, 1L).getPaymentStatus());
+	}
+
+	@Test
+	void checksumFailureBeforeTheTailStopsTheStart() throws Exception {
+		PaymentLedger ledger = open(256);
+		for (long id = 1; id <= 20; id++) {
+			ledger.append(PaymentEvent.CREATED, payment(id, "PENDING", 0L));
+		}
+		ledger.close();
+		assertTrue(segments().size() > 1);
+		flipByte(segments().get(0), 12);
+
+		PaymentLedger broken = new PaymentLedger(true, directory.toString(), 256, 16, 0, 2);
+		assertThrows(IOException.class, broken::open);
+	}
+
+	@Test
+	void olderVersionAppendedLateDoesNotWin() throws Exception {
+		PaymentLedger ledger = open(1 << 20);
+		ledger.append(PaymentEvent.CREATED, payment(1L, "PENDING", 0L));
+		ledger.append(PaymentEvent.STATUS_CHANGED, payment(1L, "SUCCESS", 2L));
+		ledger.append(PaymentEvent.STATUS_CHANGED, payment(1L, "PROCESSING", 1L));
+
+		assertEquals("SUCCESS", current(ledger, 1L).getPaymentStatus());
+		ledger.close();
+		assertEquals("SUCCESS", current(open(1 << 20), 1L).getPaymentStatus());
+	}
+
+	private PaymentLedger open(long segmentBytes) throws IOException {
+		PaymentLedger ledger = new PaymentLedger(true, directory.toString(), segmentBytes, 16, 0, 2);
+		ledger.open();
+		opened.add(ledger);
+		return ledger;
+	}
+
+	private List<Path> segments() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(f -> f.getFileName().toString().endsWith(".log"))
+					.sorted(Comparator.naturalOrder())
+					.toList();
+		}
+	}
+
+	private static void flipByte(Path file, long offset) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer one = ByteBuffer.allocate(1);
+			channel.read(one, offset);
+			one.put(0, (byte) (one.get(0) ^ 0x5A));
+			one.rewind();
+			channel.write(one, offset);
+		}
+	}
+
+	private static Payment current(PaymentLedger ledger, Long id) {
+		return ledger.currentPayments().stream().filter(p -> p.getId().equals(id)).findFirst().orElseThrow();
+	}
+
+	private static List<String> statuses(List<PaymentEvent> history) {
+		return history.stream().map(PaymentEvent::getPaymentStatus).toList();
+	}
+
+	private static Payment payment(Long id, String status, Long version) {
+		Payment payment = new Payment(100L + id, 25.0, "UPI", status);
+		payment.setId(id);
+		payment.setVersion(version);
+		payment.setCreatedAt(Instant.parse("2026-01-01T00:00:00Z"));
+		return payment;
+	}
+
+}
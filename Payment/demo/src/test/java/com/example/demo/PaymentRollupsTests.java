@@ -0,0 +1,125 @@
+package com.example.demo;
+
+import com.example.demo.model.Payment;
+import com.example.demo.service.PaymentRollups;
+import com.example.demo.service.PaymentRollups.Granularity;
+import com.example.demo.service.PaymentRollups.Snapshot;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PaymentRollupsTests {
+
+	private static final Instant START = Instant.parse("2026-01-01T00:00:00Z");
+
+	// Three minute buckets, two days of hours, ten days
+	private final PaymentRollups rollups = new PaymentRollups(3, 48, 10, 100);
+
+	@Test
+	void totalsFollowAddsUpdatesAndRemoves() {
+		Payment first = payment(1L, "UPI", "PENDING", 10.0, START);
+		Payment second = payment(2L, "CASH", "SUCCESS", 5.0, START);
+		rollups.add(first);
+		rollups.add(second);
+
+		Snapshot before = Snapshot.of(first);
+		first.setPaymentStatus("SUCCESS");
+		rollups.update(before, first);
+		rollups.remove(Snapshot.of(second));
+
+		Map<String, Object> totals = totals();
+		assertEquals(1L, totals.get("count"));
+		assertEquals(10.0, totals.get("amount"));
+		assertEquals(1L, count(totals, "UPI", "SUCCESS"));
+		assertEquals(0L, count(totals, "UPI", "PENDING"));
+		assertEquals(0L, count(totals, "CASH", "SUCCESS"));
+	}
+
+	@Test
+	void unknownModesAndStatusesShareOneOtherCell() {
+		rollups.add(payment(1L, "UPI", "ON_HOLD", 1.0, START));
+		rollups.add(payment(2L, null, "SUCCESS", 1.0, START));
+		// Far more free-form pairs than there are cells
+		for (long id = 3; id < 503; id++) {
+			rollups.add(payment(id, "WALLET-" + id, "STATE-" + id, 1.0, START));
+		}
+
+		Map<String, Object> totals = totals();
+		assertEquals(502L, totals.get("count"));
+		assertEquals(1L, count(totals, "UPI", "OTHER"));
+		assertEquals(1L, count(totals, "OTHER", "SUCCESS"));
+		assertEquals(500L, count(totals, "OTHER", "OTHER"));
+		assertEquals(500L, count(range(START, START.plusSeconds(59), Granularity.MINUTE), "OTHER", "OTHER"));
+	}
+
+	@Test
+	void minuteWindowMovesAndDropsItsOldestBucket() {
+		for (int minute = 0; minute < 5; minute++) {
+			rollups.add(payment((long) minute, "UPI", "SUCCESS", 1.0, START.plus(Duration.ofMinutes(minute))));
+		}
+
+		Map<String, Object> lastThree = rollups.range(START.plus(Duration.ofMinutes(2)), START.plus(Duration.ofMinutes(5)).minusSeconds(1), Granularity.MINUTE);
+		assertEquals(3L, cells(lastThree).get("count"));
+		assertEquals(3, ((List<?>) lastThree.get("buckets")).size());
+		assertThrows(IllegalArgumentException.class,
+				() -> rollups.range(START, START.plus(Duration.ofMinutes(4)), Granularity.MINUTE));
+		assertEquals(5L, count(range(START, START.plus(Duration.ofMinutes(59)), Granularity.HOUR), "UPI", "SUCCESS"));
+	}
+
+	@Test
+	void changesToPaymentsOlderThanAWindowOnlyReachTheCoarserRings() {
+		Payment old = payment(1L, "UPI", "SUCCESS", 1.0, START);
+		rollups.add(old);
+		for (int minute = 1; minute <= 4; minute++) {
+			rollups.add(payment(1L + minute, "UPI", "SUCCESS", 1.0, START.plus(Duration.ofMinutes(minute))));
+		}
+
+		Snapshot before = Snapshot.of(old);
+		old.setPaymentStatus("REFUNDED");
+		rollups.update(before, old);
+
+		Map<String, Object> minutes = range(START.plus(Duration.ofMinutes(2)), START.plus(Duration.ofMinutes(5)).minusSeconds(1), Granularity.MINUTE);
+		assertEquals(3L, count(minutes, "UPI", "SUCCESS"));
+		assertEquals(0L, count(minutes, "UPI", "REFUNDED"));
+		Map<String, Object> hour = range(START, START.plus(Duration.ofMinutes(59)), Granularity.HOUR);
+		assertEquals(4L, count(hour, "UPI", "SUCCESS"));
+		assertEquals(1L, count(hour, "UPI", "REFUNDED"));
+		assertEquals(1L, count(totals(), "UPI", "REFUNDED"));
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<String, Object> totals() {
+		return (Map<String, Object>) rollups.totals().get("totals");
+	}
+
+	private Map<String, Object> range(Instant from, Instant to, Granularity granularity) {
+		return cells(rollups.range(from, to, granularity));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> cells(Map<String, Object> range) {
+		return (Map<String, Object>) range.get("totals");
+	}
+
+	@SuppressWarnings("unchecked")
+	private static long count(Map<String, Object> cells, String mode, String status) {
+		Map<String, Object> byMode = (Map<String, Object>) cells.get("byMode");
+		Map<String, Object> byStatus = (Map<String, Object>) byMode.getOrDefault(mode, Map.of());
+		Map<String, Object> totals = (Map<String, Object>) byStatus.get(status);
+		return totals == null ? 0 : (Long) totals.get("count");
+	}
+
+	private static Payment payment(Long id, String mode, String status, double amount, Instant createdAt) {
+		Payment payment = new Payment(100L + id, amount, mode, status);
+		payment.setId(id);
+		payment.setCreatedAt(createdAt);
+		return payment;
+	}
+
+}
@@ -0,0 +1,96 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.ProductApplication;
+import com.example.demo.model.Product;
+import com.example.demo.service.ProductImportService;
+import com.example.demo.service.ProductService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Product service hot paths against the embedded H2 database, seeded with CATALOG_SIZE products
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductServiceBenchmark {
+
+    private static final int CATALOG_SIZE = 20_000;
+    private static final String[] WORDS = {"apple", "phone", "laptop", "chair", "coffee", "lamp", "cable", "watch"};
+
+    private ConfigurableApplicationContext context;
+    private ProductService productService;
+    private ObjectMapper objectMapper;
+    private List<Product> page;
+    private long firstId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(ProductApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.jpa.show-sql=false", "logging.level.root=WARN")
+                .run();
+        productService = context.getBean(ProductService.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+
+        List<Product> catalog = new ArrayList<>(CATALOG_SIZE);
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            String name = WORDS[i % WORDS.length] + " " + WORDS[(i / WORDS.length) % WORDS.length] + " " + i;
+            catalog.add(new Product(name, "category-" + (i % 40), 1.0 + i % 500, 1_000_000));
+        }
+        context.getBean(ProductImportService.class).importProducts(catalog);
+
+        page = productService.getProductsPage(null, 100).getItems();
+        firstId = page.get(0).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object getProductById() {
+        return productService.getProductById(randomId());
+    }
+
+    @Benchmark
+    public Object searchProducts() {
+        return productService.searchProducts(WORDS[ThreadLocalRandom.current().nextInt(WORDS.length)], 50);
+    }
+
+    @Benchmark
+    public Object updateStock() {
+        int delta = ThreadLocalRandom.current().nextBoolean() ? 1 : -1;
+        return productService.updateStock(randomId(), delta);
+    }
+
+    @Benchmark
+    public byte[] serializeProductList() throws Exception {
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+    private long randomId() {
+        return firstId + ThreadLocalRandom.current().nextInt(CATALOG_SIZE);
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.ProductApplication;
+import com.example.demo.model.Product;
+import com.example.demo.service.ProductImportService;
+import com.example.demo.service.ProductService;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Platform-thread vs virtual-thread request handling, end to end over HTTP.
+// Many client threads fetch random products with the product cache disabled, so every request
+// blocks on JPA. Run with "-Djmh.include=ThreadModeBenchmark" to get throughput and the sampled
+// latency percentiles (p99 included) for both modes side by side in target/jmh-result.json.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Threads(256)
+@Fork(1)
+public class ThreadModeBenchmark {
+
+    private static final int CATALOG_SIZE = 1_000;
+
+    @Param({"platform", "virtual"})
+    public String threadMode;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private String baseUrl;
+    private long firstId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        boolean virtual = "virtual".equals(threadMode);
+        context = new SpringApplicationBuilder(ProductApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.threads.virtual.enabled=" + virtual,
+                        "concurrency.limit.enabled=" + virtual,
+                        "product.cache.max-size=0",
+                        "spring.jpa.show-sql=false",
+                        "logging.level.root=WARN")
+                .run();
+
+        List<Product> catalog = new ArrayList<>(CATALOG_SIZE);
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            catalog.add(new Product("product " + i, "category-" + (i % 10), 1.0 + i, 100));
+        }
+        context.getBean(ProductImportService.class).importProducts(catalog);
+        firstId = context.getBean(ProductService.class).getProductsPage(null, 1).getItems().get(0).getId();
+
+        baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/products/";
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int getProductOverHttp(Outcomes outcomes) throws Exception {
+        long id = firstId + ThreadLocalRandom.current().nextInt(CATALOG_SIZE);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + id)).GET().build();
+        int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        if (status == 200) {
+            outcomes.ok++;
+        } else {
+            outcomes.rejected++;
+        }
+        return status;
+    }
+
+    // Reported next to the throughput score so shed requests are not mistaken for served ones
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Outcomes {
+        public long ok;
+        public long rejected;
+    }
+}
@@ -1,13 +1,24 @@
 package com.example.demo.controller;
 
+import com.example.demo.exception.InsufficientStockException;
+import com.example.demo.model.CategoryFacet;
 import com.example.demo.model.Product;
+import com.example.demo.model.ProductPage;
+import com.example.demo.service.ProductImportService;
 import com.example.demo.service.ProductService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/products")
@@ -16,6 +27,12 @@ public class ProductController {
     @Autowired
     private ProductService productService;
     
+    @Autowired
+    private ProductImportService productImportService;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
     // Create product
     @PostMapping
     public ResponseEntity<Product> createProduct(@RequestBody Product product) {
@@ -23,6 +40,36 @@ public class ProductController {
         return new ResponseEntity<>(createdProduct, HttpStatus.CREATED);
     }
     
+    // Bulk upsert products from a JSON array (rows with an id update, rows without insert)
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> importProductsJson(InputStream body) {
+        try {
+            return new ResponseEntity<>(productImportService.importJson(body), HttpStatus.OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+    
+    // Bulk upsert products from newline-delimited JSON
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<?> importProductsNdjson(InputStream body) {
+        try {
+            return new ResponseEntity<>(productImportService.importNdjson(body), HttpStatus.OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+    
+    // Bulk upsert products from CSV with a header row
+    @PostMapping(value = "/batch", consumes = "text/csv")
+    public ResponseEntity<?> importProductsCsv(InputStream body) {
+        try {
+            return new ResponseEntity<>(productImportService.importCsv(body), HttpStatus.OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+    
     // Get all products
     @GetMapping
     public ResponseEntity<List<Product>> getAllProducts() {
@@ -30,6 +77,34 @@ public class ProductController {
         return new ResponseEntity<>(products, HttpStatus.OK);
     }
     
+    // Get products one keyset page at a time (pass nextCursor back as "after")
+    @GetMapping(params = "size")
+    public ResponseEntity<ProductPage> getProductsPage(@RequestParam(required = false) Long after,
+                                                       @RequestParam int size) {
+        ProductPage page = productService.getProductsPage(after, size);
+        return new ResponseEntity<>(page, HttpStatus.OK);
+    }
+    
+    // Stream all products as newline-delimited JSON while they are read from the database
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllProducts() {
+        StreamingResponseBody body = out -> productService.streamAllProducts(product -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(product));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+    
+    // Get product cache statistics
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return new ResponseEntity<>(productService.getCacheStats(), HttpStatus.OK);
+    }
+    
     // Get product by ID
     @GetMapping("/{id}")
     public ResponseEntity<?> getProductById(@PathVariable Long id) {
@@ -42,6 +117,22 @@ public class ProductController {
         }
     }
     
+    // Get product count and price range per category
+    @GetMapping("/categories")
+    public ResponseEntity<List<CategoryFacet>> getCategoryFacets() {
+        List<CategoryFacet> facets = productService.getCategoryFacets();
+        return new ResponseEntity<>(facets, HttpStatus.OK);
+    }
+    
+    // Get products of a category one keyset page at a time
+    @GetMapping(value = "/category/{category}", params = "size")
+    public ResponseEntity<ProductPage> getProductsByCategoryPage(@PathVariable String category,
+                                                                 @RequestParam(required = false) Long after,
+                                                                 @RequestParam int size) {
+        ProductPage page = productService.getProductsByCategoryPage(category, after, size);
+        return new ResponseEntity<>(page, HttpStatus.OK);
+    }
+    
     // Get products by category
     @GetMapping("/category/{category}")
     public ResponseEntity<List<Product>> getProductsByCategory(@PathVariable String category) {
@@ -51,8 +142,9 @@ public class ProductController {
     
     // Search products
     @GetMapping("/search")
-    public ResponseEntity<List<Product>> searchProducts(@RequestParam String name) {
-        List<Product> products = productService.searchProducts(name);
+    public ResponseEntity<List<Product>> searchProducts(@RequestParam String name,
+                                                        @RequestParam(defaultValue = "50") int limit) {
+        List<Product> products = productService.searchProducts(name, limit);
         return new ResponseEntity<>(products, HttpStatus.OK);
     }
     
@@ -84,6 +176,8 @@ public class ProductController {
         try {
             Product product = productService.updateStock(id, quantity);
             return new ResponseEntity<>(product, HttpStatus.OK);
+        } catch (InsufficientStockException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
         } catch (Exception e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
         }
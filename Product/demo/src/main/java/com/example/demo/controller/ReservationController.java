@@ -0,0 +1,92 @@
+package com.example.demo.controller;
+
+import com.example.demo.exception.InsufficientStockException;
+import com.example.demo.model.StockAvailability;
+import com.example.demo.model.StockReservation;
+import com.example.demo.service.ReservationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/products")
+public class ReservationController {
+    
+    @Autowired
+    private ReservationService reservationService;
+    
+    // Hold stock for a limited time
+    @PostMapping("/{id}/reservations")
+    public ResponseEntity<?> reserve(@PathVariable Long id,
+                                     @RequestParam Integer quantity,
+                                     @RequestParam(required = false) Long ttlSeconds) {
+        try {
+            StockReservation reservation = reservationService.reserve(id, quantity, ttlSeconds);
+            return new ResponseEntity<>(reservation, HttpStatus.CREATED);
+        } catch (InsufficientStockException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+        }
+    }
+    
+    // Get stock, held units and available-to-sell
+    @GetMapping("/{id}/availability")
+    public ResponseEntity<?> getAvailability(@PathVariable Long id) {
+        try {
+            StockAvailability availability = reservationService.getAvailability(id);
+            return new ResponseEntity<>(availability, HttpStatus.OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+        }
+    }
+    
+    // Get reservation counters
+    @GetMapping("/reservations/stats")
+    public ResponseEntity<Map<String, Object>> getReservationStats() {
+        return new ResponseEntity<>(reservationService.stats(), HttpStatus.OK);
+    }
+    
+    // Get reservation by ID
+    @GetMapping("/reservations/{reservationId}")
+    public ResponseEntity<?> getReservation(@PathVariable String reservationId) {
+        try {
+            StockReservation reservation = reservationService.getReservation(reservationId)
+                    .orElseThrow(() -> new RuntimeException("Reservation not found"));
+            return new ResponseEntity<>(reservation, HttpStatus.OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+        }
+    }
+    
+    // Confirm a reservation (decrements stock)
+    @PostMapping("/reservations/{reservationId}/confirm")
+    public ResponseEntity<?> confirm(@PathVariable String reservationId) {
+        try {
+            StockReservation reservation = reservationService.confirm(reservationId);
+            return new ResponseEntity<>(reservation, HttpStatus.OK);
+        } catch (InsufficientStockException | IllegalStateException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
+        } catch (Exception e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+        }
+    }
+    
+    // Release a reservation
+    @DeleteMapping("/reservations/{reservationId}")
+    public ResponseEntity<?> release(@PathVariable String reservationId) {
+        try {
+            StockReservation reservation = reservationService.release(reservationId);
+            return new ResponseEntity<>(reservation, HttpStatus.OK);
+        } catch (IllegalStateException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
+        } catch (Exception e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+        }
+    }
+}
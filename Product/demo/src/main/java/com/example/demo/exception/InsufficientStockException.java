@@ -0,0 +1,8 @@
+package com.example.demo.exception;
+
+public class InsufficientStockException extends RuntimeException {
+    
+    public InsufficientStockException(Long productId, long quantity) {
+        super("Insufficient stock for product " + productId + " to apply " + quantity);
+    }
+}
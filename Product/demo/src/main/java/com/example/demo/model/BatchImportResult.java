@@ -0,0 +1,109 @@
+package com.example.demo.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BatchImportResult {
+    
+    private long received;
+    
+    private long inserted;
+    
+    private long updated;
+    
+    private long failed;
+    
+    private long elapsedMillis;
+    
+    private boolean truncated; // the input broke off (malformed or cut short); nothing after that point was read
+    
+    private List<RowError> errors = new ArrayList<>(); // capped; "failed" holds the full count
+    
+    // Row-level failure, row numbers are 1-based in input order
+    public static class RowError {
+        
+        private long row;
+        
+        private Long id;
+        
+        private String message;
+        
+        public RowError() {
+        }
+        
+        public RowError(long row, Long id, String message) {
+            this.row = row;
+            this.id = id;
+            this.message = message;
+        }
+        
+        public long getRow() {
+            return row;
+        }
+        
+        public Long getId() {
+            return id;
+        }
+        
+        public String getMessage() {
+            return message;
+        }
+    }
+    
+    // Getters and Setters
+    public long getReceived() {
+        return received;
+    }
+    
+    public void setReceived(long received) {
+        this.received = received;
+    }
+    
+    public long getInserted() {
+        return inserted;
+    }
+    
+    public void setInserted(long inserted) {
+        this.inserted = inserted;
+    }
+    
+    public long getUpdated() {
+        return updated;
+    }
+    
+    public void setUpdated(long updated) {
+        this.updated = updated;
+    }
+    
+    public long getFailed() {
+        return failed;
+    }
+    
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+    
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+    
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+    
+    public boolean isTruncated() {
+        return truncated;
+    }
+    
+    public void setTruncated(boolean truncated) {
+        this.truncated = truncated;
+    }
+    
+    public List<RowError> getErrors() {
+        return errors;
+    }
+    
+    public void setErrors(List<RowError> errors) {
+        this.errors = errors;
+    }
+}
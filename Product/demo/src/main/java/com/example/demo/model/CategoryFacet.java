@@ -0,0 +1,56 @@
+package com.example.demo.model;
+
+public class CategoryFacet {
+    
+    private String category;
+    
+    private long count;
+    
+    private Double minPrice;
+    
+    private Double maxPrice;
+    
+    // Constructors
+    public CategoryFacet() {
+    }
+    
+    public CategoryFacet(String category, long count, Double minPrice, Double maxPrice) {
+        this.category = category;
+        this.count = count;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+    }
+    
+    // Getters and Setters
+    public String getCategory() {
+        return category;
+    }
+    
+    public void setCategory(String category) {
+        this.category = category;
+    }
+    
+    public long getCount() {
+        return count;
+    }
+    
+    public void setCount(long count) {
+        this.count = count;
+    }
+    
+    public Double getMinPrice() {
+        return minPrice;
+    }
+    
+    public void setMinPrice(Double minPrice) {
+        this.minPrice = minPrice;
+    }
+    
+    public Double getMaxPrice() {
+        return maxPrice;
+    }
+    
+    public void setMaxPrice(Double maxPrice) {
+        this.maxPrice = maxPrice;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.demo.model;
+
+public class StockAvailability {
+    
+    private Long productId;
+    
+    private long stock;
+    
+    private long reserved;
+    
+    private long available;
+    
+    // Constructors
+    public StockAvailability() {
+    }
+    
+    public StockAvailability(Long productId, long stock, long reserved) {
+        this.productId = productId;
+        this.stock = stock;
+        this.reserved = reserved;
+        this.available = stock - reserved;
+    }
+    
+    // Getters and Setters
+    public Long getProductId() {
+        return productId;
+    }
+    
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+    
+    public long getStock() {
+        return stock;
+    }
+    
+    public void setStock(long stock) {
+        this.stock = stock;
+    }
+    
+    public long getReserved() {
+        return reserved;
+    }
+    
+    public void setReserved(long reserved) {
+        this.reserved = reserved;
+    }
+    
+    public long getAvailable() {
+        return available;
+    }
+    
+    public void setAvailable(long available) {
+        this.available = available;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.demo.model;
+
+import java.time.Instant;
+
+public class StockReservation {
+    
+    private String id;
+    
+    private Long productId;
+    
+    private Integer quantity;
+    
+    private Instant expiresAt;
+    
+    private volatile String status; // ACTIVE, CONFIRMED, RELEASED, EXPIRED
+    
+    // Constructors
+    public StockReservation() {
+    }
+    
+    public StockReservation(String id, Long productId, Integer quantity, Instant expiresAt, String status) {
+        this.id = id;
+        this.productId = productId;
+        this.quantity = quantity;
+        this.expiresAt = expiresAt;
+        this.status = status;
+    }
+    
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+    
+    public void setId(String id) {
+        this.id = id;
+    }
+    
+    public Long getProductId() {
+        return productId;
+    }
+    
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+    
+    public Integer getQuantity() {
+        return quantity;
+    }
+    
+    public void setQuantity(Integer quantity) {
+        this.quantity = quantity;
+    }
+    
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+    
+    public void setExpiresAt(Instant expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+    
+    public String getStatus() {
+        return status;
+    }
+    
+    public void setStatus(String status) {
+        this.status = status;
+    }
+}
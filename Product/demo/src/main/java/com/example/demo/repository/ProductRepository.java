@@ -1,13 +1,61 @@
 package com.example.demo.repository;
 
+import com.example.demo.model.CategoryFacet;
 import com.example.demo.model.Product;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Long> {
     List<Product> findByCategory(String category);
+    List<Product> findByCategoryAndIdGreaterThanOrderByIdAsc(String category, Long afterId, Pageable pageable);
     List<Product> findByNameContainingIgnoreCase(String name);
+
+    // Keyset page: rows strictly after the cursor id, in id order
+    List<Product> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
+
+    // Forward-only cursor over the whole catalog, read in fetch-size chunks
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("select p from Product p order by p.id")
+    Stream<Product> streamAllByOrderByIdAsc();
+
+    // Per-category count and price range computed by the database
+    @Query("select new com.example.demo.model.CategoryFacet(p.category, count(p), min(p.price), max(p.price)) "
+            + "from Product p group by p.category order by p.category")
+    List<CategoryFacet> summarizeCategories();
+
+    // Single conditional update: applies the delta only if stock stays non-negative.
+    // Returns 0 when the product is missing or the delta would oversell.
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("update Product p set p.stock = p.stock + :delta where p.id = :id and p.stock + :delta >= 0")
+    int adjustStock(@Param("id") Long id, @Param("delta") int delta);
+
+    // Same as adjustStock, but stock may not fall below floor (units held by reservations)
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("update Product p set p.stock = p.stock + :delta where p.id = :id and p.stock + :delta >= :floor")
+    int adjustStockAbove(@Param("id") Long id, @Param("delta") int delta, @Param("floor") long floor);
+
+    // Applies the delta but never below zero; for sales that were already accepted
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("update Product p set p.stock = case when p.stock + :delta < 0 then 0 else p.stock + :delta end where p.id = :id")
+    int adjustStockClamped(@Param("id") Long id, @Param("delta") int delta);
 }
@@ -0,0 +1,129 @@
+package com.example.demo.service;
+
+import com.example.demo.model.CategoryFacet;
+import com.example.demo.model.Product;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Category -> product id sets with running counts and price ranges.
+// Each facet keeps its ids sorted (for keyset paging) and a price -> occurrences map so min/max
+// stay exact when a product is removed or repriced.
+@Component
+public class CategoryFacetIndex {
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, Entry> byProduct = new HashMap<>();
+    private final TreeMap<String, Facet> facets = new TreeMap<>();
+    private volatile boolean ready;
+
+    // Index or re-index a product; one without a category or price is only removed
+    public void add(Product product) {
+        if (product.getId() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            removeLocked(product.getId());
+            if (product.getCategory() == null || product.getPrice() == null) {
+                return;
+            }
+            Entry entry = new Entry(product.getCategory(), product.getPrice());
+            byProduct.put(product.getId(), entry);
+            facets.computeIfAbsent(entry.category, key -> new Facet()).add(product.getId(), entry.price);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Remove a product from its category
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Mark the initial load as finished; until then callers should fall back to the database
+    public void markReady() {
+        ready = true;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // Count and price range of every category, ordered by category name
+    public List<CategoryFacet> summaries() {
+        lock.readLock().lock();
+        try {
+            List<CategoryFacet> result = new ArrayList<>(facets.size());
+            facets.forEach((category, facet) -> result.add(new CategoryFacet(
+                    category, facet.ids.size(), facet.prices.firstKey(), facet.prices.lastKey())));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Up to limit product ids of a category, ascending, strictly after the given id
+    public List<Long> productIds(String category, long afterId, int limit) {
+        lock.readLock().lock();
+        try {
+            Facet facet = facets.get(category);
+            if (facet == null) {
+                return Collections.emptyList();
+            }
+            List<Long> ids = new ArrayList<>(Math.min(limit, facet.ids.size()));
+            for (Long id : facet.ids.tailSet(afterId, false)) {
+                if (ids.size() >= limit) {
+                    break;
+                }
+                ids.add(id);
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeLocked(Long productId) {
+        Entry entry = byProduct.remove(productId);
+        if (entry == null) {
+            return;
+        }
+        Facet facet = facets.get(entry.category);
+        facet.remove(productId, entry.price);
+        if (facet.ids.isEmpty()) {
+            facets.remove(entry.category);
+        }
+    }
+
+    private record Entry(String category, double price) {
+    }
+
+    private static final class Facet {
+        private final TreeSet<Long> ids = new TreeSet<>();
+        private final TreeMap<Double, Integer> prices = new TreeMap<>();
+
+        private void add(Long productId, double price) {
+            ids.add(productId);
+            prices.merge(price, 1, Integer::sum);
+        }
+
+        private void remove(Long productId, double price) {
+            ids.remove(productId);
+            prices.computeIfPresent(price, (key, count) -> count == 1 ? null : count - 1);
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.example.demo.service;
+
+import com.example.demo.exception.InsufficientStockException;
+import com.example.demo.model.Product;
+import com.example.demo.repository.ProductRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// In-memory stock counters for the hottest SKUs.
+// Available stock is checked and decremented in memory so a SKU can never be oversold by this
+// instance, while the deltas accumulate in striped cells and are written to the database in one
+// conditional update per SKU on every flush. A flush only holds the SKU's lock while it takes the
+// deltas out of the cells; the database write happens after, so a slow write never stalls sales.
+// Only SKUs listed in product.stock.hot-skus (or registered at runtime) use this path; every other
+// SKU goes straight to the database.
+@Component
+public class HotStockCounter {
+
+    private static final Logger log = LoggerFactory.getLogger(HotStockCounter.class);
+
+    // Cells are spaced apart so neighbouring stripes do not share a cache line
+    private static final int PADDING = 8;
+    private static final int STRIPES = Integer.highestOneBit(Runtime.getRuntime().availableProcessors()) * 2;
+
+    private final ConcurrentHashMap<Long, Slot> slots = new ConcurrentHashMap<>();
+    private final AtomicLong oversold = new AtomicLong();
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductCache productCache;
+
+    @Value("${product.stock.hot-skus:}")
+    private List<Long> hotSkus;
+
+    @PostConstruct
+    void registerConfiguredSkus() {
+        hotSkus.forEach(this::register);
+    }
+
+    // Switch a SKU to in-memory counting
+    public void register(Long productId) {
+        slots.computeIfAbsent(productId, id -> new Slot());
+    }
+
+    public boolean isHot(Long productId) {
+        return slots.containsKey(productId);
+    }
+
+    // Apply a delta in memory and return the resulting available stock
+    public long adjust(Long productId, int delta) {
+        return adjust(productId, delta, 0);
+    }
+
+    // Same, but a decrement may not take stock below floor
+    public long adjust(Long productId, int delta, long floor) {
+        Slot slot = slots.get(productId);
+        if (slot == null) {
+            throw new RuntimeException("Product not found");
+        }
+        while (true) {
+            // Shared with other adjustments; a flush or reload waits until the delta is in pending
+            slot.lock.readLock().lock();
+            try {
+                AtomicLong available = slot.available;
+                if (available != null) {
+                    long result;
+                    if (delta < 0) {
+                        long current;
+                        do {
+                            current = available.get();
+                            if (current + delta < Math.max(floor, 0)) {
+                                throw new InsufficientStockException(productId, delta);
+                            }
+                        } while (!available.compareAndSet(current, current + delta));
+                        result = current + delta;
+                    } else {
+                        result = available.addAndGet(delta);
+                    }
+                    slot.pending.addAndGet(stripe() * PADDING, delta);
+                    return result;
+                }
+            } finally {
+                slot.lock.readLock().unlock();
+            }
+            slot.load(productId);
+        }
+    }
+
+    // Current in-memory stock, or null if the SKU is not hot or not loaded yet
+    public Long currentStock(Long productId) {
+        Slot slot = slots.get(productId);
+        if (slot == null || slot.available == null) {
+            return null;
+        }
+        return slot.available.get();
+    }
+
+    // Write the accumulated deltas of one SKU and force a reload from the database on next use
+    public void reset(Long productId) {
+        Slot slot = slots.get(productId);
+        if (slot != null) {
+            slot.flushing.lock();
+            try {
+                long delta;
+                slot.lock.writeLock().lock();
+                try {
+                    delta = slot.takePending();
+                    slot.available = null;
+                } finally {
+                    slot.lock.writeLock().unlock();
+                }
+                write(productId, slot, delta);
+            } finally {
+                slot.flushing.unlock();
+            }
+        }
+    }
+
+    // Stop tracking a SKU, e.g. once the product is deleted
+    public void unregister(Long productId) {
+        slots.remove(productId);
+    }
+
+    // Write the accumulated deltas of every hot SKU; a SKU whose write fails keeps its delta for the
+    // next flush and does not stop the others
+    @Scheduled(fixedDelayString = "${product.stock.flush-interval-ms:200}")
+    @PreDestroy
+    public void flushAll() {
+        slots.forEach((productId, slot) -> {
+            try {
+                slot.flush(productId);
+            } catch (RuntimeException e) {
+                log.error("Stock flush for product {} failed; retrying on the next flush", productId, e);
+            }
+        });
+    }
+
+    // Number of units sold from memory that the database could not cover (see flush)
+    public long getOversold() {
+        return oversold.get();
+    }
+
+    // Write a delta taken out of the slot's cells; called holding the slot's flushing lock, so a
+    // reload cannot read the stored stock while part of it is still on its way
+    private void write(Long productId, Slot slot, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        try {
+            if (productRepository.adjustStock(productId, Math.toIntExact(delta)) == 0) {
+                // The stored stock was lowered underneath us; the sales were already accepted, so apply
+                // them down to zero and report the shortfall instead of dropping them
+                Integer stock = productRepository.findById(productId).map(Product::getStock).orElse(null);
+                if (stock == null) {
+                    log.error("Stock flush of {} for product {} lost: the product no longer exists", delta, productId);
+                } else {
+                    productRepository.adjustStockClamped(productId, Math.toIntExact(delta));
+                    long shortfall = -(stock + delta);
+                    oversold.addAndGet(Math.max(0, shortfall));
+                    log.error("Stock flush of {} for product {} exceeded stored stock {}; {} units oversold",
+                            delta, productId, stock, shortfall);
+                }
+                slot.available = null;
+            }
+        } catch (RuntimeException e) {
+            // Not written; keep the delta for the next flush
+            slot.pending.addAndGet(0, delta);
+            throw e;
+        } finally {
+            productCache.invalidate(productId);
+        }
+    }
+
+    private static int stripe() {
+        return (int) Thread.currentThread().threadId() & (STRIPES - 1);
+    }
+
+    private final class Slot {
+        private final AtomicLongArray pending = new AtomicLongArray(STRIPES * PADDING);
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final ReentrantLock flushing = new ReentrantLock(); // taken before lock, never inside it
+        private volatile AtomicLong available;
+
+        private void flush(Long productId) {
+            flushing.lock();
+            try {
+                long delta;
+                lock.writeLock().lock();
+                try {
+                    delta = takePending();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                write(productId, this, delta);
+            } finally {
+                flushing.unlock();
+            }
+        }
+
+        // Called with the write lock held, so no adjustment is between its CAS and its pending add
+        private long takePending() {
+            long delta = 0;
+            for (int i = 0; i < STRIPES; i++) {
+                delta += pending.getAndSet(i * PADDING, 0);
+            }
+            return delta;
+        }
+
+        // Load the stock from the database after writing what is pending, so the two agree. Sales of
+        // this SKU are waiting for the load anyway, so the write happens under the lock here.
+        private void load(Long productId) {
+            flushing.lock();
+            try {
+                lock.writeLock().lock();
+                try {
+                    if (available == null) {
+                        write(productId, this, takePending());
+                        Product product = productRepository.findById(productId)
+                                .orElseThrow(() -> new RuntimeException("Product not found"));
+                        available = new AtomicLong(product.getStock());
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            } finally {
+                flushing.unlock();
+            }
+        }
+    }
+}
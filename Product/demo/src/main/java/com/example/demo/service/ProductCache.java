@@ -0,0 +1,66 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Product;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+@Component
+public class ProductCache {
+    
+    private final Cache<Long, Product> cache;
+    
+    public ProductCache(@Value("${product.cache.max-size:10000}") long maxSize,
+                        @Value("${product.cache.ttl-seconds:300}") long ttlSeconds) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+    
+    // Read-through lookup; concurrent misses on the same id share a single loader call.
+    // Missing products are not cached so a later create is visible immediately.
+    public Optional<Product> get(Long id, Function<Long, Optional<Product>> loader) {
+        return Optional.ofNullable(cache.get(id, key -> loader.apply(key).orElse(null)));
+    }
+    
+    // Bulk read-through lookup; all misses are loaded with a single loader call
+    public Map<Long, Product> getAll(Collection<Long> ids, Function<Collection<Long>, Map<Long, Product>> loader) {
+        return cache.getAll(ids, missing -> loader.apply(new ArrayList<>(missing)));
+    }
+    
+    // Replace the cached copy after a write
+    public void put(Product product) {
+        cache.put(product.getId(), product);
+    }
+    
+    // Drop the cached copy
+    public void invalidate(Long id) {
+        cache.invalidate(id);
+    }
+    
+    // Hit/miss/eviction counters for sizing
+    public Map<String, Object> stats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", cache.estimatedSize());
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("loadCount", stats.loadCount());
+        result.put("evictionCount", stats.evictionCount());
+        result.put("averageLoadPenaltyNanos", stats.averageLoadPenalty());
+        return result;
+    }
+}
@@ -0,0 +1,382 @@
+package com.example.demo.service;
+
+import com.example.demo.model.BatchImportResult;
+import com.example.demo.model.Product;
+import com.example.demo.repository.ProductRepository;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+// Bulk upsert of products.
+// Rows are read from the request one at a time, grouped into chunks of product.batch.chunk-size
+// and written one chunk per transaction so Hibernate sends JDBC batches. A chunk that fails on
+// flush is replayed row by row so only the offending rows are reported. Input that breaks off
+// part way (a JSON syntax error or a cut-off body) ends the import with one terminal rejection; the
+// rows read before it are still written and the result is marked truncated.
+@Service
+public class ProductImportService {
+
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private ProductSearchIndex searchIndex;
+
+    @Autowired
+    private HotStockCounter hotStockCounter;
+
+    @Autowired
+    private CategoryFacetIndex facetIndex;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${product.batch.chunk-size:500}")
+    private int chunkSize;
+
+    // Import a JSON array, streamed element by element; elements that are not objects are rejected rows
+    public BatchImportResult importJson(InputStream in) throws IOException {
+        Importer importer = new Importer();
+        try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("Expected a JSON array of products");
+            }
+            JsonStreamContext array = parser.getParsingContext();
+            try {
+                JsonToken token;
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    if (token == null) {
+                        importer.truncate("Input ended before the closing ]");
+                        break;
+                    }
+                    if (token != JsonToken.START_OBJECT) {
+                        importer.reject(null, "Expected a product object, found " + parser.getText());
+                        parser.skipChildren();
+                        continue;
+                    }
+                    try {
+                        importer.accept(parser.readValueAs(Product.class));
+                    } catch (JsonParseException e) {
+                        throw e;
+                    } catch (JsonProcessingException e) {
+                        // Not a product; unless the rest of the object is malformed too, which ends the import
+                        skipTo(parser, array);
+                        importer.reject(null, "Malformed product: " + e.getOriginalMessage());
+                    }
+                }
+            } catch (JsonParseException e) {
+                importer.truncate("Malformed JSON at line " + e.getLocation().getLineNr()
+                        + ", column " + e.getLocation().getColumnNr() + ": " + e.getOriginalMessage());
+            } catch (IOException e) {
+                importer.truncate("Could not read the input: " + e.getMessage());
+            }
+        }
+        return importer.finish();
+    }
+
+    // Move past whatever is left of the current element, up to the next one in context
+    private static void skipTo(JsonParser parser, JsonStreamContext context) throws IOException {
+        while (parser.getParsingContext() != context) {
+            if (parser.nextToken() == null) {
+                return;
+            }
+        }
+    }
+
+    // Import newline-delimited JSON, one product per line
+    public BatchImportResult importNdjson(InputStream in) throws IOException {
+        Importer importer = new Importer();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    importer.accept(objectMapper.readValue(line, Product.class));
+                } catch (IOException e) {
+                    importer.reject(null, "Malformed product: " + e.getMessage());
+                }
+            }
+        }
+        return importer.finish();
+    }
+
+    // Import CSV with a header row naming the columns (id, name, category, price, stock)
+    public BatchImportResult importCsv(InputStream in) throws IOException {
+        Importer importer = new Importer();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String header = reader.readLine();
+            if (header == null) {
+                return importer.finish();
+            }
+            Map<String, Integer> columns = new HashMap<>();
+            List<String> names = parseCsvLine(header);
+            for (int i = 0; i < names.size(); i++) {
+                columns.put(names.get(i).trim().toLowerCase(), i);
+            }
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    importer.accept(fromCsv(parseCsvLine(line), columns));
+                } catch (RuntimeException e) {
+                    importer.reject(null, "Malformed row: " + e.getMessage());
+                }
+            }
+        }
+        return importer.finish();
+    }
+
+    // Import products already in memory
+    public BatchImportResult importProducts(List<Product> products) {
+        Importer importer = new Importer();
+        products.forEach(importer::accept);
+        return importer.finish();
+    }
+
+    private static String validate(Product product) {
+        if (product.getName() == null || product.getName().isBlank()) {
+            return "name is required";
+        }
+        if (product.getCategory() == null || product.getCategory().isBlank()) {
+            return "category is required";
+        }
+        if (product.getPrice() == null || product.getPrice() < 0) {
+            return "price must be zero or more";
+        }
+        if (product.getStock() == null || product.getStock() < 0) {
+            return "stock must be zero or more";
+        }
+        return null;
+    }
+
+    private static Product fromCsv(List<String> fields, Map<String, Integer> columns) {
+        Product product = new Product();
+        String id = field(fields, columns, "id");
+        if (id != null) {
+            product.setId(Long.valueOf(id));
+        }
+        product.setName(field(fields, columns, "name"));
+        product.setCategory(field(fields, columns, "category"));
+        String price = field(fields, columns, "price");
+        product.setPrice(price == null ? null : Double.valueOf(price));
+        String stock = field(fields, columns, "stock");
+        product.setStock(stock == null ? null : Integer.valueOf(stock));
+        return product;
+    }
+
+    private static String field(List<String> fields, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    // RFC 4180 style: comma separated, double-quoted fields may contain commas and "" escapes
+    private static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        fields.add(current.toString());
+        return fields;
+    }
+
+    // Collects rows into chunks and keeps the running result for one import
+    private class Importer {
+
+        private final long startNanos = System.nanoTime();
+        private final BatchImportResult result = new BatchImportResult();
+        private final List<Product> chunk = new ArrayList<>(chunkSize);
+        private final List<Long> chunkRows = new ArrayList<>(chunkSize);
+        private long row;
+
+        void accept(Product product) {
+            row++;
+            result.setReceived(row);
+            String error = validate(product);
+            if (error != null) {
+                fail(row, product.getId(), error);
+                return;
+            }
+            chunk.add(product);
+            chunkRows.add(row);
+            if (chunk.size() >= chunkSize) {
+                flushChunk();
+            }
+        }
+
+        void reject(Long id, String message) {
+            row++;
+            result.setReceived(row);
+            fail(row, id, message);
+        }
+
+        // The input broke off: report it as a final rejected row; what was read so far is still written
+        void truncate(String message) {
+            reject(null, message);
+            result.setTruncated(true);
+        }
+
+        BatchImportResult finish() {
+            flushChunk();
+            result.setElapsedMillis((System.nanoTime() - startNanos) / 1_000_000);
+            return result;
+        }
+
+        private void flushChunk() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            try {
+                afterCommit(transactionTemplate.execute(status -> writeChunk(chunk, chunkRows)));
+            } catch (RuntimeException chunkFailure) {
+                // Replay one row per transaction to isolate the failures
+                for (int i = 0; i < chunk.size(); i++) {
+                    Product product = chunk.get(i);
+                    long rowNumber = chunkRows.get(i);
+                    try {
+                        afterCommit(transactionTemplate.execute(
+                                status -> writeChunk(List.of(product), List.of(rowNumber))));
+                    } catch (RuntimeException rowFailure) {
+                        fail(rowNumber, product.getId(), rootMessage(rowFailure));
+                    }
+                }
+            } finally {
+                chunk.clear();
+                chunkRows.clear();
+            }
+        }
+
+        // Runs inside one transaction and leaves the input rows untouched so a failed chunk
+        // can be replayed; rows with an unknown id are reported and skipped
+        private ChunkOutcome writeChunk(List<Product> products, List<Long> rows) {
+            List<Long> ids = products.stream().map(Product::getId).filter(Objects::nonNull).toList();
+            Map<Long, Product> existing = new HashMap<>();
+            if (!ids.isEmpty()) {
+                productRepository.findAllById(ids).forEach(product -> existing.put(product.getId(), product));
+            }
+
+            ChunkOutcome outcome = new ChunkOutcome();
+            for (int i = 0; i < products.size(); i++) {
+                Product incoming = products.get(i);
+                if (incoming.getId() == null) {
+                    Product product = new Product(incoming.getName(), incoming.getCategory(),
+                            incoming.getPrice(), incoming.getStock());
+                    entityManager.persist(product);
+                    outcome.inserted.add(product);
+                    continue;
+                }
+                Product product = existing.get(incoming.getId());
+                if (product == null) {
+                    outcome.errors.add(new BatchImportResult.RowError(rows.get(i), incoming.getId(), "Product not found"));
+                    continue;
+                }
+                product.setName(incoming.getName());
+                product.setCategory(incoming.getCategory());
+                product.setPrice(incoming.getPrice());
+                product.setStock(incoming.getStock());
+                outcome.updated.add(product);
+            }
+            entityManager.flush();
+            entityManager.clear();
+            return outcome;
+        }
+
+        private void afterCommit(ChunkOutcome outcome) {
+            result.setInserted(result.getInserted() + outcome.inserted.size());
+            result.setUpdated(result.getUpdated() + outcome.updated.size());
+            outcome.errors.forEach(error -> fail(error.getRow(), error.getId(), error.getMessage()));
+
+            for (Product product : outcome.inserted) {
+                searchIndex.add(product);
+                facetIndex.add(product);
+            }
+            for (Product product : outcome.updated) {
+                if (hotStockCounter.isHot(product.getId())) {
+                    hotStockCounter.reset(product.getId());
+                }
+                productCache.invalidate(product.getId());
+                searchIndex.add(product);
+                facetIndex.add(product);
+            }
+        }
+
+        private void fail(long rowNumber, Long id, String message) {
+            result.setFailed(result.getFailed() + 1);
+            if (result.getErrors().size() < MAX_REPORTED_ERRORS) {
+                result.getErrors().add(new BatchImportResult.RowError(rowNumber, id, message));
+            }
+        }
+    }
+
+    private static final class ChunkOutcome {
+        private final List<Product> inserted = new ArrayList<>();
+        private final List<Product> updated = new ArrayList<>();
+        private final List<BatchImportResult.RowError> errors = new ArrayList<>();
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable root = e;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        return root.getMessage();
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.demo.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+// Builds the search and category indexes during startup, in a lifecycle phase that runs before the
+// web server starts its connectors (phase Integer.MAX_VALUE - 2048). No product can be created,
+// changed or deleted while the build streams the table, so the incremental updates that follow
+// start from the current rows.
+@Component
+public class ProductIndexLoader implements SmartLifecycle {
+
+    @Autowired
+    private ProductService productService;
+
+    private volatile boolean running;
+
+    @Override
+    public void start() {
+        productService.buildIndexes();
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+}
@@ -0,0 +1,265 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Product;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Trigram inverted index over product names.
+// Every indexed name gets a dense int ordinal; each trigram maps to a sorted int posting list
+// of ordinals. The one- and two-character substrings of names are posted as well, so queries
+// shorter than a trigram are answered from a single posting list instead of a scan of all names.
+// Updates append a new ordinal and tombstone the old one, and the whole index is compacted once
+// tombstones outnumber live entries.
+@Component
+public class ProductSearchIndex {
+
+    private static final int GRAM = 3;
+    private static final int MIN_COMPACT = 1024;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, IntList> postings = new HashMap<>();
+    private final Map<Long, Integer> ordinalByProduct = new HashMap<>();
+    private String[] names = new String[1024];
+    private long[] productIds = new long[1024];
+    private int nextOrdinal;
+    private int deadCount;
+    private volatile boolean ready;
+
+    // Index or re-index a product; one without a name is only removed
+    public void add(Product product) {
+        if (product.getId() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            removeLocked(product.getId());
+            if (product.getName() != null) {
+                insertLocked(product.getId(), normalize(product.getName()));
+            }
+            compactIfNeededLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Remove a product from the index
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(productId);
+            compactIfNeededLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Mark the initial load as finished; until then callers should fall back to the database
+    public void markReady() {
+        ready = true;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinalByProduct.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Product ids whose name contains the query, best match first:
+    // exact name, then name prefix, then word prefix, then any substring; shorter names win ties
+    public List<Long> search(String query, int limit) {
+        String q = normalize(query);
+        if (q.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        PriorityQueue<Hit> top = new PriorityQueue<>(limit + 1, Comparator.<Hit>naturalOrder().reversed());
+        lock.readLock().lock();
+        try {
+            IntList[] lists = postingsFor(q);
+            if (lists == null) {
+                return Collections.emptyList();
+            }
+            IntList smallest = lists[0];
+            for (int i = 0; i < smallest.size; i++) {
+                int ord = smallest.values[i];
+                if (containsAll(lists, ord)) {
+                    offer(top, limit, ord, q);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Hit> hits = new ArrayList<>(top);
+        Collections.sort(hits);
+        List<Long> ids = new ArrayList<>(hits.size());
+        for (Hit hit : hits) {
+            ids.add(hit.productId);
+        }
+        return ids;
+    }
+
+    // A query shorter than a trigram is itself a posted gram
+    private IntList[] postingsFor(String q) {
+        Set<String> grams = q.length() < GRAM ? Set.of(q) : grams(q, GRAM);
+        IntList[] lists = new IntList[grams.size()];
+        int i = 0;
+        for (String gram : grams) {
+            IntList list = postings.get(gram);
+            if (list == null) {
+                return null;
+            }
+            lists[i++] = list;
+        }
+        Arrays.sort(lists, Comparator.comparingInt(list -> list.size));
+        return lists;
+    }
+
+    private static boolean containsAll(IntList[] lists, int ord) {
+        for (int i = 1; i < lists.length; i++) {
+            if (Arrays.binarySearch(lists[i].values, 0, lists[i].size, ord) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void offer(PriorityQueue<Hit> top, int limit, int ord, String q) {
+        String name = names[ord];
+        if (name == null) {
+            return;
+        }
+        int pos = name.indexOf(q);
+        if (pos < 0) {
+            return;
+        }
+        int rank;
+        if (name.length() == q.length()) {
+            rank = 0;
+        } else if (pos == 0) {
+            rank = 1;
+        } else if (!Character.isLetterOrDigit(name.charAt(pos - 1))) {
+            rank = 2;
+        } else {
+            rank = 3;
+        }
+        if (top.size() == limit) {
+            Hit worst = top.peek();
+            if (worst.compareTo(rank, name.length(), productIds[ord]) <= 0) {
+                return;
+            }
+            top.poll();
+        }
+        top.offer(new Hit(productIds[ord], rank, name.length()));
+    }
+
+    private void insertLocked(long productId, String name) {
+        if (nextOrdinal == names.length) {
+            names = Arrays.copyOf(names, names.length * 2);
+            productIds = Arrays.copyOf(productIds, productIds.length * 2);
+        }
+        int ord = nextOrdinal++;
+        names[ord] = name;
+        productIds[ord] = productId;
+        ordinalByProduct.put(productId, ord);
+        for (int length = 1; length <= GRAM; length++) {
+            for (String gram : grams(name, length)) {
+                postings.computeIfAbsent(gram, key -> new IntList()).add(ord);
+            }
+        }
+    }
+
+    private void removeLocked(Long productId) {
+        Integer ord = ordinalByProduct.remove(productId);
+        if (ord != null) {
+            names[ord] = null;
+            deadCount++;
+        }
+    }
+
+    private void compactIfNeededLocked() {
+        if (deadCount > MIN_COMPACT && deadCount > ordinalByProduct.size()) {
+            compactLocked();
+        }
+    }
+
+    private void compactLocked() {
+        String[] oldNames = names;
+        long[] oldIds = productIds;
+        int oldCount = nextOrdinal;
+
+        postings.clear();
+        ordinalByProduct.clear();
+        names = new String[Math.max(1024, Integer.highestOneBit(Math.max(1, oldCount - deadCount)) * 2)];
+        productIds = new long[names.length];
+        nextOrdinal = 0;
+        deadCount = 0;
+        for (int ord = 0; ord < oldCount; ord++) {
+            if (oldNames[ord] != null) {
+                insertLocked(oldIds[ord], oldNames[ord]);
+            }
+        }
+    }
+
+    private static Set<String> grams(String text, int length) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + length <= text.length(); i++) {
+            grams.add(text.substring(i, i + length));
+        }
+        return grams;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // Growable sorted int array; ordinals are always appended in increasing order
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    private record Hit(long productId, int rank, int length) implements Comparable<Hit> {
+        @Override
+        public int compareTo(Hit other) {
+            return compareTo(other.rank, other.length, other.productId);
+        }
+
+        private int compareTo(int otherRank, int otherLength, long otherId) {
+            if (rank != otherRank) {
+                return Integer.compare(rank, otherRank);
+            }
+            if (length != otherLength) {
+                return Integer.compare(length, otherLength);
+            }
+            return Long.compare(productId, otherId);
+        }
+    }
+}
@@ -1,22 +1,81 @@
 package com.example.demo.service;
 
+import com.example.demo.exception.InsufficientStockException;
+import com.example.demo.model.CategoryFacet;
 import com.example.demo.model.Product;
+import com.example.demo.model.ProductPage;
 import com.example.demo.repository.ProductRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class ProductService {
     
+    private static final int ID_LOOKUP_CHUNK = 1000;
+    
     @Autowired
     private ProductRepository productRepository;
     
+    @Autowired
+    private ProductCache productCache;
+    
+    @Autowired
+    private ProductSearchIndex searchIndex;
+    
+    @Autowired
+    private HotStockCounter hotStockCounter;
+    
+    @Autowired
+    private CategoryFacetIndex facetIndex;
+    
+    @Autowired
+    private StockHolds holds;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Value("${product.page.max-size:500}")
+    private int maxPageSize;
+    
+    @Value("${product.search.max-results:100}")
+    private int maxSearchResults;
+    
+    // Build the in-memory indexes from the products table. Called by ProductIndexLoader before the
+    // web server accepts requests: a product written while the table is streamed could otherwise be
+    // overwritten in the indexes by its stale row, or come back after being deleted.
+    @Transactional(readOnly = true)
+    public void buildIndexes() {
+        try (Stream<Product> products = productRepository.streamAllByOrderByIdAsc()) {
+            products.forEach(product -> {
+                searchIndex.add(product);
+                facetIndex.add(product);
+                entityManager.detach(product);
+            });
+        }
+        searchIndex.markReady();
+        facetIndex.markReady();
+    }
+    
     // Create product
     public Product createProduct(Product product) {
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        searchIndex.add(saved);
+        facetIndex.add(saved);
+        return saved;
     }
     
     // Get all products
@@ -24,23 +83,76 @@ public class ProductService {
         return productRepository.findAll();
     }
     
-    // Get product by ID
+    // Get one keyset page of products ordered by id, starting after the given cursor
+    public ProductPage getProductsPage(Long afterId, int size) {
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+        long cursor = afterId == null ? 0L : afterId;
+        
+        List<Product> items = productRepository.findByIdGreaterThanOrderByIdAsc(cursor, PageRequest.of(0, pageSize));
+        Long nextCursor = items.size() < pageSize ? null : items.get(items.size() - 1).getId();
+        return new ProductPage(items, nextCursor);
+    }
+    
+    // Stream every product in id order; each row is detached once handed off so the
+    // persistence context never holds more than the current fetch batch
+    @Transactional(readOnly = true)
+    public void streamAllProducts(Consumer<Product> consumer) {
+        try (Stream<Product> products = productRepository.streamAllByOrderByIdAsc()) {
+            products.forEach(product -> {
+                consumer.accept(product);
+                entityManager.detach(product);
+            });
+        }
+    }
+    
+    // Get product by ID (read-through cache)
     public Optional<Product> getProductById(Long id) {
-        return productRepository.findById(id);
+        return productCache.get(id, productRepository::findById).map(this::withHotStock);
     }
     
     // Get products by category
     public List<Product> getProductsByCategory(String category) {
-        return productRepository.findByCategory(category);
+        if (!facetIndex.isReady()) {
+            return productRepository.findByCategory(category);
+        }
+        return findAllInOrder(facetIndex.productIds(category, 0L, Integer.MAX_VALUE));
     }
     
-    // Search products by name
-    public List<Product> searchProducts(String name) {
-        return productRepository.findByNameContainingIgnoreCase(name);
+    // Get one keyset page of a category, ordered by id
+    public ProductPage getProductsByCategoryPage(String category, Long afterId, int size) {
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+        long cursor = afterId == null ? 0L : afterId;
+        
+        List<Product> items = facetIndex.isReady()
+                ? findAllInOrder(facetIndex.productIds(category, cursor, pageSize))
+                : productRepository.findByCategoryAndIdGreaterThanOrderByIdAsc(category, cursor, PageRequest.of(0, pageSize));
+        Long nextCursor = items.size() < pageSize ? null : items.get(items.size() - 1).getId();
+        return new ProductPage(items, nextCursor);
+    }
+    
+    // Get product count and price range per category
+    public List<CategoryFacet> getCategoryFacets() {
+        if (!facetIndex.isReady()) {
+            return productRepository.summarizeCategories();
+        }
+        return facetIndex.summaries();
+    }
+    
+    // Search products by name (substring match, best matches first)
+    public List<Product> searchProducts(String name, int limit) {
+        int maxResults = Math.max(1, Math.min(limit, maxSearchResults));
+        if (!searchIndex.isReady()) {
+            return productRepository.findByNameContainingIgnoreCase(name).stream()
+                    .limit(maxResults)
+                    .toList();
+        }
+        
+        return findAllInOrder(searchIndex.search(name, maxResults));
     }
     
     // Update product
     public Product updateProduct(Long id, Product productDetails) {
+        hotStockCounter.reset(id);
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Product not found"));
         
@@ -49,20 +161,96 @@ public class ProductService {
         product.setPrice(productDetails.getPrice());
         product.setStock(productDetails.getStock());
         
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        productCache.put(saved);
+        searchIndex.add(saved);
+        facetIndex.add(saved);
+        hotStockCounter.reset(id);
+        return saved;
     }
     
     // Delete product
     public void deleteProduct(Long id) {
-        productRepository.deleteById(id);
+        try {
+            productRepository.deleteById(id);
+        } finally {
+            hotStockCounter.unregister(id);
+            productCache.invalidate(id);
+            searchIndex.remove(id);
+            facetIndex.remove(id);
+        }
     }
     
-    // Update stock
+    // Update stock by a delta without ever going negative or taking units held by reservations
     public Product updateStock(Long id, Integer quantity) {
-        Product product = productRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Product not found"));
+        return updateStock(id, quantity, 0);
+    }
+    
+    // Update stock by a delta; a decrement may take heldByCaller of the held units (those of the
+    // reservation being confirmed) but none held by any other reservation
+    public Product updateStock(Long id, Integer quantity, long heldByCaller) {
+        if (quantity >= 0) {
+            return adjustStock(id, quantity, 0);
+        }
+        return holds.locked(id, () -> adjustStock(id, quantity, holds.held(id) - heldByCaller));
+    }
+    
+    // Apply a stock delta unless the result would fall below floor
+    private Product adjustStock(Long id, int quantity, long floor) {
+        if (hotStockCounter.isHot(id)) {
+            hotStockCounter.adjust(id, quantity, floor);
+            return getProductById(id)
+                    .orElseThrow(() -> new RuntimeException("Product not found"));
+        }
         
-        product.setStock(product.getStock() + quantity);
-        return productRepository.save(product);
+        int updated = floor > 0
+                ? productRepository.adjustStockAbove(id, quantity, floor)
+                : productRepository.adjustStock(id, quantity);
+        if (updated == 0) {
+            if (!productRepository.existsById(id)) {
+                throw new RuntimeException("Product not found");
+            }
+            throw new InsufficientStockException(id, quantity);
+        }
+        Product saved = productRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Product not found"));
+        productCache.put(saved);
+        return saved;
+    }
+    
+    // Load products by primary key through the cache, keeping the order of the given ids
+    private List<Product> findAllInOrder(List<Long> ids) {
+        Map<Long, Product> byId = new HashMap<>(ids.size() * 2);
+        for (int from = 0; from < ids.size(); from += ID_LOOKUP_CHUNK) {
+            List<Long> chunk = ids.subList(from, Math.min(from + ID_LOOKUP_CHUNK, ids.size()));
+            byId.putAll(productCache.getAll(chunk, this::loadByIds));
+        }
+        return ids.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .map(this::withHotStock)
+                .toList();
+    }
+    
+    private Map<Long, Product> loadByIds(Collection<Long> ids) {
+        Map<Long, Product> loaded = new HashMap<>(ids.size() * 2);
+        productRepository.findAllById(ids).forEach(product -> loaded.put(product.getId(), product));
+        return loaded;
+    }
+    
+    // Overlay the in-memory stock of a hot SKU on a copy of the stored product
+    private Product withHotStock(Product product) {
+        Long stock = hotStockCounter.currentStock(product.getId());
+        if (stock == null) {
+            return product;
+        }
+        Product copy = new Product(product.getName(), product.getCategory(), product.getPrice(), stock.intValue());
+        copy.setId(product.getId());
+        return copy;
+    }
+    
+    // Product cache counters
+    public Map<String, Object> getCacheStats() {
+        return productCache.stats();
     }
 }
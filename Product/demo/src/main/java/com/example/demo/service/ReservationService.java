@@ -0,0 +1,202 @@
+package com.example.demo.service;
+
+import com.example.demo.exception.InsufficientStockException;
+import com.example.demo.model.Product;
+import com.example.demo.model.StockAvailability;
+import com.example.demo.model.StockReservation;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Time-limited stock holds.
+// Each product keeps a running total of held units in StockHolds, so available-to-sell is stock
+// minus that total with no scan; ProductService.updateStock refuses decrements that would dig into
+// it. Every hold is also queued in a DelayQueue keyed by its deadline; a single
+// expiry thread takes holds as they come due and releases the ones still active. Confirmed and
+// released holds are left in the queue and simply dropped when they come due.
+@Service
+public class ReservationService {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private StockHolds holds;
+
+    @Value("${product.reservation.default-ttl-seconds:600}")
+    private long defaultTtlSeconds;
+
+    @Value("${product.reservation.max-ttl-seconds:3600}")
+    private long maxTtlSeconds;
+
+    private final ConcurrentHashMap<String, StockReservation> reservations = new ConcurrentHashMap<>();
+    private final DelayQueue<Deadline> deadlines = new DelayQueue<>();
+
+    private final LongAdder created = new LongAdder();
+    private final LongAdder confirmed = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+
+    private Thread expiryThread;
+
+    @PostConstruct
+    void startExpiryThread() {
+        expiryThread = Thread.ofPlatform().name("reservation-expiry").daemon().start(this::expireLoop);
+    }
+
+    @PreDestroy
+    void stopExpiryThread() {
+        expiryThread.interrupt();
+    }
+
+    // Place a hold on stock that is released automatically after the TTL
+    public StockReservation reserve(Long productId, int quantity, Long ttlSeconds) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive");
+        }
+        long ttl = Math.min(ttlSeconds == null ? defaultTtlSeconds : ttlSeconds, maxTtlSeconds);
+        if (ttl <= 0) {
+            throw new IllegalArgumentException("TTL must be positive");
+        }
+
+        holds.locked(productId, () -> {
+            if (currentStock(productId) - holds.held(productId) < quantity) {
+                throw new InsufficientStockException(productId, -quantity);
+            }
+            holds.add(productId, quantity);
+            return null;
+        });
+
+        Instant expiresAt = Instant.now().plusSeconds(ttl);
+        StockReservation reservation = new StockReservation(
+                UUID.randomUUID().toString(), productId, quantity, expiresAt, "ACTIVE");
+        reservations.put(reservation.getId(), reservation);
+        deadlines.put(new Deadline(reservation.getId(), expiresAt.toEpochMilli()));
+        created.increment();
+        return reservation;
+    }
+
+    // Turn a hold into a real stock decrement
+    public StockReservation confirm(String reservationId) {
+        StockReservation reservation = getActive(reservationId);
+        synchronized (reservation) {
+            requireActive(reservation);
+            try {
+                // Stock goes down before the hold is dropped so the units are never counted as free;
+                // the decrement may take this hold's own units, but not those of any other hold
+                productService.updateStock(reservation.getProductId(), -reservation.getQuantity(), reservation.getQuantity());
+                reservation.setStatus("CONFIRMED");
+                confirmed.increment();
+            } catch (InsufficientStockException e) {
+                reservation.setStatus("RELEASED");
+                released.increment();
+                throw e;
+            } finally {
+                if (!"ACTIVE".equals(reservation.getStatus())) {
+                    unhold(reservation);
+                }
+            }
+        }
+        return reservation;
+    }
+
+    // Give the held units back without touching stock
+    public StockReservation release(String reservationId) {
+        StockReservation reservation = getActive(reservationId);
+        synchronized (reservation) {
+            requireActive(reservation);
+            reservation.setStatus("RELEASED");
+            unhold(reservation);
+            released.increment();
+        }
+        return reservation;
+    }
+
+    public Optional<StockReservation> getReservation(String reservationId) {
+        return Optional.ofNullable(reservations.get(reservationId));
+    }
+
+    // Stock, held units and available-to-sell for one product
+    public StockAvailability getAvailability(Long productId) {
+        return new StockAvailability(productId, currentStock(productId), holds.held(productId));
+    }
+
+    // Reservation counters
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("tracked", reservations.size());
+        result.put("pendingDeadlines", deadlines.size());
+        result.put("created", created.sum());
+        result.put("confirmed", confirmed.sum());
+        result.put("released", released.sum());
+        result.put("expired", expired.sum());
+        return result;
+    }
+
+    private long currentStock(Long productId) {
+        Product product = productService.getProductById(productId)
+                .orElseThrow(() -> new RuntimeException("Product not found"));
+        return product.getStock();
+    }
+
+    private StockReservation getActive(String reservationId) {
+        return getReservation(reservationId)
+                .orElseThrow(() -> new RuntimeException("Reservation not found"));
+    }
+
+    private static void requireActive(StockReservation reservation) {
+        if (!"ACTIVE".equals(reservation.getStatus())) {
+            throw new IllegalStateException("Reservation is " + reservation.getStatus());
+        }
+    }
+
+    private void unhold(StockReservation reservation) {
+        holds.add(reservation.getProductId(), -reservation.getQuantity());
+    }
+
+    private void expireLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Deadline deadline = deadlines.take();
+                StockReservation reservation = reservations.remove(deadline.reservationId);
+                if (reservation == null) {
+                    continue;
+                }
+                synchronized (reservation) {
+                    if ("ACTIVE".equals(reservation.getStatus())) {
+                        reservation.setStatus("EXPIRED");
+                        unhold(reservation);
+                        expired.increment();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private record Deadline(String reservationId, long dueAtMillis) implements Delayed {
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueAtMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueAtMillis, ((Deadline) other).dueAtMillis);
+        }
+    }
+}
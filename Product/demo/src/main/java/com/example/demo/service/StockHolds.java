@@ -0,0 +1,49 @@
+package com.example.demo.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// Units held by active reservations, per product, shared by ReservationService and every stock
+// decrement in ProductService. Placing a hold and taking stock both run under the product's lock
+// stripe, so a sale can never take units a hold has just counted as free, and a hold can never
+// count units a sale has just taken. Releasing a hold only frees units and needs no lock.
+@Component
+public class StockHolds {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final ConcurrentHashMap<Long, AtomicLong> heldByProduct = new ConcurrentHashMap<>();
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    // Units currently held for a product
+    public long held(Long productId) {
+        AtomicLong held = heldByProduct.get(productId);
+        return held == null ? 0 : held.get();
+    }
+
+    // Add (or with a negative delta, give back) held units
+    public void add(Long productId, long delta) {
+        heldByProduct.computeIfAbsent(productId, id -> new AtomicLong()).addAndGet(delta);
+    }
+
+    // Run a check-and-change of held units or stock for one product, excluding any other
+    public <T> T locked(Long productId, Supplier<T> action) {
+        ReentrantLock lock = locks[Math.floorMod(productId.hashCode(), LOCK_STRIPES)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.demo;
+
+import com.example.demo.model.CategoryFacet;
+import com.example.demo.model.Product;
+import com.example.demo.service.CategoryFacetIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CategoryFacetIndexTests {
+
+	private final CategoryFacetIndex index = new CategoryFacetIndex();
+
+	@Test
+	void repricingAndMovingKeepCountsAndRangesExact() {
+		index.add(product(1L, "Audio", 20.0));
+		index.add(product(2L, "Audio", 80.0));
+		index.add(product(3L, "Video", 50.0));
+
+		index.add(product(2L, "Audio", 30.0));
+		index.add(product(3L, "Audio", 5.0));
+
+		assertEquals(List.of("Audio 3 5.0-30.0"), describe(index.summaries()));
+		assertEquals(List.of(2L, 3L), index.productIds("Audio", 1L, 10));
+	}
+
+	@Test
+	void clearingCategoryOrPriceRemovesTheProduct() {
+		index.add(product(1L, "Audio", 20.0));
+		index.add(product(2L, "Audio", 80.0));
+		index.add(product(3L, "Video", 50.0));
+
+		index.add(product(2L, "Audio", null));
+		index.add(product(3L, null, 50.0));
+
+		assertEquals(List.of("Audio 1 20.0-20.0"), describe(index.summaries()));
+		assertTrue(index.productIds("Video", 0L, 10).isEmpty());
+	}
+
+	private static List<String> describe(List<CategoryFacet> facets) {
+		return facets.stream()
+				.map(f -> f.getCategory() + " " + f.getCount() + " " + f.getMinPrice() + "-" + f.getMaxPrice())
+				.toList();
+	}
+
+	private static Product product(Long id, String category, Double price) {
+		Product product = new Product("Item " + id, category, price, 1);
+		product.setId(id);
+		return product;
+	}
+
+}
@@ -0,0 +1,57 @@
+package com.example.demo;
+
+import com.example.demo.model.Product;
+import com.example.demo.service.ProductSearchIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductSearchIndexTests {
+
+	private final ProductSearchIndex index = new ProductSearchIndex();
+
+	@Test
+	void shortQueriesRankLikeLongOnes() {
+		index.add(product(1L, "Laptop Stand"));
+		index.add(product(2L, "La"));
+		index.add(product(3L, "Gaming Laptop"));
+		index.add(product(4L, "Flat Cable"));
+		index.add(product(5L, "Mouse"));
+
+		assertEquals(List.of(2L, 1L, 3L, 4L), index.search("la", 10));
+		assertEquals(List.of(2L, 1L, 3L, 4L), index.search("L", 10));
+		assertEquals(List.of(1L, 3L), index.search("lap", 10));
+		assertEquals(List.of(5L), index.search("u", 10));
+		assertEquals(List.of(2L, 4L), index.search("a", 2));
+		assertTrue(index.search("z", 10).isEmpty());
+	}
+
+	@Test
+	void shortQueriesFollowRenamesAndRemovals() {
+		index.add(product(1L, "Keyboard"));
+		index.add(product(2L, "Monitor"));
+		assertEquals(List.of(1L), index.search("ke", 10));
+
+		index.add(product(1L, "Webcam"));
+		index.remove(2L);
+
+		assertTrue(index.search("ke", 10).isEmpty());
+		assertTrue(index.search("mo", 10).isEmpty());
+		assertEquals(List.of(1L), index.search("w", 10));
+
+		index.add(product(1L, null));
+
+		assertTrue(index.search("webcam", 10).isEmpty());
+		assertEquals(0, index.size());
+	}
+
+	private static Product product(Long id, String name) {
+		Product product = new Product(name, "test", 10.0, 1);
+		product.setId(id);
+		return product;
+	}
+
+}
@@ -0,0 +1,230 @@
+package com.example.demo;
+
+import com.example.demo.exception.InsufficientStockException;
+import com.example.demo.model.Product;
+import com.example.demo.model.StockReservation;
+import com.example.demo.repository.ProductRepository;
+import com.example.demo.service.HotStockCounter;
+import com.example.demo.service.ProductService;
+import com.example.demo.service.ReservationService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+class ProductStockConcurrencyTests {
+
+	private static final int THREADS = 16;
+	private static final int UPDATES_PER_THREAD = 200;
+
+	@Autowired
+	private ProductService productService;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@Autowired
+	private HotStockCounter hotStockCounter;
+
+	@Autowired
+	private ReservationService reservationService;
+
+	@Test
+	void concurrentDeltasAreNeverLost() throws Exception {
+		Product product = productService.createProduct(new Product("Stress SKU", "test", 10.0, 100_000));
+		long applied = runConcurrently(product.getId(), -5, 5);
+
+		assertEquals(100_000 + applied, productRepository.findById(product.getId()).orElseThrow().getStock().longValue());
+	}
+
+	@Test
+	void concurrentDecrementsNeverOversell() throws Exception {
+		Product product = productService.createProduct(new Product("Flash sale SKU", "test", 10.0, 500));
+		AtomicInteger sold = new AtomicInteger();
+
+		runTasks(() -> {
+			for (int i = 0; i < UPDATES_PER_THREAD; i++) {
+				try {
+					productService.updateStock(product.getId(), -1);
+					sold.incrementAndGet();
+				} catch (InsufficientStockException e) {
+					// sold out
+				}
+			}
+			return 0L;
+		});
+
+		assertEquals(500, sold.get());
+		assertEquals(0L, productRepository.findById(product.getId()).orElseThrow().getStock().longValue());
+	}
+
+	@Test
+	void hotSkuDeltasAreFlushedExactly() throws Exception {
+		Product product = productService.createProduct(new Product("Hot SKU", "test", 10.0, 100_000));
+		hotStockCounter.register(product.getId());
+		long applied = runConcurrently(product.getId(), -5, 5);
+		hotStockCounter.flushAll();
+
+		assertEquals(100_000 + applied, productRepository.findById(product.getId()).orElseThrow().getStock().longValue());
+		assertEquals(100_000 + applied, productService.getProductById(product.getId()).orElseThrow().getStock().longValue());
+		hotStockCounter.unregister(product.getId());
+	}
+
+	@Test
+	void hotSkuNeverOversellsWhileFlushingAndReloading() throws Exception {
+		Product product = productService.createProduct(new Product("Hot flash sale SKU", "test", 10.0, 2_000));
+		hotStockCounter.register(product.getId());
+		AtomicInteger sold = new AtomicInteger();
+		AtomicBoolean selling = new AtomicBoolean(true);
+		Thread flusher = new Thread(() -> {
+			while (selling.get()) {
+				hotStockCounter.reset(product.getId());
+				hotStockCounter.flushAll();
+			}
+		});
+		flusher.start();
+
+		try {
+			runTasks(() -> {
+				for (int i = 0; i < UPDATES_PER_THREAD; i++) {
+					try {
+						productService.updateStock(product.getId(), -1);
+						sold.incrementAndGet();
+					} catch (InsufficientStockException e) {
+						// sold out
+					}
+				}
+				return 0L;
+			});
+		} finally {
+			selling.set(false);
+			flusher.join();
+		}
+		hotStockCounter.flushAll();
+
+		assertEquals(2_000, sold.get());
+		assertEquals(0L, productRepository.findById(product.getId()).orElseThrow().getStock().longValue());
+		hotStockCounter.unregister(product.getId());
+	}
+
+	@Test
+	void rejectedHotSkuFlushIsClampedNotDropped() {
+		Product product = productService.createProduct(new Product("Hot clamped SKU", "test", 10.0, 100));
+		hotStockCounter.register(product.getId());
+		productService.updateStock(product.getId(), -10);
+		// Stored stock lowered behind the counter's back: 100 -> 5, while 10 units were sold from memory
+		productRepository.adjustStock(product.getId(), -95);
+		long oversoldBefore = hotStockCounter.getOversold();
+
+		hotStockCounter.flushAll();
+
+		assertEquals(0L, productRepository.findById(product.getId()).orElseThrow().getStock().longValue());
+		assertEquals(5L, hotStockCounter.getOversold() - oversoldBefore);
+		assertEquals(0L, productService.getProductById(product.getId()).orElseThrow().getStock().longValue());
+		hotStockCounter.unregister(product.getId());
+	}
+
+	@Test
+	void directSalesCannotTakeHeldUnits() {
+		Product product = productService.createProduct(new Product("Held SKU", "test", 10.0, 10));
+		assertHoldsAreRespected(product.getId());
+	}
+
+	@Test
+	void hotSkuDirectSalesCannotTakeHeldUnits() {
+		Product product = productService.createProduct(new Product("Held hot SKU", "test", 10.0, 10));
+		hotStockCounter.register(product.getId());
+		assertHoldsAreRespected(product.getId());
+		hotStockCounter.flushAll();
+		assertEquals(0L, productRepository.findById(product.getId()).orElseThrow().getStock().longValue());
+		hotStockCounter.unregister(product.getId());
+	}
+
+	@Test
+	void concurrentHoldsAndSalesNeverFailAConfirm() throws Exception {
+		Product product = productService.createProduct(new Product("Checkout SKU", "test", 10.0, 1_000));
+		ConcurrentLinkedQueue<StockReservation> reservations = new ConcurrentLinkedQueue<>();
+		AtomicInteger sold = new AtomicInteger();
+
+		runTasks(() -> {
+			for (int i = 0; i < UPDATES_PER_THREAD; i++) {
+				try {
+					if (ThreadLocalRandom.current().nextBoolean()) {
+						reservations.add(reservationService.reserve(product.getId(), 1, 60L));
+					} else {
+						productService.updateStock(product.getId(), -1);
+						sold.incrementAndGet();
+					}
+				} catch (InsufficientStockException e) {
+					// sold out or fully held
+				}
+			}
+			return 0L;
+		});
+		for (StockReservation reservation : reservations) {
+			reservationService.confirm(reservation.getId());
+		}
+
+		assertEquals(1_000, sold.get() + reservations.size());
+		assertEquals(0L, productRepository.findById(product.getId()).orElseThrow().getStock().longValue());
+	}
+
+	// 10 in stock: a hold on 8 leaves 2 to sell directly, and the hold still confirms afterwards
+	private void assertHoldsAreRespected(Long productId) {
+		StockReservation reservation = reservationService.reserve(productId, 8, 60L);
+
+		assertThrows(InsufficientStockException.class, () -> productService.updateStock(productId, -3));
+		productService.updateStock(productId, -2);
+		assertThrows(InsufficientStockException.class, () -> productService.updateStock(productId, -1));
+		reservationService.confirm(reservation.getId());
+
+		assertEquals(0L, productService.getProductById(productId).orElseThrow().getStock().longValue());
+		assertEquals(0L, reservationService.getAvailability(productId).getReserved());
+	}
+
+	// Random deltas from many threads; returns the sum of the deltas that were accepted
+	private long runConcurrently(Long productId, int min, int max) throws Exception {
+		return runTasks(() -> {
+			long sum = 0;
+			for (int i = 0; i < UPDATES_PER_THREAD; i++) {
+				int delta = ThreadLocalRandom.current().nextInt(min, max + 1);
+				productService.updateStock(productId, delta);
+				sum += delta;
+			}
+			return sum;
+		});
+	}
+
+	private long runTasks(Callable<Long> task) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<Long>> futures = new ArrayList<>();
+			for (int i = 0; i < THREADS; i++) {
+				futures.add(executor.submit(task));
+			}
+			AtomicLong total = new AtomicLong();
+			for (Future<Long> future : futures) {
+				total.addAndGet(future.get());
+			}
+			return total.get();
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,145 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.UserApplication;
+import com.example.demo.model.User;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.service.PasswordHasher;
+import com.example.demo.service.TokenService;
+import com.example.demo.service.TokenVerifier;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+// Per-request cost of knowing who the caller is, against the user service on a random local port:
+// - verifyToken: checking the signed token locally, with the verified-token cache on and off
+// - lookupByEmail / fetchUser: what every request would pay without tokens, a database lookup by
+//   email or an HTTP round trip to the user service
+// - passwordCheck: one password verification per PBKDF2 iteration count, to size user.password.iterations
+// - login: the whole login request at the configured iteration count
+// Run with "-Djmh.include=AuthBenchmark".
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class AuthBenchmark {
+
+    private static final String EMAIL = "bench@example.com";
+    private static final String PASSWORD = "correct horse battery staple";
+
+    @State(Scope.Benchmark)
+    public static class Service {
+        ConfigurableApplicationContext context;
+        UserRepository userRepository;
+        TokenService tokenService;
+        ObjectMapper objectMapper;
+        HttpClient http;
+        HttpRequest loginRequest;
+        HttpRequest userRequest;
+        String token;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            String keyFile = Files.createTempDirectory("user-auth-bench").resolve("auth-key").toString();
+            context = new SpringApplicationBuilder(UserApplication.class)
+                    .properties("spring.jpa.show-sql=false", "logging.level.root=WARN")
+                    .run("--server.port=0", "--user.auth.key-file=" + keyFile);
+            userRepository = context.getBean(UserRepository.class);
+            tokenService = context.getBean(TokenService.class);
+            objectMapper = context.getBean(ObjectMapper.class);
+            User user = new User("Bench", EMAIL, context.getBean(PasswordHasher.class).hash(PASSWORD), "USER");
+            user = userRepository.save(user);
+            token = tokenService.issue(user).token();
+
+            String base = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            http = HttpClient.newHttpClient();
+            loginRequest = HttpRequest.newBuilder(URI.create(base + "/users/login"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(
+                            "{\"email\":\"" + EMAIL + "\",\"password\":\"" + PASSWORD + "\"}"))
+                    .build();
+            userRequest = HttpRequest.newBuilder(URI.create(base + "/users/" + user.getId())).GET().build();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            context.close();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Verifier {
+        @Param({"true", "false"})
+        public boolean cached;
+
+        TokenVerifier verifier;
+
+        @Setup(Level.Trial)
+        public void setUp(Service service) {
+            verifier = new TokenVerifier(service.tokenService, service.objectMapper, cached ? 10000 : 0, 30);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Hasher {
+        @Param({"100000", "210000", "600000"})
+        public int iterations;
+
+        PasswordHasher hasher;
+        String stored;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            hasher = new PasswordHasher(iterations, 128);
+            stored = hasher.hash(PASSWORD);
+        }
+    }
+
+    @Benchmark
+    public TokenVerifier.Claims verifyToken(Service service, Verifier verifier) {
+        return verifier.verifier.verify(service.token);
+    }
+
+    @Benchmark
+    public Optional<User> lookupByEmail(Service service) {
+        return service.userRepository.findByEmail(EMAIL);
+    }
+
+    @Benchmark
+    public int fetchUser(Service service) throws Exception {
+        return service.http.send(service.userRequest, HttpResponse.BodyHandlers.ofString()).statusCode();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public boolean passwordCheck(Hasher hasher) {
+        return hasher.hasher.matches(PASSWORD, hasher.stored);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int login(Service service) throws Exception {
+        return service.http.send(service.loginRequest, HttpResponse.BodyHandlers.ofString()).statusCode();
+    }
+}
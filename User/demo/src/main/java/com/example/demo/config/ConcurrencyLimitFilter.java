@@ -0,0 +1,134 @@
+package com.example.demo.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Caps in-flight requests near the JDBC connection pool size.
+// With virtual threads there is no worker pool bounding concurrency, so without a cap every request
+// beyond the pool size parks inside Hikari until it times out. The limit starts at the pool size and
+// moves between pool size and pool size * max-multiplier: it shrinks while threads are queueing for
+// connections and grows while requests are being turned away and the pool still has idle connections.
+@Component
+@ConditionalOnProperty(name = "concurrency.limit.enabled", havingValue = "true")
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Value("${concurrency.limit.max-multiplier:4}")
+    private int maxMultiplier;
+
+    @Value("${concurrency.limit.queue-timeout-ms:500}")
+    private long queueTimeoutMs;
+
+    @Value("${concurrency.limit.adjust-interval-ms:250}")
+    private long adjustIntervalMs;
+
+    private HikariDataSource hikari;
+    private ResizableSemaphore permits;
+    private int minLimit;
+    private int maxLimit;
+    private volatile int limit;
+
+    private final AtomicLong lastAdjust = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private long rejectedAtLastAdjust;
+
+    @PostConstruct
+    void init() throws SQLException {
+        hikari = dataSource.isWrapperFor(HikariDataSource.class) ? dataSource.unwrap(HikariDataSource.class) : null;
+        minLimit = hikari != null ? hikari.getMaximumPoolSize() : 10;
+        maxLimit = minLimit * Math.max(1, maxMultiplier);
+        limit = minLimit;
+        permits = new ResizableSemaphore(minLimit);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(queueTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejected.incrementAndGet();
+            response.setHeader("Retry-After", "1");
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Server busy");
+            adjust();
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            permits.release();
+            adjust();
+        }
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    private void adjust() {
+        long now = System.currentTimeMillis();
+        long last = lastAdjust.get();
+        if (now - last < adjustIntervalMs || !lastAdjust.compareAndSet(last, now)) {
+            return;
+        }
+        HikariPoolMXBean pool = hikari == null ? null : hikari.getHikariPoolMXBean();
+        if (pool == null) {
+            return;
+        }
+        synchronized (this) {
+            long rejectedNow = rejected.get();
+            boolean turnedAway = rejectedNow > rejectedAtLastAdjust;
+            rejectedAtLastAdjust = rejectedNow;
+
+            if (pool.getThreadsAwaitingConnection() > 0 && limit > minLimit) {
+                int reduced = Math.max(minLimit, (int) (limit * 0.9));
+                permits.reducePermits(limit - reduced);
+                limit = reduced;
+            } else if (turnedAway && pool.getIdleConnections() > 0 && limit < maxLimit) {
+                limit++;
+                permits.release();
+            }
+        }
+    }
+
+    // Semaphore whose permit count can be lowered without waiting for holders to return them
+    private static final class ResizableSemaphore extends Semaphore {
+        private ResizableSemaphore(int permits) {
+            super(permits, true);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+}
@@ -1,8 +1,12 @@
 package com.example.demo.controller;
 
+import com.example.demo.exception.VersionConflictException;
+import com.example.demo.model.LoginResponse;
 import com.example.demo.model.User;
+import com.example.demo.service.TokenService;
 import com.example.demo.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -17,6 +21,9 @@ public class UserController {
     @Autowired
     private UserService userService;
     
+    @Autowired
+    private TokenService tokenService;
+    
     // Register endpoint
     @PostMapping("/register")
     public ResponseEntity<?> register(@RequestBody User user) {
@@ -28,20 +35,26 @@ public class UserController {
         }
     }
     
-    // Login endpoint
+    // Login endpoint; returns a bearer token the other services verify on their own
     @PostMapping("/login")
     public ResponseEntity<?> login(@RequestBody Map<String, String> loginData) {
         try {
-            User user = userService.loginUser(
+            LoginResponse response = userService.loginUser(
                 loginData.get("email"), 
                 loginData.get("password")
             );
-            return new ResponseEntity<>(user, HttpStatus.OK);
+            return new ResponseEntity<>(response, HttpStatus.OK);
         } catch (Exception e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.UNAUTHORIZED);
         }
     }
     
+    // Public key and key id for verifying tokens
+    @GetMapping("/auth/public-key")
+    public ResponseEntity<Map<String, Object>> getPublicKey() {
+        return new ResponseEntity<>(tokenService.publicKeyInfo(), HttpStatus.OK);
+    }
+    
     // Get all users
     @GetMapping
     public ResponseEntity<List<User>> getAllUsers() {
@@ -49,24 +62,29 @@ public class UserController {
         return new ResponseEntity<>(users, HttpStatus.OK);
     }
     
-    // Get user by ID
+    // Get user by ID; the ETag is the version to send back as If-Match
     @GetMapping("/{id}")
     public ResponseEntity<?> getUserById(@PathVariable Long id) {
         try {
             User user = userService.getUserById(id)
                     .orElseThrow(() -> new RuntimeException("User not found"));
-            return new ResponseEntity<>(user, HttpStatus.OK);
+            return new ResponseEntity<>(user, ETags.headers(user.getVersion()), HttpStatus.OK);
         } catch (Exception e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
         }
     }
     
-    // Update user
+    // Update user; with If-Match it only applies to that version (412 otherwise)
     @PutMapping("/{id}")
-    public ResponseEntity<?> updateUser(@PathVariable Long id, @RequestBody User user) {
+    public ResponseEntity<?> updateUser(@PathVariable Long id, @RequestBody User user,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
-            User updatedUser = userService.updateUser(id, user);
-            return new ResponseEntity<>(updatedUser, HttpStatus.OK);
+            User updatedUser = userService.updateUser(id, user, ETags.parseIfMatch(ifMatch));
+            return new ResponseEntity<>(updatedUser, ETags.headers(updatedUser.getVersion()), HttpStatus.OK);
+        } catch (VersionConflictException e) {
+            return new ResponseEntity<>(e.getMessage(), ETags.headers(e.getCurrentVersion()), e.getStatus());
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
         }
@@ -0,0 +1,58 @@
+package com.example.demo.model;
+
+import java.time.Instant;
+
+public class LoginResponse {
+    
+    private String token; // send as "Authorization: Bearer <token>"
+    
+    private String tokenType;
+    
+    private Instant expiresAt;
+    
+    private User user;
+    
+    // Constructors
+    public LoginResponse() {
+    }
+    
+    public LoginResponse(String token, Instant expiresAt, User user) {
+        this.token = token;
+        this.tokenType = "Bearer";
+        this.expiresAt = expiresAt;
+        this.user = user;
+    }
+    
+    // Getters and Setters
+    public String getToken() {
+        return token;
+    }
+    
+    public void setToken(String token) {
+        this.token = token;
+    }
+    
+    public String getTokenType() {
+        return tokenType;
+    }
+    
+    public void setTokenType(String tokenType) {
+        this.tokenType = tokenType;
+    }
+    
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+    
+    public void setExpiresAt(Instant expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+    
+    public User getUser() {
+        return user;
+    }
+    
+    public void setUser(User user) {
+        this.user = user;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.demo.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 
 @Entity
@@ -16,12 +17,16 @@ public class User {
     @Column(nullable = false, unique = true)
     private String email;
     
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     @Column(nullable = false)
-    private String password;
+    private String password; // PBKDF2 hash, see PasswordHasher; never serialized
     
     @Column(nullable = false)
     private String role;
     
+    @Version
+    private Long version; // bumped on every update; exposed as the ETag
+    
     // Constructors
     public User() {
     }
@@ -73,4 +78,12 @@ public class User {
     public void setRole(String role) {
         this.role = role;
     }
+    
+    public Long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
@@ -0,0 +1,87 @@
+package com.example.demo.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+// Password hashing with PBKDF2-HMAC-SHA256.
+// Hashes are stored as "pbkdf2-sha256$iterations$salt$hash", so the iteration count can be raised later
+// and older hashes still verify (and are flagged for rehashing). Every check costs one derivation of a
+// fixed iteration count on a password of at most max-length characters, so verification takes a
+// bounded, predictable time, and the same when the account does not exist. Stored values without the
+// prefix are plaintext from before hashing; they are compared in constant time and rehashed at login.
+@Component
+public class PasswordHasher {
+
+    private static final String PREFIX = "pbkdf2-sha256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private final SecureRandom random = new SecureRandom();
+    private final int iterations;
+    private final int maxLength;
+    private final String dummyHash;
+
+    public PasswordHasher(@Value("${user.password.iterations:210000}") int iterations,
+                          @Value("${user.password.max-length:128}") int maxLength) {
+        this.iterations = iterations;
+        this.maxLength = maxLength;
+        this.dummyHash = hash("not-a-password");
+    }
+
+    // Hash a new password; rejects passwords that are missing or longer than max-length
+    public String hash(String password) {
+        if (password == null || password.isEmpty()) {
+            throw new IllegalArgumentException("Password is required");
+        }
+        if (password.length() > maxLength) {
+            throw new IllegalArgumentException("Password must be at most " + maxLength + " characters");
+        }
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + "$" + iterations + "$" + base64.encodeToString(salt) + "$"
+                + base64.encodeToString(derive(password, salt, iterations));
+    }
+
+    // True when password matches the stored hash; a null stored value (unknown account) still costs a full check
+    public boolean matches(String password, String stored) {
+        if (password == null || password.length() > maxLength) {
+            return false;
+        }
+        if (stored == null) {
+            matches(password, dummyHash);
+            return false;
+        }
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4 || !PREFIX.equals(parts[0])) {
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+        }
+        Base64.Decoder base64 = Base64.getDecoder();
+        byte[] expected = base64.decode(parts[3]);
+        return MessageDigest.isEqual(expected, derive(password, base64.decode(parts[2]), Integer.parseInt(parts[1])));
+    }
+
+    // True for plaintext and for hashes made with another iteration count
+    public boolean needsRehash(String stored) {
+        return stored == null || !stored.startsWith(PREFIX + "$" + iterations + "$");
+    }
+
+    private static byte[] derive(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2WithHmacSHA256 is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.demo.service;
+
+import com.example.demo.model.User;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Issues the bearer tokens returned by login.
+// A token is a compact JWS: base64url(header).base64url(claims).base64url(signature), signed with
+// Ed25519 (alg EdDSA). The claims are the user id (sub), email, role, issue and expiry times, so a
+// service holding the public key can check a token and know the caller without asking this service
+// or the database. The key pair is created on first start and kept in key-file; its public half is
+// served at /users/auth/public-key, identified by a key id (kid) that is also in every token header.
+@Service
+public class TokenService {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenService.class);
+
+    public static final String ISSUER = "user-service";
+
+    private static final Base64.Encoder BASE64URL = Base64.getUrlEncoder().withoutPadding();
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${user.auth.key-file:data/auth-key}")
+    private String keyFile;
+
+    @Value("${user.auth.token-ttl-seconds:3600}")
+    private long ttlSeconds;
+
+    private PrivateKey privateKey;
+    private PublicKey publicKey;
+    private String keyId;
+    private String encodedHeader;
+
+    // Signature objects are not thread-safe; one per thread avoids a provider lookup per token
+    private final ThreadLocal<Signature> signers = ThreadLocal.withInitial(() -> {
+        try {
+            Signature signer = Signature.getInstance("Ed25519");
+            signer.initSign(privateKey);
+            return signer;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Ed25519 is not available", e);
+        }
+    });
+
+    // A signed token and when it stops being accepted
+    public record IssuedToken(String token, Instant expiresAt) {
+    }
+
+    @PostConstruct
+    void loadKeys() throws IOException, GeneralSecurityException {
+        Path path = Paths.get(keyFile);
+        KeyFactory keyFactory = KeyFactory.getInstance("Ed25519");
+        if (Files.exists(path)) {
+            List<String> lines = Files.readAllLines(path, StandardCharsets.US_ASCII);
+            privateKey = keyFactory.generatePrivate(new PKCS8EncodedKeySpec(Base64.getDecoder().decode(lines.get(0))));
+            publicKey = keyFactory.generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(lines.get(1))));
+        } else {
+            KeyPair pair = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+            privateKey = pair.getPrivate();
+            publicKey = pair.getPublic();
+            writeKeys(path);
+            log.info("Created token signing key in {}", path);
+        }
+        keyId = keyIdOf(publicKey);
+        Map<String, Object> header = new LinkedHashMap<>();
+        header.put("alg", "EdDSA");
+        header.put("typ", "JWT");
+        header.put("kid", keyId);
+        encodedHeader = BASE64URL.encodeToString(objectMapper.writeValueAsBytes(header));
+    }
+
+    // Sign a token for the user, valid for token-ttl-seconds
+    public IssuedToken issue(User user) {
+        Instant now = Instant.now();
+        Instant expiresAt = now.plusSeconds(ttlSeconds);
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put("iss", ISSUER);
+        claims.put("sub", String.valueOf(user.getId()));
+        claims.put("email", user.getEmail());
+        claims.put("role", user.getRole());
+        claims.put("iat", now.getEpochSecond());
+        claims.put("exp", expiresAt.getEpochSecond());
+        try {
+            String signingInput = encodedHeader + "." + BASE64URL.encodeToString(objectMapper.writeValueAsBytes(claims));
+            Signature signer = signers.get();
+            signer.update(signingInput.getBytes(StandardCharsets.US_ASCII));
+            return new IssuedToken(signingInput + "." + BASE64URL.encodeToString(signer.sign()), expiresAt);
+        } catch (JsonProcessingException | GeneralSecurityException e) {
+            throw new IllegalStateException("Could not sign token", e);
+        }
+    }
+
+    public PublicKey getPublicKey() {
+        return publicKey;
+    }
+
+    public String getKeyId() {
+        return keyId;
+    }
+
+    // What the other services need to verify tokens: the key id and the X.509-encoded public key
+    public Map<String, Object> publicKeyInfo() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("kid", keyId);
+        result.put("alg", "EdDSA");
+        result.put("crv", "Ed25519");
+        result.put("key", Base64.getEncoder().encodeToString(publicKey.getEncoded()));
+        return result;
+    }
+
+    // First 12 characters of the base64url SHA-256 of the encoded public key
+    public static String keyIdOf(PublicKey key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getEncoded());
+            return BASE64URL.encodeToString(Arrays.copyOf(digest, 9));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Written to a temp file first and readable by the owner only where the file system allows it
+    private void writeKeys(Path path) throws IOException {
+        if (path.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.writeString(temp, Base64.getEncoder().encodeToString(privateKey.getEncoded()) + "\n"
+                + Base64.getEncoder().encodeToString(publicKey.getEncoded()) + "\n", StandardCharsets.US_ASCII);
+        try {
+            Files.setPosixFilePermissions(temp, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException e) {
+            // not a POSIX file system
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.demo.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+// Checks the bearer tokens issued by TokenService, the same way the other services do but with the
+// key taken straight from TokenService. A token is accepted when its Ed25519 signature matches and it
+// has not expired. Verified tokens are cached until they expire, so a client repeating its token
+// costs a map lookup.
+@Component
+public class TokenVerifier {
+
+    private final TokenService tokenService;
+    private final ObjectMapper objectMapper;
+    private final long clockSkewSeconds;
+    private final Cache<String, Claims> verified;
+
+    // Signature objects are not thread-safe; one per thread avoids a provider lookup per token
+    private final ThreadLocal<Signature> verifiers = ThreadLocal.withInitial(() -> {
+        try {
+            return Signature.getInstance("Ed25519");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Ed25519 is not available", e);
+        }
+    });
+
+    // Who a verified token belongs to
+    public record Claims(Long userId, String email, String role, Instant expiresAt) {
+    }
+
+    public TokenVerifier(TokenService tokenService, ObjectMapper objectMapper,
+                         @Value("${auth.cache-size:10000}") long cacheSize,
+                         @Value("${auth.clock-skew-seconds:30}") long clockSkewSeconds) {
+        this.tokenService = tokenService;
+        this.objectMapper = objectMapper;
+        this.clockSkewSeconds = clockSkewSeconds;
+        this.verified = cacheSize <= 0 ? null : Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String token, Claims claims, long currentTime) {
+                        long seconds = claims.expiresAt().getEpochSecond() + clockSkewSeconds - Instant.now().getEpochSecond();
+                        return TimeUnit.SECONDS.toNanos(Math.max(0, seconds));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String token, Claims claims, long currentTime, long currentDuration) {
+                        return expireAfterCreate(token, claims, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String token, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    // The claims of a valid token. IllegalArgumentException when the token is malformed, forged or expired.
+    public Claims verify(String token) {
+        Claims claims = verified == null ? null : verified.getIfPresent(token);
+        if (claims == null) {
+            claims = verifySignature(token);
+            if (verified != null) {
+                verified.put(token, claims);
+            }
+        }
+        if (Instant.now().getEpochSecond() > claims.expiresAt().getEpochSecond() + clockSkewSeconds) {
+            throw new IllegalArgumentException("Token expired");
+        }
+        return claims;
+    }
+
+    private Claims verifySignature(String token) {
+        int first = token.indexOf('.');
+        int second = token.indexOf('.', first + 1);
+        if (first <= 0 || second <= first + 1 || second == token.length() - 1 || token.indexOf('.', second + 1) >= 0) {
+            throw new IllegalArgumentException("Malformed token");
+        }
+        try {
+            JsonNode header = objectMapper.readTree(decode(token.substring(0, first)));
+            if (!"EdDSA".equals(header.path("alg").asText())) {
+                throw new IllegalArgumentException("Unsupported token algorithm");
+            }
+            if (!tokenService.getKeyId().equals(header.path("kid").asText())) {
+                throw new IllegalArgumentException("Unknown signing key");
+            }
+            PublicKey key = tokenService.getPublicKey();
+            Signature verifier = verifiers.get();
+            verifier.initVerify(key);
+            verifier.update(token.substring(0, second).getBytes(StandardCharsets.US_ASCII));
+            if (!verifier.verify(decode(token.substring(second + 1)))) {
+                throw new IllegalArgumentException("Invalid token signature");
+            }
+            JsonNode payload = objectMapper.readTree(decode(token.substring(first + 1, second)));
+            if (!TokenService.ISSUER.equals(payload.path("iss").asText()) || !payload.path("exp").canConvertToLong()) {
+                throw new IllegalArgumentException("Invalid token claims");
+            }
+            if (payload.path("iat").asLong(0) > Instant.now().getEpochSecond() + clockSkewSeconds) {
+                throw new IllegalArgumentException("Token issued in the future");
+            }
+            return new Claims(Long.valueOf(payload.path("sub").asText()),
+                    payload.path("email").asText(null),
+                    payload.path("role").asText(null),
+                    Instant.ofEpochSecond(payload.path("exp").asLong()));
+        } catch (IOException | GeneralSecurityException e) {
+            throw new IllegalArgumentException("Malformed token", e);
+        }
+    }
+
+    private static byte[] decode(String part) {
+        try {
+            return Base64.getUrlDecoder().decode(part);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed token", e);
+        }
+    }
+}
@@ -1,8 +1,12 @@
 package com.example.demo.service;
 
+import com.example.demo.exception.VersionConflictException;
+import com.example.demo.model.LoginResponse;
 import com.example.demo.model.User;
 import com.example.demo.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -14,21 +18,39 @@ public class UserService {
     @Autowired
     private UserRepository userRepository;
     
-    // Register new user
+    @Autowired
+    private PasswordHasher passwordHasher;
+    
+    @Autowired
+    private TokenService tokenService;
+    
+    // Register new user; only the password hash is stored
     public User registerUser(User user) {
         if (userRepository.existsByEmail(user.getEmail())) {
             throw new RuntimeException("Email already exists");
         }
+        user.setPassword(passwordHasher.hash(user.getPassword()));
         return userRepository.save(user);
     }
     
-    // Login user
-    public User loginUser(String email, String password) {
-        Optional<User> user = userRepository.findByEmail(email);
-        if (user.isPresent() && user.get().getPassword().equals(password)) {
-            return user.get();
+    // Login user and issue a signed token. An unknown email costs the same hash check as a wrong
+    // password; a plaintext or outdated hash is replaced once the password is known to be right.
+    public LoginResponse loginUser(String email, String password) {
+        Optional<User> user = email == null ? Optional.empty() : userRepository.findByEmail(email);
+        if (!passwordHasher.matches(password, user.map(User::getPassword).orElse(null))) {
+            throw new RuntimeException("Invalid credentials");
+        }
+        User loggedIn = user.get();
+        if (passwordHasher.needsRehash(loggedIn.getPassword())) {
+            loggedIn.setPassword(passwordHasher.hash(password));
+            try {
+                loggedIn = userRepository.save(loggedIn);
+            } catch (OptimisticLockingFailureException e) {
+                // Changed concurrently; the next login rehashes
+            }
         }
-        throw new RuntimeException("Invalid credentials");
+        TokenService.IssuedToken token = tokenService.issue(loggedIn);
+        return new LoginResponse(token.token(), token.expiresAt(), loggedIn);
     }
     
     // Get all users
@@ -43,15 +65,33 @@ public class UserService {
     
     // Update user
     public User updateUser(Long id, User userDetails) {
+        return updateUser(id, userDetails, null);
+    }
+    
+    // Update user only if it is still at expectedVersion (null to skip the check)
+    public User updateUser(Long id, User userDetails, Long expectedVersion) {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("User not found"));
+        if (expectedVersion != null && !expectedVersion.equals(user.getVersion())) {
+            throw new VersionConflictException(HttpStatus.PRECONDITION_FAILED,
+                    "User " + id + " is at version " + user.getVersion(), user.getVersion());
+        }
         
         user.setName(userDetails.getName());
         user.setEmail(userDetails.getEmail());
-        user.setPassword(userDetails.getPassword());
+        if (userDetails.getPassword() != null && !userDetails.getPassword().isEmpty()) {
+            user.setPassword(passwordHasher.hash(userDetails.getPassword()));
+        }
         user.setRole(userDetails.getRole());
         
-        return userRepository.save(user);
+        try {
+            return userRepository.save(user);
+        } catch (OptimisticLockingFailureException e) {
+            // A full replacement built on a stale read cannot be replayed safely
+            Long current = userRepository.findById(id).map(User::getVersion).orElse(null);
+            throw new VersionConflictException(expectedVersion != null ? HttpStatus.PRECONDITION_FAILED : HttpStatus.CONFLICT,
+                    "User " + id + " was changed concurrently", current);
+        }
     }
     
     // Delete user
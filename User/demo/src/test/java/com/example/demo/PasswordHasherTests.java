@@ -0,0 +1,51 @@
+package com.example.demo;
+
+import com.example.demo.service.PasswordHasher;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PasswordHasherTests {
+
+	private final PasswordHasher hasher = new PasswordHasher(1000, 16);
+
+	@Test
+	void hashesMatchOnlyTheirPassword() {
+		String stored = hasher.hash("correct horse");
+
+		assertTrue(stored.startsWith("pbkdf2-sha256$1000$"));
+		assertNotEquals(stored, hasher.hash("correct horse"));
+		assertTrue(hasher.matches("correct horse", stored));
+		assertFalse(hasher.matches("correct horsE", stored));
+		assertFalse(hasher.needsRehash(stored));
+	}
+
+	@Test
+	void plaintextPasswordsStillLogInAndAreFlaggedForUpgrade() {
+		assertTrue(hasher.matches("secret", "secret"));
+		assertFalse(hasher.matches("secret2", "secret"));
+		assertTrue(hasher.needsRehash("secret"));
+	}
+
+	@Test
+	void hashesWithOtherIterationCountsVerifyAndAreFlaggedForRehash() {
+		String older = new PasswordHasher(500, 16).hash("secret");
+
+		assertTrue(hasher.matches("secret", older));
+		assertFalse(hasher.matches("other", older));
+		assertTrue(hasher.needsRehash(older));
+	}
+
+	@Test
+	void missingAccountsAndOverlongPasswordsNeverMatch() {
+		assertFalse(hasher.matches("secret", null));
+		assertFalse(hasher.matches(null, hasher.hash("secret")));
+		assertFalse(hasher.matches("x".repeat(17), "x".repeat(17)));
+		assertThrows(IllegalArgumentException.class, () -> hasher.hash("x".repeat(17)));
+		assertThrows(IllegalArgumentException.class, () -> hasher.hash(""));
+	}
+
+}
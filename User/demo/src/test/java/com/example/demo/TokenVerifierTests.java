@@ -0,0 +1,137 @@
+package com.example.demo;
+
+import com.example.demo.model.User;
+import com.example.demo.service.TokenService;
+import com.example.demo.service.TokenVerifier;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TokenVerifierTests {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void validTokensCarryTheUsersClaims() {
+		TokenService tokens = tokenService("key", 3600);
+		TokenVerifier.Claims claims = new TokenVerifier(tokens, objectMapper, 100, 30).verify(issue(tokens));
+
+		assertEquals(7L, claims.userId());
+		assertEquals("ana@example.com", claims.email());
+		assertEquals("USER", claims.role());
+	}
+
+	@Test
+	void expiredTokensAreRejectedAfterTheClockSkew() {
+		TokenService tokens = tokenService("key", -60);
+		String token = issue(tokens);
+
+		assertThrows(IllegalArgumentException.class, () -> new TokenVerifier(tokens, objectMapper, 100, 30).verify(token));
+		assertEquals(7L, new TokenVerifier(tokens, objectMapper, 100, 120).verify(token).userId());
+	}
+
+	@Test
+	void forgedClaimsFailTheSignatureCheck() {
+		TokenService tokens = tokenService("key", 3600);
+		TokenVerifier verifier = new TokenVerifier(tokens, objectMapper, 100, 30);
+		String[] parts = issue(tokens).split("\\.");
+		String claims = new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8);
+		String forged = parts[0] + "." + encode(claims.replace("\"USER\"", "\"ADMIN\"")) + "." + parts[2];
+
+		assertThrows(IllegalArgumentException.class, () -> verifier.verify(forged));
+		assertThrows(IllegalArgumentException.class, () -> verifier.verify(parts[0] + "." + parts[1] + "."));
+		assertThrows(IllegalArgumentException.class, () -> verifier.verify("not-a-token"));
+	}
+
+	@Test
+	void tokensFromAnotherKeyAreRejected() {
+		TokenService tokens = tokenService("key", 3600);
+		TokenService other = tokenService("other-key", 3600);
+		TokenVerifier verifier = new TokenVerifier(tokens, objectMapper, 100, 30);
+		String foreign = issue(other);
+		// Signed by the other key but claiming this service's key id
+		String[] parts = foreign.split("\\.");
+		String header = new String(Base64.getUrlDecoder().decode(parts[0]), StandardCharsets.UTF_8);
+		String relabelled = encode(header.replace(other.getKeyId(), tokens.getKeyId())) + "." + parts[1] + "." + parts[2];
+
+		assertThrows(IllegalArgumentException.class, () -> verifier.verify(foreign));
+		assertThrows(IllegalArgumentException.class, () -> verifier.verify(relabelled));
+	}
+
+	@Test
+	void repeatedTokensAreVerifiedOnceWhileCached() {
+		CountingTokenService tokens = new CountingTokenService();
+		configure(tokens, "key", 3600);
+		String token = issue(tokens);
+
+		TokenVerifier cached = new TokenVerifier(tokens, objectMapper, 100, 30);
+		assertEquals(cached.verify(token), cached.verify(token));
+		assertEquals(1, tokens.lookups);
+
+		TokenVerifier uncached = new TokenVerifier(tokens, objectMapper, 0, 30);
+		uncached.verify(token);
+		uncached.verify(token);
+		assertEquals(3, tokens.lookups);
+	}
+
+	@Test
+	void cachedTokensStillExpire() throws Exception {
+		TokenService tokens = tokenService("key", 1);
+		TokenVerifier verifier = new TokenVerifier(tokens, objectMapper, 100, 0);
+		String token = issue(tokens);
+		verifier.verify(token);
+
+		// exp is whole seconds, so it has certainly passed two seconds later
+		Thread.sleep(2100);
+
+		assertThrows(IllegalArgumentException.class, () -> verifier.verify(token));
+	}
+
+	private TokenService tokenService(String keyFile, long ttlSeconds) {
+		TokenService tokens = new TokenService();
+		configure(tokens, keyFile, ttlSeconds);
+		return tokens;
+	}
+
+	private void configure(TokenService tokens, String keyFile, long ttlSeconds) {
+		ReflectionTestUtils.setField(tokens, "objectMapper", objectMapper);
+		ReflectionTestUtils.setField(tokens, "keyFile", directory.resolve(keyFile).toString());
+		ReflectionTestUtils.setField(tokens, "ttlSeconds", ttlSeconds);
+		ReflectionTestUtils.invokeMethod(tokens, "loadKeys");
+	}
+
+	private static String issue(TokenService tokens) {
+		User user = new User();
+		user.setId(7L);
+		user.setEmail("ana@example.com");
+		user.setRole("USER");
+		return tokens.issue(user).token();
+	}
+
+	private static String encode(String json) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+	}
+
+	// Counts key id lookups, one per signature check
+	private static final class CountingTokenService extends TokenService {
+		private int lookups;
+
+		@Override
+		public String getKeyId() {
+			lookups++;
+			return super.getKeyId();
+		}
+	}
+
+}
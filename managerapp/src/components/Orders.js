@@ -20,6 +20,18 @@ function Orders() {
     fetchOrders();
   }, []);
 
+  // Apply status changes pushed by the server instead of re-downloading the list;
+  // the browser resumes from the last event id on reconnect, "resync" means events were missed
+  useEffect(() => {
+    const events = new EventSource(`${API_URL}/events`);
+    events.addEventListener('order-status', (e) => {
+      const changed = JSON.parse(e.data);
+      setOrders((current) => current.map((item) => (item.id === changed.id ? changed : item)));
+    });
+    events.addEventListener('resync', () => fetchOrders());
+    return () => events.close();
+  }, []);
+
   const fetchOrders = async () => {
     try {
       const response = await fetch(API_URL);
@@ -105,7 +117,6 @@ function Orders() {
 
       if (response.ok) {
         setSuccess('Order status updated successfully!');
-        fetchOrders();
       } else {
         setError('Failed to update status');
       }
@@ -19,6 +19,18 @@ function Payments() {
     fetchPayments();
   }, []);
 
+  // Apply status changes pushed by the server instead of re-downloading the list;
+  // the browser resumes from the last event id on reconnect, "resync" means events were missed
+  useEffect(() => {
+    const events = new EventSource(`${API_URL}/events`);
+    events.addEventListener('payment-status', (e) => {
+      const changed = JSON.parse(e.data);
+      setPayments((current) => current.map((item) => (item.id === changed.id ? changed : item)));
+    });
+    events.addEventListener('resync', () => fetchPayments());
+    return () => events.close();
+  }, []);
+
   const fetchPayments = async () => {
     try {
       const response = await fetch(API_URL);
@@ -96,8 +108,9 @@ function Payments() {
       });
 
       if (response.ok) {
-        setSuccess('Payment processed successfully!');
-        fetchPayments();
+        setSuccess('Payment queued for processing');
+      } else if (response.status === 503) {
+        setError('Payment processing is busy, please try again shortly');
       } else {
         setError('Failed to process payment');
       }
@@ -118,7 +131,6 @@ function Payments() {
 
       if (response.ok) {
         setSuccess('Payment status updated successfully!');
-        fetchPayments();
       } else {
         setError('Failed to update status');
       }
@@ -243,7 +255,7 @@ function Payments() {
                       >
                         Edit
                       </button>
-                      {payment.paymentStatus === 'PENDING' && (
+                      {(payment.paymentStatus === 'PENDING' || payment.paymentStatus === 'FAILED') && (
                         <button
                           className="btn btn-success"
                           onClick={() => handleProcessPayment(payment.id)}
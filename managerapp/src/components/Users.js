@@ -65,7 +65,7 @@ function Users() {
     setFormData({
       name: user.name,
       email: user.email,
-      password: user.password,
+      password: '',
       role: user.role
     });
     setEditing(true);
@@ -126,7 +126,8 @@ function Users() {
               type="password"
               value={formData.password}
               onChange={(e) => setFormData({ ...formData, password: e.target.value })}
-              required
+              placeholder={editing ? 'Leave blank to keep the current password' : ''}
+              required={!editing}
             />
           </div>
           <div className="form-group">